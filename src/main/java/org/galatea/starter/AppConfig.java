@@ -1,10 +1,25 @@
 package org.galatea.starter;
 
+import feign.Client;
 import feign.Logger;
+import feign.Request;
+import feign.Retryer;
+import feign.codec.ErrorDecoder;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.aspect.LogAspect;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.utils.http.client.ApacheHttpFeignClient;
+import org.galatea.starter.utils.http.client.CircuitBreakingClient;
+import org.galatea.starter.utils.http.client.JitteredRetryer;
+import org.galatea.starter.utils.http.client.RetryableStatusErrorDecoder;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -76,4 +91,109 @@ public class AppConfig {
     return Logger.Level.BASIC;
   }
 
+  /**
+   * Pool of kept-alive HTTP connections shared by the Feign clients. Connections that have sat
+   * idle in the pool are checked before they're reused.
+   *
+   * @param maxConnections the most connections open at once, across all hosts
+   * @param maxConnectionsPerHost the most connections open at once to any one host
+   * @return the connection manager.
+   */
+  @Bean(destroyMethod = "shutdown")
+  public PoolingHttpClientConnectionManager feignConnectionManager(
+      @Value("${iex.client.max-connections:50}") final int maxConnections,
+      @Value("${iex.client.max-connections-per-host:20}") final int maxConnectionsPerHost) {
+    PoolingHttpClientConnectionManager connectionManager =
+        new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+    connectionManager.setValidateAfterInactivity((int) TimeUnit.SECONDS.toMillis(2));
+    return connectionManager;
+  }
+
+  /**
+   * HTTP client the Feign clients call through, in place of Feign's default client which opens a
+   * new connection for every call. Calls to a host that keeps failing are cut off for a while by a
+   * circuit breaker, rather than each waiting to time out.
+   *
+   * @param connectionManager the pool of connections to call through
+   * @param idleSeconds how long a connection can sit idle in the pool before it's closed
+   * @param failureThreshold the number of failures in a row that stops calls to a host
+   * @param openSeconds how long calls to a host are stopped for before one is tried again
+   * @return the Feign client.
+   */
+  @Bean
+  public Client feignClient(final PoolingHttpClientConnectionManager connectionManager,
+      @Value("${iex.client.idle-seconds:30}") final long idleSeconds,
+      @Value("${iex.client.circuit-breaker.failure-threshold:5}") final int failureThreshold,
+      @Value("${iex.client.circuit-breaker.open-seconds:30}") final long openSeconds) {
+    CloseableHttpClient httpClient = HttpClients.custom()
+        .setConnectionManager(connectionManager)
+        .evictIdleConnections(idleSeconds, TimeUnit.SECONDS)
+        .evictExpiredConnections()
+        // Feign follows its own redirect and retry rules
+        .disableRedirectHandling()
+        .disableAutomaticRetries()
+        .build();
+    return new CircuitBreakingClient(new ApacheHttpFeignClient(httpClient), failureThreshold,
+        TimeUnit.SECONDS.toMillis(openSeconds), Clock.systemUTC());
+  }
+
+  /**
+   * Connect and read timeouts for the Feign clients.
+   *
+   * @return the Feign request options.
+   */
+  @Bean
+  public Request.Options feignRequestOptions(
+      @Value("${iex.client.connect-timeout-millis:2000}") final int connectTimeoutMillis,
+      @Value("${iex.client.read-timeout-millis:10000}") final int readTimeoutMillis) {
+    return new Request.Options(connectTimeoutMillis, readTimeoutMillis);
+  }
+
+  /**
+   * Retry policy for the Feign clients. Connection errors and overloaded-server responses are
+   * retried with jittered exponential backoff.
+   *
+   * @return the Feign retryer.
+   */
+  @Bean
+  public Retryer feignRetryer(
+      @Value("${iex.client.retry.max-attempts:3}") final int maxAttempts,
+      @Value("${iex.client.retry.initial-backoff-millis:100}") final long initialBackoffMillis,
+      @Value("${iex.client.retry.max-backoff-millis:2000}") final long maxBackoffMillis) {
+    return new JitteredRetryer(maxAttempts, initialBackoffMillis, maxBackoffMillis);
+  }
+
+  /**
+   * Marks the responses the Feign retryer should retry.
+   *
+   * @return the Feign error decoder.
+   */
+  @Bean
+  public ErrorDecoder feignErrorDecoder() {
+    return new RetryableStatusErrorDecoder();
+  }
+
+  /**
+   * Publishes how busy the Feign connection pool is: connections in use, idle in the pool, the
+   * number of calls waiting for one, and the most there can be.
+   *
+   * @return the meter binder.
+   */
+  @Bean
+  public MeterBinder feignConnectionPoolMetrics(
+      final PoolingHttpClientConnectionManager connectionManager) {
+    return registry -> {
+      Gauge.builder("http.client.pool.leased", connectionManager,
+          pool -> pool.getTotalStats().getLeased()).register(registry);
+      Gauge.builder("http.client.pool.available", connectionManager,
+          pool -> pool.getTotalStats().getAvailable()).register(registry);
+      Gauge.builder("http.client.pool.pending", connectionManager,
+          pool -> pool.getTotalStats().getPending()).register(registry);
+      Gauge.builder("http.client.pool.max", connectionManager,
+          pool -> pool.getTotalStats().getMax()).register(registry);
+    };
+  }
+
 }
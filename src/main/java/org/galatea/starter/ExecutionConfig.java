@@ -0,0 +1,86 @@
+package org.galatea.starter;
+
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.galatea.starter.utils.rest.InFlightLimitFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.jetty.JettyServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Sets up the threads requests and messages are handled on, according to execution.mode.
+ *
+ * <p>In the default POOLED mode nothing changes here: Jetty keeps its own pool
+ * (server.jetty.max-threads) and each JMS listener runs jms.listener-concurrency consumers.
+ *
+ * <p>ELASTIC mode caps how much work is in flight and sheds the rest. At most
+ * execution.servlet.max-in-flight requests are handled at once and InFlightLimitFilter answers the
+ * rest with a 503 straight away, rather than letting them queue for a thread. Jetty's pool is sized
+ * to cover that cap and retires threads idle for execution.idle-seconds. Each JMS listener runs up
+ * to execution.jms.max-in-flight consumers, applied by JmsConfig.
+ *
+ * <p>These are ordinary platform threads, so the caps still have to be chosen with the peak load
+ * in mind; this mode only changes what happens beyond them.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "execution.mode", havingValue = "ELASTIC")
+public class ExecutionConfig {
+
+  /**
+   * How requests and messages are given threads.
+   */
+  public enum Mode {
+    /** Fixed size pools, as configured by their own settings. */
+    POOLED,
+    /** A cap on the work in flight, with anything beyond it turned away. */
+    ELASTIC
+  }
+
+  // Jetty's acceptor and selector threads come out of the same pool as the request threads
+  private static final int JETTY_HOUSEKEEPING_THREADS =
+      Math.max(8, 2 * Runtime.getRuntime().availableProcessors());
+
+  // Kept warm so a quiet server can answer the first few requests without starting threads
+  private static final int MIN_SERVLET_THREADS = 8;
+
+  @Value("${execution.servlet.max-in-flight:400}")
+  private int servletMaxInFlight;
+
+  @Value("${execution.idle-seconds:60}")
+  private int idleSeconds;
+
+  /**
+   * Lets Jetty grow its thread pool to cover every request that can be in flight, and shrink it
+   * back when they're done.
+   */
+  @Bean
+  public WebServerFactoryCustomizer<JettyServletWebServerFactory> elasticJettyThreadPool() {
+    return factory -> {
+      QueuedThreadPool threadPool = new QueuedThreadPool(
+          servletMaxInFlight + JETTY_HOUSEKEEPING_THREADS, MIN_SERVLET_THREADS,
+          (int) TimeUnit.SECONDS.toMillis(idleSeconds));
+      threadPool.setName("jetty-elastic");
+      factory.setThreadPool(threadPool);
+      log.info("Elastic execution: up to {} requests in flight", servletMaxInFlight);
+    };
+  }
+
+  /**
+   * Turns requests away once execution.servlet.max-in-flight are already being handled. Runs
+   * before every other filter so a request that's turned away costs next to nothing.
+   */
+  @Bean
+  public FilterRegistrationBean<InFlightLimitFilter> inFlightLimitFilter() {
+    FilterRegistrationBean<InFlightLimitFilter> registration =
+        new FilterRegistrationBean<>(new InFlightLimitFilter(servletMaxInFlight));
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+    return registration;
+  }
+}
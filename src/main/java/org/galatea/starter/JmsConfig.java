@@ -1,10 +1,25 @@
 package org.galatea.starter;
 
-import java.util.function.BiConsumer;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.function.DoubleSupplier;
 import javax.jms.ConnectionFactory;
 import javax.jms.Message;
+import javax.jms.Session;
+import javax.sql.DataSource;
 import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.jms.AdaptiveConcurrencyController;
+import org.galatea.starter.utils.jms.BrowsingQueueDepth;
+import org.galatea.starter.utils.jms.DeadLetterReplayer;
+import org.galatea.starter.utils.jms.DeadLetterStore;
+import org.galatea.starter.utils.jms.FailedMessageConsumer;
 import org.galatea.starter.utils.jms.FuseJmsListenerContainerFactory;
+import org.galatea.starter.utils.jms.ListenerThroughputEndpoint;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -12,6 +27,7 @@ import org.springframework.jms.annotation.EnableJms;
 import org.springframework.jms.annotation.JmsListenerConfigurer;
 import org.springframework.jms.config.JmsListenerContainerFactory;
 import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.converter.MessageConverter;
@@ -23,13 +39,92 @@ import org.springframework.messaging.handler.annotation.support.MessageHandlerMe
 @EnableJms
 public class JmsConfig implements JmsListenerConfigurer {
 
+  @Value("${execution.mode:POOLED}")
+  private ExecutionConfig.Mode executionMode;
+
+  @Value("${execution.jms.max-in-flight:20}")
+  private int jmsMaxInFlight;
+
+  @Value("${jms.adaptive.min-consumers:1}")
+  private int adaptiveMinConsumers;
+
+  @Value("${jms.adaptive.max-consumers:20}")
+  private int adaptiveMaxConsumers;
+
+  @Value("${jms.adaptive.interval-millis:5000}")
+  private long adaptiveIntervalMillis;
+
+  @Value("${jms.adaptive.backlog-per-consumer:100}")
+  private int adaptiveBacklogPerConsumer;
+
+  @Value("${jms.adaptive.target-latency-millis:0}")
+  private long adaptiveTargetLatencyMillis;
+
+  @Value("${jms.adaptive.max-db-pool-usage:0.9}")
+  private double adaptiveMaxDbPoolUsage;
+
+  @Value("${jms.throughput.enabled:false}")
+  private boolean throughputMode;
+
+  @Value("${jms.throughput.prefetch:1000}")
+  private int throughputPrefetch;
+
+  @Value("${jms.throughput.commit-batch-size:100}")
+  private int throughputCommitBatchSize;
+
+  @Value("${jms.throughput.commit-interval-millis:50}")
+  private long throughputCommitIntervalMillis;
+
+  @Value("${jms.throughput.dups-ok:false}")
+  private boolean throughputDupsOk;
+
+  @Value("${jms.dead-letter.max-delivery-attempts:3}")
+  private int maxDeliveryAttempts;
+
   /**
-   * Returns an implementation of failed message consumer that simply logs the message.
+   * Keeps the messages that fail processing in a file of their own, so they can be replayed once
+   * whatever made them fail has been fixed.
    */
   @Bean
-  public BiConsumer<Message, Exception> failedMessageConsumer() {
-    return (msg, err) -> log.error(
-        "Message {} failed to process after retries.  Removing message from queue", msg, err);
+  public DeadLetterStore deadLetterStore(
+      @Value("${jms.dead-letter.path:./dead-letters/store}") final String path) {
+    return new DeadLetterStore(path);
+  }
+
+  /**
+   * Puts dead letters back on their queues, jms.dead-letter.replay.batch-size to a transaction and
+   * jms.dead-letter.replay.parallelism transactions at a time.
+   */
+  @Bean
+  public DeadLetterReplayer deadLetterReplayer(final DeadLetterStore deadLetterStore,
+      final ConnectionFactory queueConnectionFactory,
+      @Value("${jms.dead-letter.replay.batch-size:500}") final int batchSize,
+      @Value("${jms.dead-letter.replay.parallelism:4}") final int parallelism) {
+    return new DeadLetterReplayer(deadLetterStore, queueConnectionFactory, batchSize,
+        parallelism);
+  }
+
+  /**
+   * Returns an implementation of failed message consumer that logs the messages and moves them to
+   * the dead-letter store, a failed batch in one go.
+   */
+  @Bean
+  public FailedMessageConsumer failedMessageConsumer(final DeadLetterStore deadLetterStore) {
+    return new FailedMessageConsumer() {
+      @Override
+      public void accept(final Message msg, final Exception err) {
+        log.error("Message {} failed to process after retries.  Moving it to the dead-letter store",
+            msg, err);
+        deadLetterStore.accept(msg, err);
+      }
+
+      @Override
+      public void acceptAll(final List<Message> msgs, final Exception err) {
+        log.error("Batch of {} messages failed to process after retries.  Moving it to the "
+            + "dead-letter store: {}", msgs.size(), msgs, err);
+        deadLetterStore.acceptAll(msgs, err);
+      }
+    };
   }
 
   /**
@@ -53,7 +148,8 @@ public class JmsConfig implements JmsListenerConfigurer {
   public JmsListenerContainerFactory<DefaultMessageListenerContainer> jmsListenerContainerFactory(
       final ConnectionFactory queueConnectionFactory,
       final DefaultJmsListenerContainerFactoryConfigurer configurer,
-      final BiConsumer<Message, Exception> failedMessageConsumer) {
+      final FailedMessageConsumer failedMessageConsumer,
+      final ObjectProvider<AdaptiveConcurrencyController> concurrencyController) {
 
     FuseJmsListenerContainerFactory listenerFactory =
         new FuseJmsListenerContainerFactory(failedMessageConsumer);
@@ -64,11 +160,134 @@ public class JmsConfig implements JmsListenerConfigurer {
     // http://docs.spring.io/spring-framework/docs/current/javadoc-api/org/springframework/
     // jms/listener/DefaultMessageListenerContainer.html
     configurer.configure(listenerFactory, queueConnectionFactory);
+    applyExecutionMode(listenerFactory);
+    applyThroughputMode(listenerFactory);
+    listenerFactory.setMaxDeliveryAttempts(maxDeliveryAttempts);
+    if (throughputMode && throughputDupsOk) {
+      // Acknowledged lazily by the broker client in place of a transaction per commit
+      listenerFactory.setSessionTransacted(false);
+      listenerFactory.setSessionAcknowledgeMode(Session.DUPS_OK_ACKNOWLEDGE);
+    }
+    listenerFactory.setConcurrencyController(concurrencyController.getIfAvailable());
+    return listenerFactory;
+  }
 
-    // TODO: override any defaults in the listener factory before we return the object
+  /**
+   * Listener container factory for BatchMessageListeners. Containers created by this factory drain
+   * up to jms.batch.max-size messages per receive and commit them in a single local transaction,
+   * so a failure rolls the whole batch back onto the queue.
+   *
+   * @param queueConnectionFactory injected by spring
+   * @param configurer injected by spring
+   * @return the factory.
+   */
+  @Bean
+  public FuseJmsListenerContainerFactory jmsBatchListenerContainerFactory(
+      final ConnectionFactory queueConnectionFactory,
+      final DefaultJmsListenerContainerFactoryConfigurer configurer,
+      final FailedMessageConsumer failedMessageConsumer,
+      final ObjectProvider<AdaptiveConcurrencyController> concurrencyController,
+      @Value("${jms.batch.max-size:500}") final int batchSize,
+      @Value("${jms.batch.max-wait-millis:100}") final long batchTimeout) {
+
+    FuseJmsListenerContainerFactory listenerFactory =
+        new FuseJmsListenerContainerFactory(failedMessageConsumer);
+    configurer.configure(listenerFactory, queueConnectionFactory);
+
+    listenerFactory.setSessionTransacted(true);
+    listenerFactory.setBatchSize(batchSize);
+    listenerFactory.setBatchTimeout(batchTimeout);
+    applyExecutionMode(listenerFactory);
+    // Batches stay transacted whatever dups-ok says, so a failed batch goes back on the queue
+    applyThroughputMode(listenerFactory);
+    listenerFactory.setMaxDeliveryAttempts(maxDeliveryAttempts);
+    listenerFactory.setConcurrencyController(concurrencyController.getIfAvailable());
     return listenerFactory;
   }
 
+  /**
+   * Scales each listener's consumers between jms.adaptive.min-consumers and max-consumers with the
+   * depth of its queue, how long its messages take, and how busy the database is. Enabled with
+   * jms.adaptive.enabled=true, in which case it takes the place of jms.listener-concurrency.
+   */
+  @Bean
+  @ConditionalOnProperty(name = "jms.adaptive.enabled", havingValue = "true")
+  public AdaptiveConcurrencyController adaptiveConcurrencyController(
+      final ConnectionFactory queueConnectionFactory, final DataSource dataSource) {
+    // Past enough backlog for every consumer we could add, the exact depth doesn't matter
+    int depthCap = adaptiveMaxConsumers * adaptiveBacklogPerConsumer + 1;
+    AdaptiveConcurrencyController controller = new AdaptiveConcurrencyController(
+        new BrowsingQueueDepth(queueConnectionFactory, depthCap), dbPoolUsage(dataSource));
+    controller.setMinConsumers(adaptiveMinConsumers);
+    controller.setMaxConsumers(adaptiveMaxConsumers);
+    controller.setIntervalMillis(adaptiveIntervalMillis);
+    controller.setBacklogPerConsumer(adaptiveBacklogPerConsumer);
+    controller.setTargetLatencyMillis(adaptiveTargetLatencyMillis);
+    controller.setMaxDbPoolUsage(adaptiveMaxDbPoolUsage);
+    return controller;
+  }
+
+  /**
+   * Returns how busy the Hikari connection pool behind the data source is: 1 if anyone is waiting
+   * for a connection, otherwise the fraction of connections in use. Always 0 for other pools.
+   */
+  private static DoubleSupplier dbPoolUsage(final DataSource dataSource) {
+    HikariDataSource hikari;
+    try {
+      if (!dataSource.isWrapperFor(HikariDataSource.class)) {
+        log.info("Not a Hikari data source, listener concurrency will ignore the database");
+        return () -> 0;
+      }
+      hikari = dataSource.unwrap(HikariDataSource.class);
+    } catch (SQLException e) {
+      throw new IllegalStateException("Error unwrapping the data source", e);
+    }
+
+    return () -> {
+      HikariPoolMXBean pool = hikari.getHikariPoolMXBean();
+      if (pool == null) {
+        // Not started yet
+        return 0;
+      }
+      if (pool.getThreadsAwaitingConnection() > 0) {
+        return 1;
+      }
+      return pool.getActiveConnections() / (double) hikari.getMaximumPoolSize();
+    };
+  }
+
+  /**
+   * In ELASTIC execution mode, sizes the factory's containers by execution.jms.max-in-flight
+   * rather than the concurrency their listeners ask for.
+   */
+  private void applyExecutionMode(final FuseJmsListenerContainerFactory listenerFactory) {
+    if (executionMode == ExecutionConfig.Mode.ELASTIC) {
+      listenerFactory.setMaxInFlight(jmsMaxInFlight);
+    }
+  }
+
+  /**
+   * With jms.throughput.enabled=true, has the factory's containers take messages from the broker
+   * jms.throughput.prefetch at a time and commit their sessions every commit-batch-size messages
+   * or commit-interval-millis, whichever comes first, rather than after every message.
+   */
+  private void applyThroughputMode(final FuseJmsListenerContainerFactory listenerFactory) {
+    if (throughputMode) {
+      listenerFactory.setPrefetch(throughputPrefetch);
+      listenerFactory.setCommitBatchSize(throughputCommitBatchSize);
+      listenerFactory.setCommitIntervalMillis(throughputCommitIntervalMillis);
+    }
+  }
+
+  /**
+   * Exposes each listener container's receive rate and commit latency at /actuator/jmslisteners.
+   */
+  @Bean
+  public ListenerThroughputEndpoint listenerThroughputEndpoint(
+      final JmsListenerEndpointRegistry jmsListenerEndpointRegistry) {
+    return new ListenerThroughputEndpoint(jmsListenerEndpointRegistry);
+  }
+
   /**
    * For JSON messages we want to use the spring messaging converter instead of the spring jms
    * converter. The spring jms converter expects the type of object to deserialize the json to being
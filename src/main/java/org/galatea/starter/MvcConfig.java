@@ -2,22 +2,32 @@ package org.galatea.starter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.List;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.utils.FuseHttpTraceRepository;
 import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
 import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
 import org.galatea.starter.utils.rest.FuseHttpTraceFilter;
+import org.galatea.starter.utils.rest.HttpTraceSampler;
+import org.galatea.starter.utils.rest.LatencyEndpoint;
+import org.galatea.starter.utils.rest.RequestIdGenerator;
+import org.galatea.starter.utils.rest.RequestLatencyRecorder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
 import org.springframework.boot.actuate.trace.http.Include;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.http.converter.protobuf.ProtobufHttpMessageConverter;
 import org.springframework.http.converter.xml.Jaxb2RootElementHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -33,23 +43,102 @@ public class MvcConfig implements WebMvcConfigurer {
   public static final MediaType APPLICATION_EXCEL = new MediaType("application", "vnd.ms-excel");
   public static final String APPLICATION_EXCEL_VALUE = "application/vnd.ms-excel";
 
+  public static final MediaType APPLICATION_NDJSON = new MediaType("application", "x-ndjson");
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+  @Value("${mvc.settleMissionStreamPath}")
+  private String settleMissionStreamPath;
+
+  @Value("${mvc.streamMissionsPath}")
+  private String streamMissionsPath;
+
+  @Value("${mvc.iex.getHistoricalPricesBatchPath}")
+  private String historicalPricesBatchPath;
+
+  @Value("${mvc.xlsxRowAccessWindowSize:100}")
+  private int xlsxRowAccessWindowSize;
+
+  @Value("${mvc.traceBufferSize:" + FuseHttpTraceRepository.DEFAULT_BUFFER_SIZE + "}")
+  private int traceBufferSize;
+
+  @Value("${mvc.traceOverflowPolicy:DROP_NEWEST}")
+  private FuseHttpTraceRepository.OverflowPolicy traceOverflowPolicy;
+
+  @Value("${mvc.traceSampleRate:1.0}")
+  private double traceSampleRate;
+
+  @Value("${mvc.traceSampleRates:}")
+  private String traceSampleRates;
+
+  @Value("${mvc.traceErrors:true}")
+  private boolean traceErrors;
+
+  @Value("${mvc.max-size-trace-payload:50000}")
+  private int maxSizeTracePayload;
+
+  @Value("${mvc.requestIdNodePrefix:}")
+  private String requestIdNodePrefix;
+
+  @Value("${mvc.asyncRequestTimeoutMillis:60000}")
+  private long asyncRequestTimeoutMillis;
+
   /**
    * This is used to trace web requests and store that trace info.
    *
+   * <p>The streaming settlement, mission and historical prices endpoints are skipped since they're
+   * long-lived and their responses are flushed as they go. Other responses bigger than
+   * mvc.max-size-trace-payload are streamed through rather than held back for the audit headers.
+   *
    * @return the trace filter
    */
   @Bean
-  public HttpTraceFilter httpTraceFilter() {
-    return new FuseHttpTraceFilter(fuseHttpTraceRepository(), httpExchangeTracer(),
-        path -> path.startsWith("/trace"));
+  public HttpTraceFilter httpTraceFilter(final RequestLatencyRecorder requestLatencyRecorder) {
+    FuseHttpTraceFilter filter = new FuseHttpTraceFilter(fuseHttpTraceRepository(),
+        httpExchangeTracer(),
+        path -> path.startsWith("/trace") || path.startsWith(settleMissionStreamPath)
+            || path.startsWith(streamMissionsPath) || path.startsWith(historicalPricesBatchPath),
+        new HttpTraceSampler(traceSampleRate, traceSampleRates, traceErrors),
+        maxSizeTracePayload, requestIdGenerator());
+    filter.setLatencyRecorder(requestLatencyRecorder);
+    return filter;
+  }
+
+  /**
+   * Keeps a latency histogram per handler mapping and status class, fed by the trace filter. The
+   * histograms are read back from the registry for the latency endpoint, so they go in the app's
+   * own registry rather than the global composite. Slices of the app without a registry get a
+   * private one.
+   */
+  @Bean
+  public RequestLatencyRecorder requestLatencyRecorder(
+      final ObjectProvider<MeterRegistry> meterRegistry) {
+    return new RequestLatencyRecorder(meterRegistry.getIfAvailable(SimpleMeterRegistry::new));
+  }
+
+  /**
+   * Exposes the latency histograms at /actuator/latency.
+   */
+  @Bean
+  public LatencyEndpoint latencyEndpoint(final RequestLatencyRecorder requestLatencyRecorder) {
+    return new LatencyEndpoint(requestLatencyRecorder);
   }
 
   /**
-   * Repository for storing trace info.
+   * Hands out the internal request ids. The node prefix is random unless mvc.requestIdNodePrefix
+   * is set.
+   */
+  @Bean
+  public RequestIdGenerator requestIdGenerator() {
+    return requestIdNodePrefix.isEmpty() ? new RequestIdGenerator()
+        : new RequestIdGenerator(requestIdNodePrefix);
+  }
+
+  /**
+   * Repository for storing trace info. Traces are logged and stored off the request thread.
    */
   @Bean
   public FuseHttpTraceRepository fuseHttpTraceRepository() {
-    return new FuseHttpTraceRepository(new ObjectMapper());
+    return new FuseHttpTraceRepository(new ObjectMapper(), traceBufferSize, traceOverflowPolicy);
   }
 
   /**
@@ -81,6 +170,12 @@ public class MvcConfig implements WebMvcConfigurer {
 
   }
 
+  @Override
+  public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+    // Otherwise the container's own timeout applies, which is only 30s on Jetty
+    configurer.setDefaultTimeout(asyncRequestTimeoutMillis);
+  }
+
   @Override
   public void configureMessageConverters(final List<HttpMessageConverter<?>> converters) {
     // The Protobuf converter MUST be added first, otherwise Jackson will try and handle our
@@ -89,7 +184,8 @@ public class MvcConfig implements WebMvcConfigurer {
     converters.add(new MappingJackson2HttpMessageConverter()); // JSON
     converters.add(new Jaxb2RootElementHttpMessageConverter()); // XML
     converters.add(new SettlementMissionCsvConverter());
-    converters.add(new SettlementMissionXlsxConverter());
+    converters.add(new SettlementMissionXlsxConverter(xlsxRowAccessWindowSize));
+    converters.add(new ByteArrayHttpMessageConverter()); // Already rendered, e.g. NDJSON lines
   }
 
 }
@@ -0,0 +1,124 @@
+package org.galatea.starter.domain;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * One day's closed price bar for a symbol, as kept in the local historical price store.
+ *
+ * <p>Prices are stored as doubles rather than decimals. That's what IEX sends on the wire, so they
+ * round-trip exactly, and they take a fixed 8 bytes a column.
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For hibernate
+@Data
+@Entity
+@IdClass(IexHistoricalPriceBar.Key.class)
+public class IexHistoricalPriceBar implements Persistable<IexHistoricalPriceBar.Key> {
+
+  @Id
+  @Column(length = 16)
+  private String symbol;
+
+  @Id
+  @Column(name = "bar_date")
+  private LocalDate date;
+
+  private Double open;
+
+  private Double high;
+
+  private Double low;
+
+  private Double close;
+
+  private Integer volume;
+
+  // Bars are only ever inserted, never updated, so tell spring data to persist rather than merge
+  // them. Saves hibernate a select per bar.
+  @Transient
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private boolean newBar = true;
+
+  /**
+   * Creates a bar for the given symbol and date from the prices IEX sent.
+   */
+  public static IexHistoricalPriceBar of(final String symbol, final LocalDate date,
+      final IexHistoricalPrices prices) {
+    IexHistoricalPriceBar bar = new IexHistoricalPriceBar();
+    bar.symbol = symbol;
+    bar.date = date;
+    bar.open = toDouble(prices.getOpen());
+    bar.high = toDouble(prices.getHigh());
+    bar.low = toDouble(prices.getLow());
+    bar.close = toDouble(prices.getClose());
+    bar.volume = prices.getVolume();
+    return bar;
+  }
+
+  /**
+   * Adds the bar to the end of the series being built.
+   */
+  public void addTo(final HistoricalBarSeries.Builder series) {
+    series.add(symbol, date, toPrimitive(open), toPrimitive(high), toPrimitive(low),
+        toPrimitive(close), volume == null ? HistoricalBarSeries.NO_VOLUME : volume);
+  }
+
+  @Override
+  public Key getId() {
+    return new Key(symbol, date);
+  }
+
+  @Override
+  public boolean isNew() {
+    return newBar;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markNotNew() {
+    newBar = false;
+  }
+
+  private static Double toDouble(final BigDecimal value) {
+    return value == null ? null : value.doubleValue();
+  }
+
+  private static double toPrimitive(final Double value) {
+    return value == null ? Double.NaN : value;
+  }
+
+  /**
+   * Primary key of a bar.
+   */
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String symbol;
+
+    private LocalDate date;
+  }
+}
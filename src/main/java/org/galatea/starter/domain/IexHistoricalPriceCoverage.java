@@ -0,0 +1,34 @@
+package org.galatea.starter.domain;
+
+import java.time.LocalDate;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The run of days, from fromDate to toDate inclusive, for which every closed bar of a symbol is in
+ * the local historical price store. Days in that run with no bar weren't trading days.
+ */
+@AllArgsConstructor
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For hibernate
+@Data
+@Entity
+public class IexHistoricalPriceCoverage {
+
+  @Id
+  private String symbol;
+
+  private LocalDate fromDate;
+
+  private LocalDate toDate;
+
+  /**
+   * Returns true if every day from from to to, inclusive, is covered.
+   */
+  public boolean covers(final LocalDate from, final LocalDate to) {
+    return !from.isBefore(fromDate) && !to.isAfter(toDate);
+  }
+}
@@ -0,0 +1,23 @@
+package org.galatea.starter.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * The historical prices for one symbol of a batch, or why they couldn't be fetched.
+ */
+@Value
+@Builder
+@JsonInclude(Include.NON_NULL)
+public class IexHistoricalPricesResult {
+
+  private String symbol;
+
+  // Null if the prices couldn't be fetched
+  private HistoricalBarSeries prices;
+
+  // Null if the prices were fetched
+  private String error;
+}
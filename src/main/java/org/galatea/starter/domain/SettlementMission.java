@@ -4,6 +4,7 @@ import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Version;
 import javax.validation.constraints.DecimalMin;
 import javax.xml.bind.annotation.XmlRootElement;
@@ -24,8 +25,13 @@ import org.galatea.starter.utils.validation.StringEnumeration;
 @XmlRootElement(name = "settlementMission")
 public class SettlementMission {
 
+  // A pooled sequence hands out a block of ids per round trip and, unlike IDENTITY, lets hibernate
+  // assign ids before flushing so that inserts can be JDBC-batched. Keep allocationSize in step
+  // with hibernate.jdbc.batch_size.
   @Id
-  @GeneratedValue(strategy = GenerationType.AUTO)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "settlement_mission_seq")
+  @SequenceGenerator(name = "settlement_mission_seq", sequenceName = "settlement_mission_seq",
+      allocationSize = 50)
   protected Long id;
 
   @NonNull
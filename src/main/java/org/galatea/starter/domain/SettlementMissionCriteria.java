@@ -0,0 +1,29 @@
+package org.galatea.starter.domain;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Filters for querying settlement missions. Every criterion is optional; unset (null) criteria
+ * match all missions.
+ */
+@Builder
+@Value
+public class SettlementMissionCriteria {
+
+  protected String depot;
+
+  protected String instrument;
+
+  protected String externalParty;
+
+  /**
+   * Lowest mission id to include.
+   */
+  protected Long fromId;
+
+  /**
+   * Highest mission id to include.
+   */
+  protected Long toId;
+}
@@ -0,0 +1,49 @@
+package org.galatea.starter.domain;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Hands out a small int id for each distinct symbol, so bar series can hold an int per bar rather
+ * than a reference to a String. Ids are never reused or forgotten, which is fine for a universe of
+ * a few thousand symbols.
+ */
+public final class SymbolIds {
+
+  /**
+   * The id of a missing symbol.
+   */
+  public static final int NO_SYMBOL = -1;
+
+  private static final Map<String, Integer> IDS = new ConcurrentHashMap<>();
+
+  private static final CopyOnWriteArrayList<String> SYMBOLS = new CopyOnWriteArrayList<>();
+
+  private SymbolIds() {}
+
+  /**
+   * Returns the id of the symbol, handing out a new one if it hasn't been seen before.
+   */
+  public static int idOf(final String symbol) {
+    if (symbol == null) {
+      return NO_SYMBOL;
+    }
+    Integer id = IDS.get(symbol);
+    return id != null ? id : IDS.computeIfAbsent(symbol, SymbolIds::register);
+  }
+
+  /**
+   * Returns the symbol with the given id, or null for NO_SYMBOL.
+   */
+  public static String symbolOf(final int id) {
+    return id == NO_SYMBOL ? null : SYMBOLS.get(id);
+  }
+
+  // Only ever called under computeIfAbsent's lock for the symbol, and ids are only handed out once
+  // the symbol is in the list
+  private static synchronized int register(final String symbol) {
+    SYMBOLS.add(symbol);
+    return SYMBOLS.size() - 1;
+  }
+}
@@ -0,0 +1,16 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.time.LocalDate;
+import java.util.List;
+import org.galatea.starter.domain.IexHistoricalPriceBar;
+import org.springframework.data.repository.CrudRepository;
+
+public interface IIexHistoricalPriceBarRpsy
+    extends CrudRepository<IexHistoricalPriceBar, IexHistoricalPriceBar.Key> {
+
+  /**
+   * Retrieves the bars for the symbol from from to to, inclusive, oldest first.
+   */
+  List<IexHistoricalPriceBar> findBySymbolAndDateBetweenOrderByDate(String symbol, LocalDate from,
+      LocalDate to);
+}
@@ -0,0 +1,22 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.List;
+import org.galatea.starter.domain.SettlementMission;
+
+/**
+ * Custom repository fragment for persisting large numbers of missions. Spring data picks up the
+ * implementation from the class with the same name and an 'Impl' suffix.
+ */
+public interface ISettlementMissionBatchRpsy {
+
+  /**
+   * Persists the given missions in a single transaction, flushing and clearing the persistence
+   * context after every chunk so that inserts are JDBC-batched and managed entities do not pile
+   * up in the first-level cache.
+   *
+   * @param missions the new missions to persist; may be a lazily computed view
+   * @param chunkSize the number of missions to persist between flushes
+   * @return the ids of the persisted missions, in iteration order
+   */
+  List<Long> persistInChunks(Iterable<SettlementMission> missions, int chunkSize);
+}
@@ -0,0 +1,68 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Implements batch persistence of missions directly against the entity manager, since
+ * CrudRepository#saveAll keeps every saved entity managed until the transaction ends.
+ */
+@Slf4j
+public class ISettlementMissionBatchRpsyImpl implements ISettlementMissionBatchRpsy {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Override
+  @Transactional
+  public List<Long> persistInChunks(final Iterable<SettlementMission> missions,
+      final int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive but was " + chunkSize);
+    }
+
+    List<Long> ids = new ArrayList<>();
+    int chunkCount = 0;
+    int inChunk = 0;
+    long chunkStart = System.nanoTime();
+
+    for (SettlementMission mission : missions) {
+      // The sequence generator assigns the id on persist, before anything is flushed
+      entityManager.persist(mission);
+      ids.add(mission.getId());
+      inChunk++;
+
+      if (inChunk == chunkSize) {
+        chunkCount++;
+        flushChunk(chunkCount, inChunk, chunkStart);
+        inChunk = 0;
+        chunkStart = System.nanoTime();
+      }
+    }
+
+    if (inChunk > 0) {
+      flushChunk(chunkCount + 1, inChunk, chunkStart);
+    }
+
+    return ids;
+  }
+
+  /**
+   * Sends the pending inserts to the database, detaches the persisted missions and logs the
+   * throughput of the chunk.
+   */
+  private void flushChunk(final int chunkNumber, final int missionCount, final long chunkStart) {
+    entityManager.flush();
+    entityManager.clear();
+
+    long elapsedMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - chunkStart);
+    log.info("Persisted chunk {} of {} missions in {} ms ({} missions/s)", chunkNumber,
+        missionCount, elapsedMicros / 1000, missionCount * 1_000_000L / Math.max(elapsedMicros, 1));
+  }
+}
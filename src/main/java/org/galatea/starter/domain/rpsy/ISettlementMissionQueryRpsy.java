@@ -0,0 +1,37 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.List;
+import java.util.stream.Stream;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionCriteria;
+
+/**
+ * Custom repository fragment for walking large numbers of missions without loading them all at
+ * once. Missions are always returned in ascending id order.
+ */
+public interface ISettlementMissionQueryRpsy {
+
+  /**
+   * Retrieves the next page of missions matching the given criteria. Pages are keyed on the mission
+   * id rather than an offset, so each page costs the same no matter how deep into the results it
+   * is.
+   *
+   * @param criteria the filters the missions must match
+   * @param afterId the id of the last mission of the previous page, or null for the first page
+   * @param limit the maximum number of missions to return
+   * @return the matching missions with ids greater than afterId, in ascending id order
+   */
+  List<SettlementMission> findPage(SettlementMissionCriteria criteria, Long afterId, int limit);
+
+  /**
+   * Streams all missions matching the given criteria from an open database cursor, fetching rows
+   * in batches of settlement.stream-fetch-size. Each mission is detached from the persistence
+   * context as it is consumed, so memory use does not grow with the number of missions.
+   *
+   * <p>Must be called, and the stream consumed and closed, within a transaction.
+   *
+   * @param criteria the filters the missions must match
+   * @return the matching missions, in ascending id order
+   */
+  Stream<SettlementMission> streamMissions(SettlementMissionCriteria criteria);
+}
@@ -0,0 +1,90 @@
+package org.galatea.starter.domain.rpsy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionCriteria;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Implements keyset-paginated and streamed mission queries directly against the entity manager.
+ */
+@Slf4j
+public class ISettlementMissionQueryRpsyImpl implements ISettlementMissionQueryRpsy {
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Value("${settlement.stream-fetch-size:1000}")
+  private int streamFetchSize;
+
+  @Override
+  public List<SettlementMission> findPage(final SettlementMissionCriteria criteria,
+      final Long afterId, final int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("Page limit must be positive but was " + limit);
+    }
+
+    return createQuery(criteria, afterId)
+        .setHint(QueryHints.READ_ONLY, true)
+        .setMaxResults(limit)
+        .getResultList();
+  }
+
+  @Override
+  public Stream<SettlementMission> streamMissions(final SettlementMissionCriteria criteria) {
+    // Hibernate backs the stream with a forward-only cursor that is released when the stream is
+    // closed. Read-only entities don't need dirty checking snapshots, and detaching each one as it
+    // goes past stops the persistence context from holding on to every mission streamed so far.
+    return createQuery(criteria, null)
+        .setHint(QueryHints.FETCH_SIZE, streamFetchSize)
+        .setHint(QueryHints.READ_ONLY, true)
+        .getResultStream()
+        .peek(entityManager::detach);
+  }
+
+  /**
+   * Builds a query for the missions matching the given criteria with ids greater than afterId (if
+   * set), ordered by id.
+   */
+  private TypedQuery<SettlementMission> createQuery(final SettlementMissionCriteria criteria,
+      final Long afterId) {
+    List<String> conditions = new ArrayList<>();
+    Map<String, Object> parameters = new HashMap<>();
+
+    addCondition(conditions, parameters, "m.depot = :depot", "depot", criteria.getDepot());
+    addCondition(conditions, parameters, "m.instrument = :instrument", "instrument",
+        criteria.getInstrument());
+    addCondition(conditions, parameters, "m.externalParty = :externalParty", "externalParty",
+        criteria.getExternalParty());
+    addCondition(conditions, parameters, "m.id >= :fromId", "fromId", criteria.getFromId());
+    addCondition(conditions, parameters, "m.id <= :toId", "toId", criteria.getToId());
+    addCondition(conditions, parameters, "m.id > :afterId", "afterId", afterId);
+
+    String jpql = "select m from SettlementMission m"
+        + (conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions))
+        + " order by m.id";
+    log.debug("Querying missions with: {}", jpql);
+
+    TypedQuery<SettlementMission> query = entityManager.createQuery(jpql, SettlementMission.class);
+    parameters.forEach(query::setParameter);
+    return query;
+  }
+
+  private static void addCondition(final List<String> conditions,
+      final Map<String, Object> parameters, final String condition, final String parameterName,
+      final Object value) {
+    if (value != null) {
+      conditions.add(condition);
+      parameters.put(parameterName, value);
+    }
+  }
+}
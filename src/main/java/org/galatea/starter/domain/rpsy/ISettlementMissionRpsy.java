@@ -7,7 +7,13 @@ import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.repository.CrudRepository;
 
-public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission, Long> {
+public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission, Long>,
+    ISettlementMissionBatchRpsy, ISettlementMissionQueryRpsy {
+
+  /**
+   * Cache of missions by id. Entries hold the mission, or null if no mission had that id.
+   */
+  String MISSIONS_CACHE = "missions";
 
   /**
    * Retrieves all entities with the given depot.
@@ -15,11 +21,11 @@ public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission
   List<SettlementMission> findByDepot(String depot);
 
   @Override
-  @Cacheable(cacheNames = "missions", sync = true)
+  @Cacheable(cacheNames = MISSIONS_CACHE, sync = true)
   Optional<SettlementMission> findById(Long id);
 
   @Override
-  @CacheEvict(cacheNames = "missions")
+  @CacheEvict(cacheNames = MISSIONS_CACHE)
   void deleteById(Long id);
 
   /**
@@ -27,6 +33,6 @@ public interface ISettlementMissionRpsy extends CrudRepository<SettlementMission
    * specified. You must use position parameter bindings otherwise.
    */
   @Override
-  @CacheEvict(cacheNames = "missions", key = "#p0.getId()")
+  @CacheEvict(cacheNames = MISSIONS_CACHE, key = "#p0.getId()")
   <S extends SettlementMission> S save(S entity);
 }
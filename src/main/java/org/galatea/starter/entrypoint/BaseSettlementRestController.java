@@ -1,8 +1,11 @@
 package org.galatea.starter.entrypoint;
 
+import com.google.common.collect.Iterators;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import lombok.AccessLevel;
 import lombok.NonNull;
@@ -11,6 +14,7 @@ import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionCriteria;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.service.SettlementService;
 
@@ -37,6 +41,21 @@ public abstract class BaseSettlementRestController extends BaseRestController {
         .collect(Collectors.toSet());
   }
 
+  /**
+   * Invokes the settlement service once per chunk of agreements pulled from the given iterator, so
+   * only a single chunk is ever held in memory. Each chunk is persisted in its own transaction and
+   * its mission paths are handed to the sink as soon as that transaction has committed.
+   *
+   * <p>If a chunk fails, the chunks already handed to the sink stay committed; callers can resume
+   * the upload from the first agreement that was not acknowledged.
+   */
+  protected void settleAgreementsInChunks(final Iterator<TradeAgreement> agreements,
+      final int chunkSize, final String getMissionPath, final Consumer<Set<String>> chunkSink) {
+
+    Iterators.partition(agreements, chunkSize).forEachRemaining(
+        chunk -> chunkSink.accept(settleAgreementInternal(chunk, getMissionPath)));
+  }
+
   /**
    * Retrieves settlement missions from the settlement service.
    */
@@ -53,6 +72,22 @@ public abstract class BaseSettlementRestController extends BaseRestController {
     return settlementService.findMissions(ids);
   }
 
+  /**
+   * Retrieves one page of settlement missions from the settlement service.
+   */
+  protected List<SettlementMission> getMissionsPageInternal(
+      final SettlementMissionCriteria criteria, final Long afterId, final int limit) {
+    return settlementService.findMissionsPage(criteria, afterId, limit);
+  }
+
+  /**
+   * Streams settlement missions from the settlement service to the given consumer.
+   */
+  protected void streamMissionsInternal(final SettlementMissionCriteria criteria,
+      final Consumer<Iterable<SettlementMission>> consumer) {
+    settlementService.streamMissions(criteria, consumer);
+  }
+
   /**
    * Updates settlement mission, if it exists.
    */
@@ -0,0 +1,91 @@
+package org.galatea.starter.entrypoint;
+
+import java.util.Collections;
+import java.util.List;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.sf.aspect4log.Log;
+import net.sf.aspect4log.Log.Level;
+import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.entrypoint.messagecontracts.DeadLetterPage;
+import org.galatea.starter.utils.jms.DeadLetter;
+import org.galatea.starter.utils.jms.DeadLetterReplayer;
+import org.galatea.starter.utils.jms.DeadLetterReplayer.ReplayResult;
+import org.galatea.starter.utils.jms.DeadLetterStore;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Lists the agreement messages that failed processing, and puts them back on their queues once
+ * whatever made them fail has been fixed.
+ */
+@Slf4j
+@Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
+@Validated
+@RestController
+@RequiredArgsConstructor
+public class DeadLetterRestController {
+
+  // Upper bound on the page size a caller can ask for
+  private static final long MAX_DEAD_LETTERS_PAGE_SIZE = 1000;
+
+  @NonNull
+  private DeadLetterStore deadLetterStore;
+
+  @NonNull
+  private DeadLetterReplayer deadLetterReplayer;
+
+  /**
+   * Returns one page of dead letters, oldest first. Payloads are base64 encoded.
+   *
+   * @param queue only dead letters from this queue
+   * @param after the nextCursor of the previous page, if any
+   * @param limit the most dead letters to return
+   */
+  @GetMapping(value = "${mvc.deadLettersPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
+  public DeadLetterPage getDeadLetters(
+      @RequestParam(value = "queue", required = false) final String queue,
+      @RequestParam(value = "after", defaultValue = "0") final long after,
+      @RequestParam(value = "limit", defaultValue = "100") @Min(1)
+      @Max(MAX_DEAD_LETTERS_PAGE_SIZE) final int limit) {
+    List<DeadLetter> deadLetters = deadLetterStore.list(queue, after, limit);
+    Long nextCursor = deadLetters.size() < limit ? null
+        : deadLetters.get(deadLetters.size() - 1).getId();
+    return new DeadLetterPage(deadLetters, nextCursor);
+  }
+
+  /**
+   * Puts dead letters back on the queues they came off, in parallel batches, and returns once
+   * they've all been sent. Any that fail again go back to the dead-letter store.
+   *
+   * @param queue only replay dead letters from this queue
+   * @param limit the most dead letters to replay, oldest first. 0 for all of them.
+   */
+  @PostMapping(value = "${mvc.replayDeadLettersPath}",
+      produces = {MediaType.APPLICATION_JSON_VALUE})
+  public ReplayResult replayDeadLetters(
+      @RequestParam(value = "queue", required = false) final String queue,
+      @RequestParam(value = "limit", defaultValue = "0") @Min(0) final int limit)
+      throws InterruptedException {
+    return deadLetterReplayer.replay(queue, limit);
+  }
+
+  /**
+   * Discards a dead letter without replaying it, e.g. one that can never be processed.
+   */
+  @DeleteMapping(value = "${mvc.deadLetterPath}" + "{id}")
+  public void deleteDeadLetter(@PathVariable final Long id) {
+    if (deadLetterStore.delete(Collections.singletonList(id)) == 0) {
+      throw new EntityNotFoundException(DeadLetter.class, id.toString());
+    }
+  }
+}
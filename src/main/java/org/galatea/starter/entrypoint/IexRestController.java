@@ -1,21 +1,38 @@
 package org.galatea.starter.entrypoint;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.Min;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
-import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.domain.HistoricalBarSeries;
+import org.galatea.starter.domain.IexHistoricalPricesResult;
 import org.galatea.starter.domain.IexLastTradedPrice;
 import org.galatea.starter.domain.IexSymbol;
 import org.galatea.starter.service.IexService;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+/**
+ * Exposes IEX market data. Endpoints that have to go to IEX return as soon as the call is under
+ * way, and the response is sent once IEX answers, so no servlet thread sits waiting on IEX.
+ */
 @Slf4j
 @Log(enterLevel = Level.INFO, exitLevel = Level.INFO)
 @Validated
@@ -23,17 +40,43 @@ import org.springframework.web.bind.annotation.RestController;
 @RequiredArgsConstructor
 public class IexRestController {
 
+  // Writes one batch result per line
+  private static final ObjectWriter RESULT_WRITER =
+      new ObjectMapper().writerFor(IexHistoricalPricesResult.class);
+
   @NonNull
   private IexService iexService;
 
   /**
-   * Exposes an endpoint to get all of the symbols available on IEX.
-   *
-   * @return a list of all IexStockSymbols.
+   * Exposes an endpoint to get all of the symbols available on IEX. The JSON is rendered when the
+   * symbols are loaded, so all we do here is copy it to the response.
    */
   @GetMapping(value = "${mvc.iex.getAllSymbolsPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
-  public List<IexSymbol> getAllStockSymbols() {
-    return iexService.getAllSymbols();
+  public void getAllStockSymbols(final HttpServletResponse response) throws IOException {
+    byte[] json = iexService.getAllSymbolsJson();
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.setContentLength(json.length);
+    response.getOutputStream().write(json);
+  }
+
+  /**
+   * Search the symbols available on IEX.
+   *
+   * @param prefix symbols starting with this, ignoring case
+   * @param name symbols whose name contains this, ignoring case
+   * @param enabled only symbols that are, or aren't, enabled for trading
+   * @param type only symbols of this type, e.g. cs for common stock
+   * @param limit the most symbols to return
+   * @return the matching symbols, ordered by symbol
+   */
+  @GetMapping(value = "${mvc.iex.searchSymbolsPath}", produces = {MediaType.APPLICATION_JSON_VALUE})
+  public List<IexSymbol> searchStockSymbols(
+      @RequestParam(value = "prefix", required = false) final String prefix,
+      @RequestParam(value = "name", required = false) final String name,
+      @RequestParam(value = "enabled", required = false) final Boolean enabled,
+      @RequestParam(value = "type", required = false) final String type,
+      @RequestParam(value = "limit", defaultValue = "100") @Min(1) final int limit) {
+    return iexService.searchSymbols(prefix, name, enabled, type, limit);
   }
 
   /**
@@ -44,9 +87,9 @@ public class IexRestController {
    */
   @GetMapping(value = "${mvc.iex.getLastTradedPricePath}", produces = {
       MediaType.APPLICATION_JSON_VALUE})
-  public List<IexLastTradedPrice> getLastTradedPrice(
+  public CompletableFuture<List<IexLastTradedPrice>> getLastTradedPrice(
       @RequestParam(value = "symbols") final List<String> symbols) {
-    return iexService.getLastTradedPriceForSymbols(symbols);
+    return iexService.getLastTradedPriceForSymbolsAsync(symbols);
   }
 
   /** Get historical prices for the symbol
@@ -56,12 +99,63 @@ public class IexRestController {
    */
   @GetMapping(value = "${mvc.iex.getHistoricalPricesPath}", produces = {
       MediaType.APPLICATION_JSON_VALUE})
-  public List<IexHistoricalPrices> getHistoricalPrices(
+  public CompletableFuture<HistoricalBarSeries> getHistoricalPrices(
       @RequestParam(value = "symbol", required = false) final String symbol,
       @RequestParam(value="range", required = false) final String range,
-      @RequestParam(value="date", required = false) final String date) throws Exception{
+      @RequestParam(value="date", required = false) final String date) {
+
+    return iexService.getHistoricalPricesForSymbolsAsync(symbol, range, date);
+  }
+
+  /**
+   * Get historical prices for many symbols at once, as newline-delimited JSON.
+   *
+   * <p>The symbols are fetched concurrently, and one line is sent per symbol as soon as its prices
+   * are in, so lines come back in the order the symbols complete. A symbol whose prices couldn't
+   * be fetched gets a line with an error instead of prices.
+   *
+   * @param symbols the symbols to find historical prices for
+   * @param range an optional range to check
+   * @param date an optional date to check
+   * @return an emitter completed once every symbol's line has been sent. If the request times out
+   *     or the client goes away first, the symbols not yet started are abandoned.
+   */
+  // Each symbol goes out as soon as it's ready, rather than once the slowest symbol is in. The
+  // lines are handed to an emitter so Spring looks after the response, including not writing to
+  // it once the request has timed out.
+  @GetMapping(value = "${mvc.iex.getHistoricalPricesBatchPath}",
+      produces = MvcConfig.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<ResponseBodyEmitter> getHistoricalPricesBatch(
+      @RequestParam(value = "symbols") final List<String> symbols,
+      @RequestParam(value = "range", required = false) final String range,
+      @RequestParam(value = "date", required = false) final String date) {
+
+    ResponseBodyEmitter emitter = new ResponseBodyEmitter();
+    CompletableFuture<Void> batch = iexService.getHistoricalPricesForSymbols(symbols, range, date,
+        result -> sendResultLine(emitter, result));
+    emitter.onTimeout(() -> batch.cancel(false));
+    emitter.onError(e -> batch.cancel(false));
+    batch.whenComplete((ignored, e) -> {
+      if (e == null) {
+        emitter.complete();
+      } else if (!(e instanceof CancellationException)) {
+        emitter.completeWithError(e);
+      }
+    });
+    return ResponseEntity.ok().contentType(MvcConfig.APPLICATION_NDJSON).body(emitter);
+  }
 
-    return iexService.getHistoricalPricesForSymbols(symbol, range, date);
+  private void sendResultLine(final ResponseBodyEmitter emitter,
+      final IexHistoricalPricesResult result) {
+    try {
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      RESULT_WRITER.writeValue(line, result);
+      line.write('\n');
+      emitter.send(line.toByteArray(), MvcConfig.APPLICATION_NDJSON);
+    } catch (IOException e) {
+      // Most likely the client has gone away, which stops the rest of the batch
+      throw new UncheckedIOException(e);
+    }
   }
 
 }
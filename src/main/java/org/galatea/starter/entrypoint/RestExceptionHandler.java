@@ -2,9 +2,11 @@ package org.galatea.starter.entrypoint;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import feign.FeignException;
+import java.util.concurrent.RejectedExecutionException;
 import javax.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.galatea.starter.utils.exception.CircuitBreakerOpenException;
 import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -88,6 +90,22 @@ public class RestExceptionHandler {
     return buildResponseEntity(new ApiError(HttpStatus.BAD_REQUEST, errorMessage));
   }
 
+  @ExceptionHandler(CircuitBreakerOpenException.class)
+  protected ResponseEntity<Object> handleCircuitBreakerOpen(
+      final CircuitBreakerOpenException exception) {
+    log.debug("Upstream call refused", exception);
+    ApiError error = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, exception.getMessage());
+    return buildResponseEntity(error);
+  }
+
+  @ExceptionHandler(RejectedExecutionException.class)
+  protected ResponseEntity<Object> handleRejectedExecution(
+      final RejectedExecutionException exception) {
+    log.debug("Too many requests waiting on upstream calls", exception);
+    ApiError error = new ApiError(HttpStatus.SERVICE_UNAVAILABLE, "Too many requests in progress");
+    return buildResponseEntity(error);
+  }
+
   private ResponseEntity<Object> buildResponseEntity(final ApiError apiError) {
     return new ResponseEntity<>(apiError, apiError.getStatus());
   }
@@ -0,0 +1,133 @@
+package org.galatea.starter.entrypoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.TextMessage;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.jms.BatchJmsListenerEndpoint;
+import org.galatea.starter.utils.jms.BatchMessageListener;
+import org.galatea.starter.utils.jms.FuseJmsListenerContainerFactory;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jms.annotation.JmsListenerConfigurer;
+import org.springframework.jms.config.JmsListenerEndpointRegistrar;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Batched alternative to SettlementJmsListener, enabled with jms.batch.enabled=true. Agreements
+ * drained off the queues in one receive are settled with a single call to the settlement service,
+ * so their missions are persisted and committed together instead of one transaction per message.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "jms.batch.enabled", havingValue = "true")
+public class SettlementJmsBatchListener implements JmsListenerConfigurer {
+
+  @NonNull
+  protected SettlementService settlementService;
+
+  @NonNull
+  protected ITranslator<byte[], TradeAgreement> tradeAgreementProtoTranslator;
+
+  @NonNull
+  protected ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
+  @NonNull
+  protected ObjectMapper objectMapper;
+
+  @NonNull
+  protected BiConsumer<Message, Exception> failedMessageConsumer;
+
+  @NonNull
+  protected FuseJmsListenerContainerFactory jmsBatchListenerContainerFactory;
+
+  @Value("${jms.agreement-queue-json}")
+  protected String jsonQueueName;
+
+  @Value("${jms.agreement-queue-proto}")
+  protected String protoQueueName;
+
+  @Value("${jms.listener-concurrency}")
+  protected String listenerConcurrency;
+
+  /**
+   * Registers a batch listener endpoint for both the JSON and protobuf agreement queues.
+   */
+  @Override
+  public void configureJmsListeners(final JmsListenerEndpointRegistrar registrar) {
+    registrar.registerEndpoint(
+        createEndpoint("settleAgreementJsonBatch", jsonQueueName, this::settleAgreements),
+        jmsBatchListenerContainerFactory);
+    registrar.registerEndpoint(
+        createEndpoint("settleAgreementProtoBatch", protoQueueName, this::settleAgreements),
+        jmsBatchListenerContainerFactory);
+  }
+
+  /**
+   * Spawns missions for every TradeAgreement in the batch with a single call to the settlement
+   * service. Messages that can't be translated are handed to the failed message consumer
+   * individually so that one bad message doesn't hold up the rest of the batch.
+   */
+  public void settleAgreements(final List<Message> messages) {
+    log.info("Received batch of {} messages. Translating.", messages.size());
+
+    List<TradeAgreement> agreements = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      try {
+        agreements.add(translate(message));
+      } catch (JMSException | IOException | RuntimeException e) {
+        failedMessageConsumer.accept(message, e);
+      }
+    }
+
+    if (agreements.isEmpty()) {
+      return;
+    }
+
+    log.info("Handling {} agreements", agreements.size());
+    Set<Long> missionIds = settlementService.spawnMissions(agreements);
+    log.info("Created {} missions", missionIds.size());
+  }
+
+  protected TradeAgreement translate(final Message message) throws JMSException, IOException {
+    if (message instanceof TextMessage) {
+      TradeAgreementMessage agreementMessage = objectMapper
+          .readValue(((TextMessage) message).getText(), TradeAgreementMessage.class);
+      return tradeAgreementMessageTranslator.translate(agreementMessage);
+    }
+
+    if (message instanceof BytesMessage) {
+      BytesMessage bytesMessage = (BytesMessage) message;
+      byte[] payload = new byte[(int) bytesMessage.getBodyLength()];
+      bytesMessage.readBytes(payload);
+      return tradeAgreementProtoTranslator.translate(payload);
+    }
+
+    throw new MessageConversionException(
+        "Unsupported message type: " + message.getClass().getName());
+  }
+
+  protected BatchJmsListenerEndpoint createEndpoint(final String id, final String destination,
+      final BatchMessageListener listener) {
+    BatchJmsListenerEndpoint endpoint = new BatchJmsListenerEndpoint(listener);
+    endpoint.setId(id);
+    endpoint.setDestination(destination);
+    endpoint.setConcurrency(listenerConcurrency);
+    return endpoint;
+  }
+}
@@ -1,9 +1,17 @@
 package org.galatea.starter.entrypoint;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import javax.servlet.http.HttpServletResponse;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
@@ -11,6 +19,7 @@ import org.galatea.starter.domain.SettlementMission;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementResponseProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
 import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessages;
 import org.galatea.starter.service.SettlementService;
 import org.galatea.starter.utils.translation.ITranslator;
@@ -37,15 +46,25 @@ public class SettlementProtoRestController extends BaseSettlementRestController
 
   private static final String APPLICATION_X_PROTOBUF = "application/x-protobuf";
 
+  // A stream of varint length-prefixed messages, as written by MessageLite#writeDelimitedTo
+  private static final String APPLICATION_X_PROTOBUF_DELIMITED =
+      "application/x-protobuf-delimited";
+
   @NonNull
   private ITranslator<SettlementMission, SettlementMissionProtoMessage> settlementMissionTranslator;
 
   @NonNull
   private ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
+  @NonNull
+  private ITranslator<TradeAgreementProtoMessage, TradeAgreement> tradeAgreementProtoTranslator;
+
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
+  @Value("${mvc.settleMissionStreamChunkSize:1000}")
+  private int settleMissionStreamChunkSize;
+
   @Value("${mvc.getMissionPath}")
   private String getMissionPath;
 
@@ -57,10 +76,13 @@ public class SettlementProtoRestController extends BaseSettlementRestController
   public SettlementProtoRestController(final SettlementService settlementService,
       final ITranslator<TradeAgreementProtoMessages, List<TradeAgreement>> tradeAgreementTranslator,
       final ITranslator<SettlementMission, SettlementMissionProtoMessage>
-          settlementMissionTranslator) {
+          settlementMissionTranslator,
+      final ITranslator<TradeAgreementProtoMessage, TradeAgreement>
+          tradeAgreementProtoTranslator) {
     super(settlementService);
     this.settlementMissionTranslator = settlementMissionTranslator;
     this.tradeAgreementTranslator = tradeAgreementTranslator;
+    this.tradeAgreementProtoTranslator = tradeAgreementProtoTranslator;
   }
 
   /**
@@ -81,6 +103,50 @@ public class SettlementProtoRestController extends BaseSettlementRestController
         .build();
   }
 
+  /**
+   * Spawn settlement missions from a stream of length-delimited trade agreement messages.
+   *
+   * <p>Agreements are parsed incrementally and persisted in chunks, and one length-delimited
+   * SettlementResponseProtoMessage is written back (and flushed) per committed chunk.
+   */
+  @PostMapping(value = "${mvc.settleMissionStreamPath}",
+      consumes = APPLICATION_X_PROTOBUF_DELIMITED, produces = APPLICATION_X_PROTOBUF_DELIMITED)
+  public void settleAgreementStream(final InputStream body, final HttpServletResponse response,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException {
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    response.setContentType(APPLICATION_X_PROTOBUF_DELIMITED);
+    OutputStream out = response.getOutputStream();
+
+    Iterator<TradeAgreementProtoMessage> messages = new AbstractIterator<>() {
+      @Override
+      @SneakyThrows(IOException.class)
+      protected TradeAgreementProtoMessage computeNext() {
+        // parseDelimitedFrom returns null once the end of the stream has been reached
+        TradeAgreementProtoMessage next = TradeAgreementProtoMessage.parseDelimitedFrom(body);
+        return next == null ? endOfData() : next;
+      }
+    };
+
+    settleAgreementsInChunks(
+        Iterators.transform(messages, tradeAgreementProtoTranslator::translate),
+        settleMissionStreamChunkSize, getMissionPath,
+        missionPaths -> writeChunkResponse(out, missionPaths));
+  }
+
+  /**
+   * Writes the response for a single committed chunk as a length-delimited message and flushes it
+   * to the caller.
+   */
+  @SneakyThrows(IOException.class)
+  private void writeChunkResponse(final OutputStream out, final Set<String> missionPaths) {
+    SettlementResponseProtoMessage.newBuilder().addAllSpawnedMissionPaths(missionPaths).build()
+        .writeDelimitedTo(out);
+    out.flush();
+  }
+
   /**
    * Retrieves existing settlement mission messages.
    */
@@ -1,28 +1,48 @@
 package org.galatea.starter.entrypoint;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.Iterators;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import javax.servlet.http.HttpServletResponse;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import net.sf.aspect4log.Log.Level;
 import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionCriteria;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionPage;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementResponseMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
 import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.utils.http.converter.CsvSerializer;
+import org.galatea.starter.utils.http.converter.XlsxSerializer;
 import org.galatea.starter.utils.translation.ITranslator;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -42,6 +62,18 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 public class SettlementRestController extends BaseSettlementRestController {
 
+  // Upper bound on the page size a caller can ask for
+  private static final long MAX_MISSIONS_PAGE_SIZE = 10_000;
+
+  private static final ObjectMapper STREAMING_MAPPER = new ObjectMapper();
+
+  private static final ObjectReader AGREEMENT_READER =
+      STREAMING_MAPPER.readerFor(TradeAgreementMessage.class);
+
+  // Each chunk is written straight to the response stream, which must stay open between chunks
+  private static final ObjectWriter RESPONSE_WRITER = STREAMING_MAPPER
+      .writerFor(SettlementResponseMessage.class).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
   @NonNull
   ITranslator<SettlementMission, SettlementMissionMessage> settlementMissionTranslator;
 
@@ -51,12 +83,21 @@ public class SettlementRestController extends BaseSettlementRestController {
   @NonNull
   ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator;
 
+  @NonNull
+  ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator;
+
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
+  @Value("${mvc.settleMissionStreamChunkSize:1000}")
+  private int settleMissionStreamChunkSize;
+
   @Value("${mvc.getMissionPath}")
   private String getMissionPath;
 
+  @Value("${mvc.xlsxRowAccessWindowSize:100}")
+  private int xlsxRowAccessWindowSize;
+
   /**
    * Initializes a new instance of this class with the required arguments that will be autowired by
    * spring boot. This constructor was manually added because of the base class that has no default
@@ -66,11 +107,13 @@ public class SettlementRestController extends BaseSettlementRestController {
       final ITranslator<TradeAgreementMessages, List<TradeAgreement>> tradeAgreementTranslator,
       final ITranslator<SettlementMission, SettlementMissionMessage> settlementMissionTranslator,
       final ITranslator<SettlementMissionMessage, SettlementMission>
-          settlementMissionMsgTranslator) {
+          settlementMissionMsgTranslator,
+      final ITranslator<TradeAgreementMessage, TradeAgreement> tradeAgreementMessageTranslator) {
     super(settlementService);
     this.tradeAgreementTranslator = tradeAgreementTranslator;
     this.settlementMissionTranslator = settlementMissionTranslator;
     this.settlementMissionMsgTranslator = settlementMissionMsgTranslator;
+    this.tradeAgreementMessageTranslator = tradeAgreementMessageTranslator;
   }
 
   /**
@@ -95,6 +138,47 @@ public class SettlementRestController extends BaseSettlementRestController {
     return SettlementResponseMessage.builder().spawnedMissions(missionPaths).build();
   }
 
+  /**
+   * Generate Missions from a stream of newline-delimited JSON TradeAgreements.
+   *
+   * <p>Agreements are parsed incrementally and persisted in chunks, and one SettlementResponse line
+   * is written back (and flushed) per committed chunk, so memory use does not grow with the size of
+   * the upload.
+   */
+  // We read the request body and write the response body ourselves rather than binding them, since
+  // binding would require the whole payload to be materialized up front
+  @PostMapping(value = "${mvc.settleMissionStreamPath}",
+      consumes = MvcConfig.APPLICATION_NDJSON_VALUE, produces = MvcConfig.APPLICATION_NDJSON_VALUE)
+  public void settleAgreementStream(final InputStream body, final HttpServletResponse response,
+      @RequestParam(value = "requestId", required = false) final String requestId)
+      throws IOException {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    response.setContentType(MvcConfig.APPLICATION_NDJSON_VALUE);
+    OutputStream out = response.getOutputStream();
+
+    try (MappingIterator<TradeAgreementMessage> messages = AGREEMENT_READER.readValues(body)) {
+      settleAgreementsInChunks(
+          Iterators.transform(messages, tradeAgreementMessageTranslator::translate),
+          settleMissionStreamChunkSize, getMissionPath,
+          missionPaths -> writeChunkResponse(out, missionPaths));
+    }
+  }
+
+  /**
+   * Writes the response for a single committed chunk as one line of JSON and flushes it to the
+   * caller.
+   */
+  @SneakyThrows(IOException.class)
+  private void writeChunkResponse(final OutputStream out, final Set<String> missionPaths) {
+    RESPONSE_WRITER.writeValue(out,
+        SettlementResponseMessage.builder().spawnedMissions(missionPaths).build());
+    out.write('\n');
+    out.flush();
+  }
+
   /**
    * Retrieve a previously generated Mission.
    */
@@ -145,6 +229,133 @@ public class SettlementRestController extends BaseSettlementRestController {
     return new SettlementMissionList(missions);
   }
 
+  /**
+   * Retrieve one page of the missions matching the given filters, in ascending id order.
+   */
+  // Pages are keyed on the last mission id of the previous page rather than an offset, so the
+  // database never has to scan past the missions already returned
+  @GetMapping(value = "${mvc.getMissionsPagePath}", produces = {
+      MediaType.APPLICATION_JSON_VALUE,
+      MediaType.APPLICATION_XML_VALUE})
+  public SettlementMissionPage getMissionsPage(
+      @RequestParam(value = "depot", required = false) final String depot,
+      @RequestParam(value = "instrument", required = false) final String instrument,
+      @RequestParam(value = "externalParty", required = false) final String externalParty,
+      @RequestParam(value = "fromId", required = false) final Long fromId,
+      @RequestParam(value = "toId", required = false) final Long toId,
+      // The nextCursor of the previous page, if any
+      @RequestParam(value = "after", required = false) final Long after,
+      @RequestParam(value = "limit", defaultValue = "${mvc.missionsPageSize:1000}")
+      @Min(1) @Max(MAX_MISSIONS_PAGE_SIZE) final int limit,
+      @RequestParam(value = "requestId", required = false) final String requestId) {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    SettlementMissionCriteria criteria =
+        buildCriteria(depot, instrument, externalParty, fromId, toId);
+
+    // Fetch one extra mission to find out whether there is another page without a second query
+    List<SettlementMission> missions = getMissionsPageInternal(criteria, after, limit + 1);
+    Long nextCursor = null;
+    if (missions.size() > limit) {
+      missions = missions.subList(0, limit);
+      nextCursor = missions.get(limit - 1).getId();
+    }
+
+    return new SettlementMissionPage(missions, nextCursor);
+  }
+
+  /**
+   * Stream all missions matching the given filters, in ascending id order, as JSON, CSV or XLSX.
+   *
+   * <p>Missions are written to the response as they are read from the database cursor, so memory
+   * use does not grow with the number of missions.
+   */
+  // We write the response body ourselves since returning a SettlementMissionList would require all
+  // of the missions to be loaded up front. The format is chosen with the same 'format' parameter
+  // used for content negotiation elsewhere, and the JSON output has the same shape as getMissions.
+  @GetMapping(value = "${mvc.streamMissionsPath}")
+  public void streamMissions(
+      @RequestParam(value = "depot", required = false) final String depot,
+      @RequestParam(value = "instrument", required = false) final String instrument,
+      @RequestParam(value = "externalParty", required = false) final String externalParty,
+      @RequestParam(value = "fromId", required = false) final Long fromId,
+      @RequestParam(value = "toId", required = false) final Long toId,
+      @RequestParam(value = "format", defaultValue = "json") final String format,
+      @RequestParam(value = "requestId", required = false) final String requestId,
+      final HttpServletResponse response) throws IOException, HttpMediaTypeNotAcceptableException {
+
+    // if an external request id was provided, grab it
+    processRequestId(requestId);
+
+    SettlementMissionCriteria criteria =
+        buildCriteria(depot, instrument, externalParty, fromId, toId);
+    OutputStream out = response.getOutputStream();
+
+    switch (format) {
+      case "json":
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        streamMissionsInternal(criteria, missions -> writeMissionsJson(out, missions));
+        break;
+      case "csv":
+        response.setContentType(MvcConfig.TEXT_CSV_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=SettlementMissions.csv");
+        streamMissionsInternal(criteria, missions -> writeMissionsCsv(out, missions));
+        break;
+      case "xlsx":
+        response.setContentType(MvcConfig.APPLICATION_EXCEL_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            "attachment; filename=SettlementMissions.xlsx");
+        streamMissionsInternal(criteria, missions -> writeMissionsXlsx(out, missions));
+        break;
+      default:
+        throw new HttpMediaTypeNotAcceptableException(Arrays.asList(MediaType.APPLICATION_JSON,
+            MvcConfig.TEXT_CSV, MvcConfig.APPLICATION_EXCEL));
+    }
+
+    out.flush();
+  }
+
+  private static SettlementMissionCriteria buildCriteria(final String depot,
+      final String instrument, final String externalParty, final Long fromId, final Long toId) {
+    return SettlementMissionCriteria.builder().depot(depot).instrument(instrument)
+        .externalParty(externalParty).fromId(fromId).toId(toId).build();
+  }
+
+  /**
+   * Writes the missions in the same {"settlementMissions": [...]} shape as getMissions, one mission
+   * at a time.
+   */
+  @SneakyThrows(IOException.class)
+  private void writeMissionsJson(final OutputStream out,
+      final Iterable<SettlementMission> missions) {
+    try (JsonGenerator generator = STREAMING_MAPPER.getFactory().createGenerator(out)
+        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("settlementMissions");
+      for (SettlementMission mission : missions) {
+        generator.writeObject(mission);
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    }
+  }
+
+  @SneakyThrows(IOException.class)
+  private void writeMissionsCsv(final OutputStream out,
+      final Iterable<SettlementMission> missions) {
+    CsvSerializer.serializeToCsv(missions, SettlementMission.class, out);
+  }
+
+  @SneakyThrows(IOException.class)
+  private void writeMissionsXlsx(final OutputStream out,
+      final Iterable<SettlementMission> missions) {
+    XlsxSerializer.serializeToXlsx(missions, SettlementMission.class, out,
+        xlsxRowAccessWindowSize);
+  }
+
   /**
    * Update an existing mission given an ID.
    */
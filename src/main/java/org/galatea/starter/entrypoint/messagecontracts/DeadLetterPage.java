@@ -0,0 +1,22 @@
+package org.galatea.starter.entrypoint.messagecontracts;
+
+import java.util.List;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.galatea.starter.utils.jms.DeadLetter;
+
+/**
+ * One page of dead letters, oldest first. Pass nextCursor back as the 'after' parameter to get the
+ * following page; it is null on the last page.
+ */
+@AllArgsConstructor()
+@NoArgsConstructor(access = AccessLevel.PRIVATE) // For spring and jackson
+@Data
+public class DeadLetterPage {
+
+  protected List<DeadLetter> deadLetters;
+
+  protected Long nextCursor;
+}
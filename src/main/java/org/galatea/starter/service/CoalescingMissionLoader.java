@@ -0,0 +1,156 @@
+package org.galatea.starter.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads single missions by id, coalescing concurrent lookups. Lookups that miss the missions cache
+ * and arrive within settlement.coalesce.window-millis of each other are merged into one
+ * findAllById query, and each caller is handed its own mission from the result.
+ *
+ * <p>Coalescing is off when the window is zero or less, in which case lookups go straight to
+ * findById.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class CoalescingMissionLoader {
+
+  @NonNull
+  ISettlementMissionRpsy missionrpsy;
+
+  @NonNull
+  CacheManager cacheManager;
+
+  @Value("${settlement.coalesce.window-millis:0}")
+  private long windowMillis;
+
+  // A batch is loaded straight away, without waiting for the window to close, once it is this big
+  @Value("${settlement.coalesce.max-batch-size:100}")
+  private int maxBatchSize;
+
+  @Value("${settlement.coalesce.loader-threads:2}")
+  private int loaderThreads;
+
+  private final Object lock = new Object();
+
+  // Guarded by lock
+  private Map<Long, CompletableFuture<Optional<SettlementMission>>> pending = new HashMap<>();
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Starts the threads that load coalesced batches.
+   */
+  @PostConstruct
+  public void start() {
+    if (windowMillis > 0) {
+      scheduler = Executors.newScheduledThreadPool(loaderThreads,
+          new ThreadFactoryBuilder().setNameFormat("mission-loader-%d").setDaemon(true).build());
+    }
+  }
+
+  /**
+   * Stops the loader threads. Batches that are already being loaded are allowed to finish.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+    }
+  }
+
+  /**
+   * Retrieve the mission with the given id, from the missions cache if it's there.
+   *
+   * @param id the ID of the mission to retrieve
+   */
+  public Optional<SettlementMission> findMission(final Long id) {
+    if (scheduler == null) {
+      return missionrpsy.findById(id);
+    }
+
+    Cache cache = cacheManager.getCache(ISettlementMissionRpsy.MISSIONS_CACHE);
+    Cache.ValueWrapper cached = cache.get(id);
+    if (cached != null) {
+      return Optional.ofNullable((SettlementMission) cached.get());
+    }
+
+    try {
+      return enqueue(id).join();
+    } catch (CompletionException e) {
+      // Surface the exception from the batch load as if this caller had made the query itself
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Adds the id to the pending batch, scheduling the batch to be loaded if it's a new one.
+   */
+  private CompletableFuture<Optional<SettlementMission>> enqueue(final Long id) {
+    synchronized (lock) {
+      // Concurrent lookups of the same id share one future
+      CompletableFuture<Optional<SettlementMission>> future =
+          pending.computeIfAbsent(id, key -> new CompletableFuture<>());
+
+      if (pending.size() >= maxBatchSize) {
+        scheduler.execute(this::loadPending);
+      } else if (pending.size() == 1) {
+        scheduler.schedule(this::loadPending, windowMillis, TimeUnit.MILLISECONDS);
+      }
+
+      return future;
+    }
+  }
+
+  /**
+   * Loads all pending lookups with a single query and completes their futures.
+   */
+  private void loadPending() {
+    Map<Long, CompletableFuture<Optional<SettlementMission>>> batch;
+    synchronized (lock) {
+      if (pending.isEmpty()) {
+        // Already loaded because it filled up before its window closed
+        return;
+      }
+      batch = pending;
+      pending = new HashMap<>();
+    }
+
+    log.debug("Loading {} coalesced mission lookup(s)", batch.size());
+    try {
+      Cache cache = cacheManager.getCache(ISettlementMissionRpsy.MISSIONS_CACHE);
+      Map<Long, SettlementMission> found = new HashMap<>();
+      for (SettlementMission mission : missionrpsy.findAllById(batch.keySet())) {
+        found.put(mission.getId(), mission);
+        cache.put(mission.getId(), mission);
+      }
+
+      batch.forEach((id, future) -> future.complete(Optional.ofNullable(found.get(id))));
+    } catch (RuntimeException e) {
+      log.warn("Failed to load {} coalesced mission lookup(s)", batch.size(), e);
+      batch.values().forEach(future -> future.completeExceptionally(e));
+    }
+  }
+}
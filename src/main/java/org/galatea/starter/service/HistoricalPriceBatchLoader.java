@@ -0,0 +1,161 @@
+package org.galatea.starter.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.HistoricalBarSeries;
+import org.galatea.starter.domain.IexHistoricalPricesResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fetches historical prices for many symbols at once, a bounded number at a time.
+ *
+ * <p>At most iex.historical-batch.parallelism symbols of one batch are fetched at the same time,
+ * on the IEX call threads. No thread waits on the batch as a whole: as each symbol completes, its
+ * result is handed over and the next symbol is started. A symbol that fails is handed back with
+ * its error rather than failing the rest of the batch.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class HistoricalPriceBatchLoader {
+
+  /**
+   * Fetches the prices for one symbol.
+   */
+  @FunctionalInterface
+  public interface PriceFetcher {
+
+    /**
+     * Returns the prices for the symbol.
+     */
+    HistoricalBarSeries fetch(String symbol) throws Exception;
+  }
+
+  @NonNull
+  IexCallExecutor iexCallExecutor;
+
+  @Value("${iex.historical-batch.parallelism:8}")
+  private int parallelism;
+
+  /**
+   * Fetch the prices for each of the symbols, handing each result to onResult as it completes.
+   * Symbols are case-insensitive and repeats are only fetched once.
+   *
+   * <p>onResult is called on the IEX call threads, one result at a time. If it throws, no more
+   * symbols are started and the returned future fails with the exception. Cancelling the returned
+   * future does the same, and waits for a result being handed over to finish, so onResult is
+   * never called once cancel has returned.
+   *
+   * @param symbols the symbols to fetch prices for
+   * @param fetcher fetches the prices for one symbol
+   * @param onResult called with the result for each symbol
+   * @return a future completed once every symbol's result has been handed over
+   */
+  public CompletableFuture<Void> load(final List<String> symbols, final PriceFetcher fetcher,
+      final Consumer<IexHistoricalPricesResult> onResult) {
+    Set<String> distinct = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      distinct.add(symbol.toUpperCase(Locale.ROOT));
+    }
+
+    Batch batch = new Batch(distinct, fetcher, onResult);
+    if (distinct.isEmpty()) {
+      batch.done.complete(null);
+    }
+    for (int i = 0; i < Math.min(Math.max(1, parallelism), distinct.size()); i++) {
+      batch.fetchNext();
+    }
+    return batch.done;
+  }
+
+  /**
+   * One call to load. Each of the parallelism lanes fetches a symbol, hands over its result, and
+   * moves on to the next symbol until there are none left.
+   */
+  private final class Batch {
+
+    private final Iterator<String> waiting;
+
+    private final PriceFetcher fetcher;
+
+    private final Consumer<IexHistoricalPricesResult> onResult;
+
+    private final CompletableFuture<Void> done = new CompletableFuture<Void>() {
+      @Override
+      public boolean cancel(final boolean mayInterruptIfRunning) {
+        synchronized (Batch.this) {
+          return super.cancel(mayInterruptIfRunning);
+        }
+      }
+    };
+
+    // Guarded by this
+    private int remaining;
+
+    private Batch(final Set<String> symbols, final PriceFetcher fetcher,
+        final Consumer<IexHistoricalPricesResult> onResult) {
+      this.waiting = symbols.iterator();
+      this.remaining = symbols.size();
+      this.fetcher = fetcher;
+      this.onResult = onResult;
+    }
+
+    private void fetchNext() {
+      String symbol;
+      synchronized (this) {
+        if (done.isDone() || !waiting.hasNext()) {
+          return;
+        }
+        symbol = waiting.next();
+      }
+
+      try {
+        CompletableFuture.supplyAsync(() -> fetch(symbol), iexCallExecutor)
+            .thenAccept(this::finished);
+      } catch (RejectedExecutionException e) {
+        done.completeExceptionally(e);
+      }
+    }
+
+    private void finished(final IexHistoricalPricesResult result) {
+      synchronized (this) {
+        if (done.isDone()) {
+          // Cancelled, or an earlier result couldn't be handed over
+          return;
+        }
+        try {
+          onResult.accept(result);
+        } catch (RuntimeException e) {
+          done.completeExceptionally(e);
+          return;
+        }
+        if (--remaining == 0) {
+          done.complete(null);
+          return;
+        }
+      }
+      fetchNext();
+    }
+
+    private IexHistoricalPricesResult fetch(final String symbol) {
+      try {
+        return IexHistoricalPricesResult.builder().symbol(symbol).prices(fetcher.fetch(symbol))
+            .build();
+      } catch (Exception e) {
+        log.warn("Error fetching historical prices for {}: {}", symbol, e.toString());
+        String error = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        return IexHistoricalPricesResult.builder().symbol(symbol).error(error).build();
+      }
+    }
+  }
+}
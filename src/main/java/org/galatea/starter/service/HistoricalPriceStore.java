@@ -0,0 +1,351 @@
+package org.galatea.starter.service;
+
+import com.google.common.util.concurrent.Striped;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.HistoricalBarSeries;
+import org.galatea.starter.domain.IexHistoricalPriceBar;
+import org.galatea.starter.domain.IexHistoricalPriceCoverage;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.rpsy.IIexHistoricalPriceBarRpsy;
+import org.galatea.starter.domain.rpsy.IIexHistoricalPriceCoverageRpsy;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Local store of daily historical prices, so ranges we've already fetched from IEX are answered
+ * without going back to it.
+ *
+ * <p>A bar never changes once its day has closed, so closed bars are kept for good, along with the
+ * run of days each symbol's bars cover. A range request that falls within that run is answered
+ * from the store. If the run stops short of the last closed day, only the missing days are
+ * fetched, using the smallest IEX range that reaches back far enough. If the request reaches back
+ * further than the run, the whole range is fetched once and the run is extended to cover it.
+ *
+ * <p>The run only reaches as far as the latest bar IEX sent back, and the weekend after it. A
+ * weekday with no bar may just not be published yet, so it's fetched again next time rather than
+ * taken to be a day the market was shut.
+ *
+ * <p>5d is the last 5 trading days rather than a run of calendar days, so it's answered with the
+ * last 5 bars stored, after making sure the run reaches back far enough to hold them.
+ *
+ * <p>IEX is called outside of any transaction, so a slow IEX doesn't hold a database connection.
+ * Only storing what it sent back is done in a transaction.
+ *
+ * <p>Only daily ranges are stored. Intraday ranges and anything IEX doesn't document go straight
+ * through. Today's bar is never stored since it's still changing, so ranges answered from the
+ * store end at the last closed day.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class HistoricalPriceStore {
+
+  // IEX's default chart range, used when no range is asked for
+  static final String DEFAULT_RANGE = "1m";
+
+  // IEX dates are in exchange time, so that's when its days close
+  private static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+
+  private static final DateTimeFormatter REQUEST_DATE_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+  // Daily ranges, smallest first, and how far back each one reaches from today. max is all the
+  // data IEX has, up to 15 years.
+  private static final Map<String, Function<LocalDate, LocalDate>> RANGE_STARTS =
+      new LinkedHashMap<>();
+
+  static {
+    // 5 trading days always reach back at least 4 calendar days
+    RANGE_STARTS.put("5d", today -> today.minusDays(4));
+    RANGE_STARTS.put("1m", today -> today.minusMonths(1));
+    RANGE_STARTS.put("3m", today -> today.minusMonths(3));
+    RANGE_STARTS.put("6m", today -> today.minusMonths(6));
+    RANGE_STARTS.put("ytd", today -> today.withDayOfYear(1));
+    RANGE_STARTS.put("1y", today -> today.minusYears(1));
+    RANGE_STARTS.put("2y", today -> today.minusYears(2));
+    RANGE_STARTS.put("5y", today -> today.minusYears(5));
+    RANGE_STARTS.put("max", today -> today.minusYears(15));
+  }
+
+  // Ranges IEX counts in trading days rather than calendar days, and how many days they hold
+  private static final Map<String, Integer> TRADING_DAY_RANGES =
+      Collections.singletonMap("5d", 5);
+
+  // Enough calendar days to hold any one trading day, allowing for weekends and holidays
+  private static final int CALENDAR_DAYS_PER_TRADING_DAY = 3;
+
+  private static final Counter LOCAL_HITS =
+      Metrics.counter("iex.historical.store.requests", "result", "local");
+  private static final Counter PARTIAL_FETCHES =
+      Metrics.counter("iex.historical.store.requests", "result", "partial");
+  private static final Counter FULL_FETCHES =
+      Metrics.counter("iex.historical.store.requests", "result", "full");
+
+  @NonNull
+  IexClient iexClient;
+
+  @NonNull
+  IIexHistoricalPriceBarRpsy barRpsy;
+
+  @NonNull
+  IIexHistoricalPriceCoverageRpsy coverageRpsy;
+
+  @NonNull
+  PlatformTransactionManager transactionManager;
+
+  @Setter(AccessLevel.PACKAGE)
+  private Clock clock = Clock.system(EXCHANGE_ZONE);
+
+  // One symbol is only ever filled in by one request at a time. Whoever comes second finds the
+  // bars already stored.
+  private final Striped<Lock> symbolLocks = Striped.lock(64);
+
+  /**
+   * Get the daily bars for the symbol over one of IEX's chart ranges.
+   *
+   * @param symbol a valid symbol
+   * @param range an IEX chart range, or null for IEX's default range
+   * @return the bars, oldest first
+   */
+  public HistoricalBarSeries getRange(final String symbol, final String range) {
+    String rangeKey = range == null ? DEFAULT_RANGE : range.toLowerCase(Locale.ROOT);
+    Function<LocalDate, LocalDate> rangeStart = RANGE_STARTS.get(rangeKey);
+    if (rangeStart == null) {
+      return HistoricalBarSeries.fromPrices(iexClient.getHistoricalPricesRange(symbol, range));
+    }
+
+    String key = symbol.toUpperCase(Locale.ROOT);
+    LocalDate today = LocalDate.now(clock);
+    LocalDate lastClosed = today.minusDays(1);
+    Integer tradingDays = TRADING_DAY_RANGES.get(rangeKey);
+    LocalDate from;
+    Supplier<List<IexHistoricalPrices>> fetchRange;
+    if (tradingDays != null) {
+      // Fetch a calendar range sure to hold that many closed days. IEX's own range may include
+      // today, leaving one closed day short.
+      from = today.minusDays((long) CALENDAR_DAYS_PER_TRADING_DAY * tradingDays);
+      String wholeRange = smallestRangeReaching(from, today);
+      fetchRange = () -> iexClient.getHistoricalPricesRange(symbol, wholeRange);
+    } else {
+      from = rangeStart.apply(today);
+      fetchRange = range == null
+          ? () -> iexClient.getHistoricalPricesForSymbol(symbol)
+          : () -> iexClient.getHistoricalPricesRange(symbol, range);
+    }
+
+    return withSymbolLocked(key, () -> {
+      Optional<IexHistoricalPriceCoverage> coverage = coverageRpsy.findById(key);
+
+      if (!coverage.isPresent() || from.isBefore(coverage.get().getFromDate())) {
+        // Nothing stored that far back, so fetch the whole range
+        FULL_FETCHES.increment();
+        List<IexHistoricalPrices> fetched = fetchRange.get();
+        inTransaction(() -> {
+          LocalDate coveredTo = coveredUpTo(store(key, fetched, from, today), lastClosed);
+          if (coveredTo == null) {
+            // Nothing came back, so there's nothing we can say is covered
+            return;
+          }
+          IexHistoricalPriceCoverage updated = new IexHistoricalPriceCoverage(key, from, coveredTo);
+          coverage.filter(old -> old.getToDate().isAfter(coveredTo)
+              && !coveredTo.isBefore(old.getFromDate().minusDays(1)))
+              .ifPresent(old -> updated.setToDate(old.getToDate()));
+          coverageRpsy.save(updated);
+        });
+        if (tradingDays == null) {
+          return HistoricalBarSeries.fromPrices(fetched);
+        }
+      } else {
+        IexHistoricalPriceCoverage covered = coverage.get();
+        if (covered.getToDate().isBefore(lastClosed)) {
+          // Only fetch the days that have closed since we last asked
+          PARTIAL_FETCHES.increment();
+          LocalDate gapStart = covered.getToDate().plusDays(1);
+          String gapRange = smallestRangeReaching(gapStart, today);
+          log.debug("Fetching {} from {} to fill in {} onwards", key, gapRange, gapStart);
+          List<IexHistoricalPrices> fetched = iexClient.getHistoricalPricesRange(symbol, gapRange);
+          inTransaction(() -> {
+            LocalDate coveredTo = coveredUpTo(store(key, fetched, gapStart, today), lastClosed);
+            if (coveredTo != null && coveredTo.isAfter(covered.getToDate())) {
+              covered.setToDate(coveredTo);
+              coverageRpsy.save(covered);
+            }
+          });
+        } else {
+          LOCAL_HITS.increment();
+        }
+      }
+
+      List<IexHistoricalPriceBar> bars =
+          barRpsy.findBySymbolAndDateBetweenOrderByDate(key, from, lastClosed);
+      if (tradingDays != null && bars.size() > tradingDays) {
+        bars = bars.subList(bars.size() - tradingDays, bars.size());
+      }
+      return toSeries(bars);
+    });
+  }
+
+  /**
+   * Get the daily bar for the symbol on one date.
+   *
+   * @param symbol a valid symbol
+   * @param date the date, as yyyyMMdd
+   * @return the bar, or nothing if the date wasn't a trading day
+   */
+  public HistoricalBarSeries getDate(final String symbol, final String date) {
+    LocalDate day;
+    try {
+      day = LocalDate.parse(date, REQUEST_DATE_FORMAT);
+    } catch (DateTimeParseException e) {
+      // Let IEX tell the caller what's wrong with it
+      return HistoricalBarSeries.fromPrices(iexClient.getHistoricalPricesDate(symbol, date));
+    }
+
+    LocalDate today = LocalDate.now(clock);
+    if (!day.isBefore(today)) {
+      return HistoricalBarSeries.fromPrices(iexClient.getHistoricalPricesDate(symbol, date));
+    }
+
+    String key = symbol.toUpperCase(Locale.ROOT);
+    return withSymbolLocked(key, () -> {
+      Optional<IexHistoricalPriceBar> bar =
+          barRpsy.findById(new IexHistoricalPriceBar.Key(key, day));
+      if (bar.isPresent()) {
+        LOCAL_HITS.increment();
+        return toSeries(Collections.singletonList(bar.get()));
+      }
+
+      Optional<IexHistoricalPriceCoverage> coverage = coverageRpsy.findById(key);
+      if (coverage.isPresent() && coverage.get().covers(day, day)) {
+        // Covered but no bar, so the market was shut that day
+        LOCAL_HITS.increment();
+        return HistoricalBarSeries.empty();
+      }
+
+      FULL_FETCHES.increment();
+      List<IexHistoricalPrices> fetched = iexClient.getHistoricalPricesDate(symbol, date);
+      inTransaction(() -> store(key, fetched, day, today));
+      return HistoricalBarSeries.fromPrices(fetched);
+    });
+  }
+
+  private <T> T withSymbolLocked(final String key, final Supplier<T> work) {
+    Lock lock = symbolLocks.get(key);
+    lock.lock();
+    try {
+      return work.get();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Runs the work in a transaction of its own, so the bars and coverage it stores go in together.
+   */
+  private void inTransaction(final Runnable work) {
+    new TransactionTemplate(transactionManager).execute(status -> {
+      work.run();
+      return null;
+    });
+  }
+
+  /**
+   * Stores the fetched bars dated from from up to, but not including, today that aren't stored
+   * already.
+   *
+   * @return the date of the latest of those bars, stored already or not, or null if there were none
+   */
+  private LocalDate store(final String key, final List<IexHistoricalPrices> fetched,
+      final LocalDate from, final LocalDate today) {
+    LocalDate lastClosed = today.minusDays(1);
+    Set<LocalDate> stored = barRpsy.findBySymbolAndDateBetweenOrderByDate(key, from, lastClosed)
+        .stream().map(IexHistoricalPriceBar::getDate).collect(Collectors.toSet());
+
+    List<IexHistoricalPriceBar> bars = new ArrayList<>();
+    Set<LocalDate> seen = new HashSet<>();
+    LocalDate latest = null;
+    for (IexHistoricalPrices prices : fetched) {
+      LocalDate day = parseBarDate(prices.getDate());
+      if (day == null || day.isBefore(from) || !day.isBefore(today)) {
+        continue;
+      }
+      if (latest == null || day.isAfter(latest)) {
+        latest = day;
+      }
+      if (!stored.contains(day) && seen.add(day)) {
+        bars.add(IexHistoricalPriceBar.of(key, day, prices));
+      }
+    }
+    barRpsy.saveAll(bars);
+    log.debug("Stored {} new bars for {}", bars.size(), key);
+    return latest;
+  }
+
+  /**
+   * Returns the last day a fetch whose latest bar was on latestBar covers: that day and the weekend
+   * after it, up to lastClosed. Null if the fetch had no bars.
+   */
+  private static LocalDate coveredUpTo(final LocalDate latestBar, final LocalDate lastClosed) {
+    if (latestBar == null) {
+      return null;
+    }
+    LocalDate coveredTo = latestBar;
+    while (coveredTo.isBefore(lastClosed) && isWeekend(coveredTo.plusDays(1))) {
+      coveredTo = coveredTo.plusDays(1);
+    }
+    return coveredTo;
+  }
+
+  private static boolean isWeekend(final LocalDate day) {
+    return day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY;
+  }
+
+  private static LocalDate parseBarDate(final String date) {
+    try {
+      return date == null ? null : LocalDate.parse(date);
+    } catch (DateTimeParseException e) {
+      log.warn("Not storing a bar with unexpected date {}", date);
+      return null;
+    }
+  }
+
+  private static String smallestRangeReaching(final LocalDate day, final LocalDate today) {
+    for (Map.Entry<String, Function<LocalDate, LocalDate>> range : RANGE_STARTS.entrySet()) {
+      if (!range.getValue().apply(today).isAfter(day)) {
+        return range.getKey();
+      }
+    }
+    return "max";
+  }
+
+  private static HistoricalBarSeries toSeries(final List<IexHistoricalPriceBar> bars) {
+    HistoricalBarSeries.Builder series = HistoricalBarSeries.builder(bars.size());
+    bars.forEach(bar -> bar.addTo(series));
+    return series.build();
+  }
+}
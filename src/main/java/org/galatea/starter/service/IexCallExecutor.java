@@ -0,0 +1,72 @@
+package org.galatea.starter.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Metrics;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The threads IEX calls are made on, kept apart from the servlet threads so a slow IEX only ties
+ * up these threads and not the ones serving everything else.
+ *
+ * <p>At most iex.async.threads calls are made at once, and at most iex.async.queue-size more wait
+ * their turn. Anything beyond that is rejected with a RejectedExecutionException rather than
+ * queueing without bound. Tasks run with the logging context of the thread that submitted them.
+ */
+@Slf4j
+@Component
+public class IexCallExecutor implements Executor {
+
+  @Value("${iex.async.threads:8}")
+  private int threads;
+
+  @Value("${iex.async.queue-size:1000}")
+  private int queueSize;
+
+  private ThreadPoolExecutor executor;
+
+  /**
+   * Starts the threads that make IEX calls.
+   */
+  @PostConstruct
+  public void start() {
+    executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+        new ThreadFactoryBuilder().setNameFormat("iex-call-%d").setDaemon(true).build());
+    Metrics.gauge("iex.calls.active", executor, ThreadPoolExecutor::getActiveCount);
+    Metrics.gauge("iex.calls.queued", executor, pool -> pool.getQueue().size());
+  }
+
+  /**
+   * Stops the threads, abandoning any calls in progress.
+   */
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  @Override
+  public void execute(final Runnable task) {
+    Map<String, String> mdc = MDC.getCopyOfContextMap();
+    executor.execute(() -> {
+      // Log against the request that made the call
+      if (mdc != null) {
+        MDC.setContextMap(mdc);
+      }
+      try {
+        task.run();
+      } finally {
+        MDC.clear();
+      }
+    });
+  }
+}
@@ -2,10 +2,14 @@ package org.galatea.starter.service;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.HistoricalBarSeries;
+import org.galatea.starter.domain.IexHistoricalPricesResult;
 import org.galatea.starter.domain.IexLastTradedPrice;
 import org.galatea.starter.domain.IexSymbol;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
@@ -15,6 +19,9 @@ import org.springframework.util.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
 /**
  * A layer for transformation, aggregation, and business required when retrieving data from IEX.
+ *
+ * <p>The async variants make their IEX calls on the {@link IexCallExecutor}, so the calling thread
+ * is free to do other work while IEX responds.
  */
 @Slf4j
 @Service
@@ -24,18 +31,56 @@ public class IexService {
   @NonNull
   private IexClient iexClient;
 
+  @NonNull
+  private LastTradedPriceLoader lastTradedPriceLoader;
+
+  @NonNull
+  private SymbolIndex symbolIndex;
+
+  @NonNull
+  private HistoricalPriceStore historicalPriceStore;
+
+  @NonNull
+  private HistoricalPriceBatchLoader historicalPriceBatchLoader;
+
+  @NonNull
+  private IexCallExecutor iexCallExecutor;
+
 
   /**
-   * Get all stock symbols from IEX.
+   * Get all stock symbols from IEX. They're served from the symbol index rather than fetched.
    *
    * @return a list of all Stock Symbols from IEX.
    */
   public List<IexSymbol> getAllSymbols() {
-    return iexClient.getAllSymbols();
+    return symbolIndex.getAllSymbols();
   }
 
   /**
-   * Get the last traded price for each Symbol that is passed in.
+   * Get all stock symbols from IEX, already rendered as a JSON array.
+   */
+  public byte[] getAllSymbolsJson() {
+    return symbolIndex.getAllSymbolsJson();
+  }
+
+  /**
+   * Find the stock symbols matching all of the given filters. Null filters match everything.
+   *
+   * @param prefix symbols starting with this, ignoring case
+   * @param name symbols whose name contains this, ignoring case
+   * @param enabled symbols that are, or aren't, enabled for trading
+   * @param type symbols of this type, e.g. cs for common stock
+   * @param limit the most symbols to return
+   * @return the matching symbols, ordered by symbol
+   */
+  public List<IexSymbol> searchSymbols(final String prefix, final String name,
+      final Boolean enabled, final String type, final int limit) {
+    return symbolIndex.search(prefix, name, enabled, type, limit);
+  }
+
+  /**
+   * Get the last traded price for each Symbol that is passed in. Prices are cached for a few
+   * seconds, and only the symbols that aren't cached are fetched from IEX.
    *
    * @param symbols the list of symbols to get a last traded price for.
    * @return a list of last traded price objects for each Symbol that is passed in.
@@ -44,16 +89,30 @@ public class IexService {
     if (CollectionUtils.isEmpty(symbols)) {
       return Collections.emptyList();
     } else {
-      return iexClient.getLastTradedPriceForSymbols(symbols.toArray(new String[0]));
+      return lastTradedPriceLoader.getLastTradedPrices(symbols);
     }
   }
 
-  /** Get historical prices for the symbol, range, and date combination
+  /**
+   * Get the last traded price for each Symbol that is passed in, without waiting on IEX.
+   *
+   * @param symbols the list of symbols to get a last traded price for.
+   * @return a future completed with a last traded price object for each Symbol that is passed in.
+   */
+  public CompletableFuture<List<IexLastTradedPrice>> getLastTradedPriceForSymbolsAsync(
+      final List<String> symbols) {
+    return CompletableFuture.supplyAsync(() -> getLastTradedPriceForSymbols(symbols),
+        iexCallExecutor);
+  }
+
+  /** Get historical prices for the symbol, range, and date combination. Daily bars we've fetched
+   * before are served from the local historical price store.
    * @param symbol a valid symbol
    * @param range an optional range to check
    * @param date an optional date to check; has priority over range
    */
-  public List<IexHistoricalPrices> getHistoricalPricesForSymbols(final String symbol, final String range, final String date) throws Exception{
+  public HistoricalBarSeries getHistoricalPricesForSymbols(final String symbol, final String range,
+      final String date) throws Exception {
 
     // Throw an error if an invalid symbol was provided
     if(StringUtils.isBlank(symbol)) {
@@ -62,24 +121,66 @@ public class IexService {
 
     // Call the endpoint based on input. Date has priority when both date and range are provided.
     if(StringUtils.isNotBlank(range) && StringUtils.isNotBlank(date)) {
-      return iexClient.getHistoricalPricesForSymbolDateAndRange(symbol, range, date);
+      return HistoricalBarSeries.fromPrices(
+          iexClient.getHistoricalPricesForSymbolDateAndRange(symbol, range, date));
     } else if(range == null && date == null) {
-      return iexClient.getHistoricalPricesForSymbol(symbol);
+      return historicalPriceStore.getRange(symbol, null);
     } else if(StringUtils.isNotBlank(date)) {
-       return iexClient.getHistoricalPricesDate(symbol, date);
+       return historicalPriceStore.getDate(symbol, date);
     } else if(date == null && range != null) {
       if(range.equals("")) {
         throw new HttpMessageNotReadableException("\"range\" is not allowed to be empty");
       }
-      return iexClient.getHistoricalPricesRange(symbol, range);
+      return historicalPriceStore.getRange(symbol, range);
     } else if(range == null && date != null) { // No range but date is not Empty
       if(date.equals("")) {
         throw new HttpMessageNotReadableException("\"date\" is not allowed to be empty");
       }
-      return iexClient.getHistoricalPricesDate(symbol, date);
+      return historicalPriceStore.getDate(symbol, date);
     }
 
-    return iexClient.getHistoricalPricesForSymbol(symbol);
+    return HistoricalBarSeries.fromPrices(iexClient.getHistoricalPricesForSymbol(symbol));
+
+  }
+
+  /**
+   * Get historical prices for each of the symbols, for the same range and date combination. The
+   * symbols are fetched concurrently, and each one's result is handed to onResult as soon as it
+   * completes. A symbol that can't be fetched is handed over with its error, the rest of the batch
+   * carries on.
+   *
+   * @param symbols the symbols to find historical prices for
+   * @param range an optional range to check
+   * @param date an optional date to check; has priority over range
+   * @param onResult called with the result for each symbol, in the order they complete
+   * @return a future completed once every symbol's result has been handed over. Cancelling it stops
+   *     the rest of the batch.
+   */
+  public CompletableFuture<Void> getHistoricalPricesForSymbols(final List<String> symbols,
+      final String range, final String date,
+      final Consumer<IexHistoricalPricesResult> onResult) {
+    return historicalPriceBatchLoader.load(symbols,
+        symbol -> getHistoricalPricesForSymbols(symbol, range, date), onResult);
+  }
 
+  /**
+   * Get historical prices for the symbol, range, and date combination, without waiting on IEX.
+   *
+   * @param symbol a valid symbol
+   * @param range an optional range to check
+   * @param date an optional date to check; has priority over range
+   * @return a future completed with the prices, or with the error that getting them threw
+   */
+  public CompletableFuture<HistoricalBarSeries> getHistoricalPricesForSymbolsAsync(
+      final String symbol, final String range, final String date) {
+    return CompletableFuture.supplyAsync(() -> {
+      try {
+        return getHistoricalPricesForSymbols(symbol, range, date);
+      } catch (RuntimeException e) {
+        throw e;
+      } catch (Exception e) {
+        throw new CompletionException(e);
+      }
+    }, iexCallExecutor);
   }
 }
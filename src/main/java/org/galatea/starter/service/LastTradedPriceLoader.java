@@ -0,0 +1,160 @@
+package org.galatea.starter.service;
+
+import com.google.common.collect.Lists;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads last traded prices, serving them from a short-lived per-symbol cache where possible.
+ *
+ * <p>Only the symbols that are missing from the cache (or have expired out of it) are fetched
+ * from IEX. If another request is already fetching a symbol, we wait for its result rather than
+ * asking IEX again, so concurrent requests for the same symbols share a single upstream call.
+ * How long prices are cached is set on the lastTradedPrices cache in the ehcache config.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class LastTradedPriceLoader {
+
+  public static final String LAST_TRADED_PRICES_CACHE = "lastTradedPrices";
+
+  private static final Counter CACHE_HITS =
+      Metrics.counter("iex.prices.cache.requests", "result", "hit");
+  private static final Counter CACHE_MISSES =
+      Metrics.counter("iex.prices.cache.requests", "result", "miss");
+
+  @NonNull
+  IexClient iexClient;
+
+  @NonNull
+  CacheManager cacheManager;
+
+  // Most symbols asked for in one upstream call, bigger sets of misses are split
+  @Value("${iex.price-cache.max-batch-size:100}")
+  private int maxBatchSize;
+
+  // Symbols currently being fetched from IEX. The future is completed with null if IEX had no
+  // price for the symbol.
+  private final ConcurrentMap<String, CompletableFuture<IexLastTradedPrice>> inFlight =
+      new ConcurrentHashMap<>();
+
+  /**
+   * Get the last traded price for each of the symbols. Symbols are case-insensitive.
+   *
+   * @param symbols the symbols to get a last traded price for
+   * @return the prices in the order their symbols were given, leaving out symbols IEX doesn't know
+   *     and any repeats
+   */
+  public List<IexLastTradedPrice> getLastTradedPrices(final List<String> symbols) {
+    Set<String> distinct = new LinkedHashSet<>();
+    for (String symbol : symbols) {
+      distinct.add(symbol.toUpperCase(Locale.ROOT));
+    }
+
+    Cache cache = cacheManager.getCache(LAST_TRADED_PRICES_CACHE);
+    Map<String, IexLastTradedPrice> found = new HashMap<>();
+    Map<String, CompletableFuture<IexLastTradedPrice>> awaited = new LinkedHashMap<>();
+    List<String> toFetch = new ArrayList<>();
+    Map<String, CompletableFuture<IexLastTradedPrice>> owned = new HashMap<>();
+
+    for (String symbol : distinct) {
+      // A cached null means IEX had no price for the symbol last time we asked
+      Cache.ValueWrapper cached = cache.get(symbol);
+      if (cached != null) {
+        CACHE_HITS.increment();
+        found.put(symbol, (IexLastTradedPrice) cached.get());
+        continue;
+      }
+
+      CACHE_MISSES.increment();
+      CompletableFuture<IexLastTradedPrice> future = new CompletableFuture<>();
+      CompletableFuture<IexLastTradedPrice> existing = inFlight.putIfAbsent(symbol, future);
+      if (existing == null) {
+        toFetch.add(symbol);
+        owned.put(symbol, future);
+        awaited.put(symbol, future);
+      } else {
+        awaited.put(symbol, existing);
+      }
+    }
+
+    for (List<String> batch : Lists.partition(toFetch, Math.max(1, maxBatchSize))) {
+      fetch(batch, cache, owned);
+    }
+
+    for (Map.Entry<String, CompletableFuture<IexLastTradedPrice>> entry : awaited.entrySet()) {
+      found.put(entry.getKey(), join(entry.getValue()));
+    }
+
+    List<IexLastTradedPrice> prices = new ArrayList<>(distinct.size());
+    for (String symbol : distinct) {
+      IexLastTradedPrice price = found.get(symbol);
+      if (price != null) {
+        prices.add(price);
+      }
+    }
+    return prices;
+  }
+
+  /**
+   * Fetches one batch of symbols from IEX, caching and handing the results to everyone waiting on
+   * them.
+   */
+  private void fetch(final List<String> batch, final Cache cache,
+      final Map<String, CompletableFuture<IexLastTradedPrice>> owned) {
+    log.debug("Fetching last traded prices for {} symbols from IEX", batch.size());
+    try {
+      Map<String, IexLastTradedPrice> bySymbol = new HashMap<>();
+      for (IexLastTradedPrice price :
+          iexClient.getLastTradedPriceForSymbols(batch.toArray(new String[0]))) {
+        bySymbol.put(price.getSymbol().toUpperCase(Locale.ROOT), price);
+      }
+
+      for (String symbol : batch) {
+        IexLastTradedPrice price = bySymbol.get(symbol);
+        cache.put(symbol, price);
+        inFlight.remove(symbol);
+        owned.get(symbol).complete(price);
+      }
+    } catch (RuntimeException e) {
+      // Nothing is cached, so the next request will try again
+      for (String symbol : batch) {
+        inFlight.remove(symbol);
+        owned.get(symbol).completeExceptionally(e);
+      }
+    }
+  }
+
+  private static IexLastTradedPrice join(final CompletableFuture<IexLastTradedPrice> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      // Surface the exception from the fetch as if this caller had made the call itself
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+}
@@ -1,12 +1,19 @@
 package org.galatea.starter.service;
 
-import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Iterables;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 import javax.validation.Valid;
 import lombok.NonNull;
@@ -14,10 +21,15 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.sf.aspect4log.Log;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionCriteria;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
 import org.galatea.starter.entrypoint.exception.EntityNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.annotation.Validated;
 
 @RequiredArgsConstructor
@@ -27,20 +39,48 @@ import org.springframework.validation.annotation.Validated;
 @Service
 public class SettlementService {
 
+  // Registered with the global registry, which spring boot adds its own meter registries to
+  private static final Counter CACHE_HITS =
+      Metrics.counter("settlement.missions.cache.requests", "result", "hit");
+  private static final Counter CACHE_MISSES =
+      Metrics.counter("settlement.missions.cache.requests", "result", "miss");
+
   @NonNull
   ISettlementMissionRpsy missionrpsy;
 
   @NonNull
   IAgreementTransformer agreementTransformer;
 
+  // Shared with the @Cacheable repository methods
+  @NonNull
+  CacheManager cacheManager;
+
+  @NonNull
+  CoalescingMissionLoader missionLoader;
+
+  // Missions are saved in one saveAll call unless this is positive
+  @Value("${settlement.persist-chunk-size:0}")
+  private int persistChunkSize;
+
   /**
    * Create missions based on the agreements provided.
    *
+   * <p>If settlement.persist-chunk-size is set, missions are persisted in JDBC-batched chunks and
+   * only their ids are retained, otherwise they are saved in bulk.
+   *
    * @param agreements the agreements used to generate missions
    * @return the ids of the missions that were created
    */
   public Set<Long> spawnMissions(@Valid final List<TradeAgreement> agreements) {
 
+    if (persistChunkSize > 0) {
+      // Transform lazily so that each mission only lives until its chunk has been flushed
+      List<Long> ids = missionrpsy.persistInChunks(
+          Iterables.transform(agreements, agreementTransformer::transform), persistChunkSize);
+      log.info("Returning {} mission id(s)", ids.size());
+      return new HashSet<>(ids);
+    }
+
     // Map each agreement to a mission, collect to a list, and then same in bulk
     Iterable<SettlementMission> savedMissions = missionrpsy.saveAll(agreements.stream()
         .map(agr -> agreementTransformer.transform(agr)).collect(Collectors.toList()));
@@ -59,34 +99,96 @@ public class SettlementService {
   /**
    * Retrieve a previously-generated settlement mission from the database.
    *
+   * <p>Concurrent lookups may be merged into one query, see CoalescingMissionLoader.
+   *
    * @param id the ID of the mission to retrieve
    */
   public Optional<SettlementMission> findMission(final Long id) {
     log.info("Retrieving settlement mission with id {}", id);
-    return missionrpsy.findById(id);
+    return missionLoader.findMission(id);
   }
 
   /**
-   * Retrieve multiple previously-generated settlement missions from the database.
+   * Retrieve multiple previously-generated settlement missions.
+   *
+   * <p>Missions already in the missions cache are served from there, and the rest are loaded from
+   * the database with a single query and then added to the cache.
    *
    * @param ids a comma-separated list of IDs of the missions to retrieve
+   * @return the missions, in the order their ids were first given
    */
   public List<SettlementMission> findMissions(final List<Long> ids) {
     log.info("Retrieving settlement missions with ids: {}", ids);
 
-    List<SettlementMission> retrievedMissions = Lists.newArrayList(missionrpsy.findAllById(ids));
+    Cache cache = cacheManager.getCache(ISettlementMissionRpsy.MISSIONS_CACHE);
+    Map<Long, SettlementMission> retrievedMissions = new LinkedHashMap<>();
+    List<Long> misses = new ArrayList<>();
+    for (Long id : new LinkedHashSet<>(ids)) {
+      SettlementMission cached = cache.get(id, SettlementMission.class);
+      // Ids cached as not found are looked up again, since the mission may have been created since
+      if (cached == null) {
+        misses.add(id);
+      }
+      retrievedMissions.put(id, cached);
+    }
+
+    int hits = retrievedMissions.size() - misses.size();
+    CACHE_HITS.increment(hits);
+    CACHE_MISSES.increment(misses.size());
+    log.debug("Found {} mission(s) in the cache, loading {} from the database", hits,
+        misses.size());
+
+    if (!misses.isEmpty()) {
+      for (SettlementMission mission : missionrpsy.findAllById(misses)) {
+        retrievedMissions.put(mission.getId(), mission);
+        cache.put(mission.getId(), mission);
+      }
+    }
 
     // CrudRepository.findAll(Iterable ids) succeeds even if some provided IDs aren't found, so
     // if we want to alert on any not-found IDs we have to manually check
-    Set<Long> retrievedMissionIds = retrievedMissions.stream()
-        .map(SettlementMission::getId)
+    Set<Long> missingMissions = retrievedMissions.entrySet().stream()
+        .filter(entry -> entry.getValue() == null)
+        .map(Map.Entry::getKey)
         .collect(Collectors.toSet());
-    Sets.SetView<Long> missingMissions = Sets.difference(new HashSet<>(ids), retrievedMissionIds);
     if (!missingMissions.isEmpty()) {
       throw new EntityNotFoundException(SettlementMission.class, missingMissions);
     }
 
-    return retrievedMissions;
+    return new ArrayList<>(retrievedMissions.values());
+  }
+
+  /**
+   * Retrieve one page of the missions matching the given criteria, in ascending id order.
+   *
+   * @param criteria the filters the missions must match
+   * @param afterId the id of the last mission of the previous page, or null for the first page
+   * @param limit the maximum number of missions to return
+   */
+  public List<SettlementMission> findMissionsPage(final SettlementMissionCriteria criteria,
+      final Long afterId, final int limit) {
+    log.info("Retrieving up to {} settlement missions after id {} matching {}", limit, afterId,
+        criteria);
+    return missionrpsy.findPage(criteria, afterId, limit);
+  }
+
+  /**
+   * Stream all missions matching the given criteria, in ascending id order, to the given consumer.
+   * Missions are read from the database as the consumer iterates over them, and the iterable can
+   * only be iterated once.
+   *
+   * <p>The read transaction stays open until the consumer returns.
+   *
+   * @param criteria the filters the missions must match
+   * @param consumer consumes the missions
+   */
+  @Transactional(readOnly = true)
+  public void streamMissions(final SettlementMissionCriteria criteria,
+      final Consumer<Iterable<SettlementMission>> consumer) {
+    log.info("Streaming settlement missions matching {}", criteria);
+    try (Stream<SettlementMission> missions = missionrpsy.streamMissions(criteria)) {
+      consumer.accept(missions::iterator);
+    }
   }
 
   /**
@@ -0,0 +1,196 @@
+package org.galatea.starter.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.galatea.starter.domain.IexSymbol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory index of the symbols supported by IEX, so symbol lookups never wait on IEX.
+ *
+ * <p>The index is loaded in the background at startup and reloaded every
+ * iex.symbols.refresh-minutes. If a lookup comes in before the first load has succeeded, the
+ * symbols are loaded there and then. Each load builds a new immutable snapshot, which is swapped
+ * in whole, so readers never need to lock. The snapshot also holds the full symbol list already
+ * rendered as JSON.
+ */
+@RequiredArgsConstructor
+@Slf4j
+@Component
+public class SymbolIndex {
+
+  // Same settings as the JSON message converter, so the pre-rendered list matches what it'd write
+  private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+  @NonNull
+  IexClient iexClient;
+
+  // How often the symbols are reloaded. Zero or less means they're only loaded on first use.
+  @Value("${iex.symbols.refresh-minutes:60}")
+  private long refreshMinutes;
+
+  private volatile Snapshot snapshot;
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Starts loading the symbols in the background, and schedules them to be reloaded.
+   */
+  @PostConstruct
+  public void start() {
+    if (refreshMinutes > 0) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("symbol-index-%d").setDaemon(true).build());
+      scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, refreshMinutes, TimeUnit.MINUTES);
+    }
+  }
+
+  /**
+   * Stops reloading the symbols.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Reloads the symbols from IEX, replacing the current snapshot.
+   */
+  public void refresh() {
+    List<IexSymbol> symbols = new ArrayList<>(iexClient.getAllSymbols());
+    symbols.sort(Comparator.comparing(symbol -> symbol.getSymbol().toUpperCase(Locale.ROOT)));
+    snapshot = new Snapshot(symbols);
+    log.info("Loaded {} symbols into the symbol index", symbols.size());
+  }
+
+  /**
+   * Get all of the symbols, ordered by symbol.
+   */
+  public List<IexSymbol> getAllSymbols() {
+    return current().symbols;
+  }
+
+  /**
+   * Get all of the symbols rendered as a JSON array, ordered by symbol. The array is shared, so
+   * don't modify it.
+   */
+  public byte[] getAllSymbolsJson() {
+    return current().json;
+  }
+
+  /**
+   * Find the symbols matching all of the given filters, ordered by symbol.
+   *
+   * @param prefix symbols starting with this, ignoring case
+   * @param name symbols whose name contains this, ignoring case
+   * @param enabled symbols that are, or aren't, enabled for trading
+   * @param type symbols of this type, e.g. cs for common stock
+   * @param limit the most symbols to return
+   * @return the matching symbols
+   */
+  public List<IexSymbol> search(final String prefix, final String name, final Boolean enabled,
+      final String type, final int limit) {
+    Snapshot current = current();
+
+    // Narrow down by prefix first since the sorted map gives us that range directly
+    int from = 0;
+    int to = current.symbols.size();
+    if (StringUtils.isNotEmpty(prefix)) {
+      String upperPrefix = prefix.toUpperCase(Locale.ROOT);
+      NavigableMap<String, Integer> range =
+          current.positions.subMap(upperPrefix, true, upperPrefix + Character.MAX_VALUE, false);
+      if (range.isEmpty()) {
+        return Collections.emptyList();
+      }
+      from = range.firstEntry().getValue();
+      to = range.lastEntry().getValue() + 1;
+    }
+
+    String lowerName = StringUtils.isEmpty(name) ? null : name.toLowerCase(Locale.ROOT);
+    List<IexSymbol> matches = new ArrayList<>();
+    for (int i = from; i < to && matches.size() < limit; i++) {
+      IexSymbol symbol = current.symbols.get(i);
+      if ((lowerName == null || current.lowerNames[i].contains(lowerName))
+          && (enabled == null || symbol.isEnabled() == enabled)
+          && (type == null || type.equalsIgnoreCase(symbol.getType()))) {
+        matches.add(symbol);
+      }
+    }
+    return matches;
+  }
+
+  private Snapshot current() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      synchronized (this) {
+        if (snapshot == null) {
+          refresh();
+        }
+        current = snapshot;
+      }
+    }
+    return current;
+  }
+
+  private void refreshQuietly() {
+    try {
+      refresh();
+    } catch (RuntimeException e) {
+      // Keep serving the symbols we have, we'll try again next time round
+      log.warn("Error refreshing the symbol index: ", e);
+    }
+  }
+
+  /**
+   * An immutable view of the symbols as of one load.
+   */
+  private static final class Snapshot {
+
+    private final List<IexSymbol> symbols;
+
+    // Upper-cased symbol to its position in symbols
+    private final NavigableMap<String, Integer> positions = new TreeMap<>();
+
+    // Lower-cased names, by position, so name searches don't lower-case every name every time
+    private final String[] lowerNames;
+
+    private final byte[] json;
+
+    private Snapshot(final List<IexSymbol> symbols) {
+      this.symbols = Collections.unmodifiableList(symbols);
+      this.lowerNames = new String[symbols.size()];
+      for (int i = 0; i < symbols.size(); i++) {
+        IexSymbol symbol = symbols.get(i);
+        positions.put(symbol.getSymbol().toUpperCase(Locale.ROOT), i);
+        lowerNames[i] = symbol.getName() == null ? "" : symbol.getName().toLowerCase(Locale.ROOT);
+      }
+
+      try {
+        this.json = OBJECT_MAPPER.writeValueAsBytes(symbols);
+      } catch (JsonProcessingException e) {
+        throw new IllegalStateException("Error rendering the symbols as JSON", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,130 @@
+package org.galatea.starter.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free ring buffer that any number of threads can offer into and poll from
+ * concurrently.
+ *
+ * <p>Each slot carries a sequence number that says whether it is free for the producer with a
+ * given ticket, or holds an element for the consumer with a given ticket. Producers and consumers
+ * claim tickets with a CAS on their own counter, so neither side ever blocks the other.
+ *
+ * @param <T> the type of element held in the buffer
+ */
+public final class BoundedRingBuffer<T> {
+
+  private final int mask;
+  private final AtomicReferenceArray<T> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong producerTicket = new AtomicLong();
+  private final AtomicLong consumerTicket = new AtomicLong();
+
+  /**
+   * Creates a buffer holding at least the given number of elements. The capacity is rounded up to
+   * the next power of two, and is never less than two since a single slot couldn't tell a
+   * published element apart from a free slot.
+   *
+   * @param requestedCapacity the minimum number of elements the buffer can hold
+   */
+  public BoundedRingBuffer(final int requestedCapacity) {
+    if (requestedCapacity <= 0 || requestedCapacity > (1 << 30)) {
+      throw new IllegalArgumentException("Capacity must be between 1 and 2^30 but was "
+          + requestedCapacity);
+    }
+    int capacity = Math.max(2, Integer.highestOneBit(requestedCapacity));
+    if (capacity < requestedCapacity) {
+      capacity <<= 1;
+    }
+
+    mask = capacity - 1;
+    elements = new AtomicReferenceArray<>(capacity);
+    sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * Adds the element to the buffer if there is room for it.
+   *
+   * @param element the element to add
+   * @return true if the element was added, false if the buffer was full
+   */
+  public boolean offer(final T element) {
+    if (element == null) {
+      throw new NullPointerException("Null elements are not supported");
+    }
+
+    while (true) {
+      long ticket = producerTicket.get();
+      int index = (int) ticket & mask;
+      long diff = sequences.get(index) - ticket;
+
+      if (diff == 0) {
+        if (producerTicket.compareAndSet(ticket, ticket + 1)) {
+          elements.lazySet(index, element);
+          // Publish the element to the consumer that will claim this ticket
+          sequences.set(index, ticket + 1);
+          return true;
+        }
+      } else if (diff < 0) {
+        // The slot still holds an element from the previous lap, so the buffer is full
+        return false;
+      }
+      // Another producer claimed this ticket first, try the next one
+    }
+  }
+
+  /**
+   * Removes and returns the oldest element in the buffer.
+   *
+   * @return the oldest element, or null if the buffer is empty
+   */
+  public T poll() {
+    while (true) {
+      long ticket = consumerTicket.get();
+      int index = (int) ticket & mask;
+      long diff = sequences.get(index) - (ticket + 1);
+
+      if (diff == 0) {
+        if (consumerTicket.compareAndSet(ticket, ticket + 1)) {
+          T element = elements.get(index);
+          elements.lazySet(index, null);
+          // Hand the slot back to the producer that will claim it on the next lap
+          sequences.set(index, ticket + mask + 1);
+          return element;
+        }
+      } else if (diff < 0) {
+        // Nothing has been published to this slot yet, so the buffer is empty
+        return null;
+      }
+      // Another consumer claimed this ticket first, try the next one
+    }
+  }
+
+  /**
+   * Returns the number of elements the buffer can hold.
+   */
+  public int capacity() {
+    return mask + 1;
+  }
+
+  /**
+   * Returns an estimate of the number of elements in the buffer. It may be stale as soon as it is
+   * returned if other threads are offering or polling.
+   */
+  public int size() {
+    long size = producerTicket.get() - consumerTicket.get();
+    return (int) Math.max(0, Math.min(size, capacity()));
+  }
+
+  /**
+   * Returns true if the buffer held no elements at the time of the call.
+   */
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+}
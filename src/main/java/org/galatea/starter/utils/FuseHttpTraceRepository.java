@@ -2,23 +2,221 @@ package org.galatea.starter.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.EqualsAndHashCode;
-import lombok.RequiredArgsConstructor;
-import lombok.ToString;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.actuate.trace.http.HttpTrace;
 import org.springframework.boot.actuate.trace.http.InMemoryHttpTraceRepository;
 
-@RequiredArgsConstructor
-@ToString(callSuper = true)
-@EqualsAndHashCode(callSuper = true)
+/**
+ * Trace repository that logs each trace as JSON and keeps the most recent ones in memory.
+ *
+ * <p>Request threads only publish traces into a bounded ring buffer. A background thread drains
+ * the buffer, serializes and logs each trace, and stores it, so none of that work adds latency to
+ * the request. What happens when the buffer is full is decided by the {@link OverflowPolicy}.
+ *
+ * <p>The writer parks while the buffer is empty and is unparked by the next add, and producers
+ * blocked on a full buffer are unparked by the writer as it makes room, so nothing spins.
+ */
 @Slf4j
 public class FuseHttpTraceRepository extends InMemoryHttpTraceRepository {
 
+  public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+  private static final Counter DROPPED_TRACES = Metrics.counter("http.trace.dropped");
+
+  /**
+   * What to do with a trace when the buffer is full.
+   */
+  public enum OverflowPolicy {
+    /** Discard the trace being added. */
+    DROP_NEWEST,
+    /** Discard the oldest trace in the buffer to make room for the one being added. */
+    DROP_OLDEST,
+    /** Make the request thread wait until there is room in the buffer. */
+    BLOCK
+  }
+
   private final ObjectMapper objectMapper;
 
+  private final BoundedRingBuffer<HttpTrace> buffer;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  // Producers parked until the writer makes room, under the BLOCK policy
+  private final Queue<Thread> blockedProducers = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean running;
+
+  private volatile Thread writer;
+
+  // Set by the writer before it parks on an empty buffer, so producers know to unpark it
+  private volatile boolean writerParked;
+
+  /**
+   * Creates a repository with the default buffer size that drops traces when the buffer is full.
+   *
+   * @param objectMapper used to serialize traces for logging
+   */
+  public FuseHttpTraceRepository(@NonNull final ObjectMapper objectMapper) {
+    this(objectMapper, DEFAULT_BUFFER_SIZE, OverflowPolicy.DROP_NEWEST);
+  }
+
+  /**
+   * Creates a repository whose buffer holds at least bufferSize traces.
+   *
+   * @param objectMapper used to serialize traces for logging
+   * @param bufferSize the number of traces that can be waiting to be logged
+   * @param overflowPolicy what to do with a trace when the buffer is full
+   */
+  public FuseHttpTraceRepository(@NonNull final ObjectMapper objectMapper, final int bufferSize,
+      @NonNull final OverflowPolicy overflowPolicy) {
+    this.objectMapper = objectMapper;
+    this.buffer = new BoundedRingBuffer<>(bufferSize);
+    this.overflowPolicy = overflowPolicy;
+  }
+
+  /**
+   * Starts the thread that logs and stores published traces.
+   */
+  @PostConstruct
+  public synchronized void start() {
+    if (writer != null) {
+      return;
+    }
+    running = true;
+    writer = new Thread(this::drainLoop, "http-trace-writer");
+    writer.setDaemon(true);
+    writer.start();
+  }
+
+  /**
+   * Stops the writer thread once it has logged the traces already in the buffer.
+   */
+  @PreDestroy
+  public synchronized void stop() throws InterruptedException {
+    if (writer == null) {
+      return;
+    }
+    running = false;
+    LockSupport.unpark(writer);
+    blockedProducers.forEach(LockSupport::unpark);
+    writer.join(TimeUnit.SECONDS.toMillis(5));
+    writer = null;
+  }
+
   @Override
   public void add(final HttpTrace trace) {
+    if (buffer.offer(trace)) {
+      signalWriter();
+      return;
+    }
+
+    switch (overflowPolicy) {
+      case DROP_OLDEST:
+        // Keep evicting until our trace fits, another producer may grab the slot we freed
+        while (!buffer.offer(trace)) {
+          if (buffer.poll() != null) {
+            recordDropped();
+          }
+        }
+        signalWriter();
+        break;
+      case BLOCK:
+        if (offerBlocking(trace)) {
+          signalWriter();
+        } else {
+          recordDropped();
+        }
+        break;
+      case DROP_NEWEST:
+      default:
+        recordDropped();
+        break;
+    }
+  }
+
+  /**
+   * Returns the number of traces discarded because the buffer was full.
+   */
+  public long getDroppedCount() {
+    return droppedCount.get();
+  }
+
+  /**
+   * Returns the number of traces waiting to be logged.
+   */
+  public int getPendingCount() {
+    return buffer.size();
+  }
+
+  private void recordDropped() {
+    droppedCount.incrementAndGet();
+    DROPPED_TRACES.increment();
+  }
+
+  /**
+   * Waits for room in the buffer. Returns false, without adding the trace, if the writer stops
+   * first.
+   */
+  private boolean offerBlocking(final HttpTrace trace) {
+    Thread current = Thread.currentThread();
+    // Registered before trying again, so a poll after a failed offer always unparks us
+    blockedProducers.add(current);
+    try {
+      while (!buffer.offer(trace)) {
+        if (!running) {
+          // Nobody is left to drain the buffer, so waiting would hang the request
+          return false;
+        }
+        LockSupport.park(this);
+      }
+      return true;
+    } finally {
+      blockedProducers.remove(current);
+    }
+  }
+
+  private void signalWriter() {
+    if (writerParked) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  private void drainLoop() {
+    while (running || !buffer.isEmpty()) {
+      HttpTrace trace = buffer.poll();
+      if (trace == null) {
+        writerParked = true;
+        // Checked again after announcing we're about to park, so an add in between isn't missed
+        if (running && buffer.isEmpty()) {
+          LockSupport.park(this);
+        }
+        writerParked = false;
+        continue;
+      }
+      blockedProducers.forEach(LockSupport::unpark);
+
+      try {
+        write(trace);
+      } catch (RuntimeException e) {
+        // Don't let one bad trace kill the writer thread
+        log.warn("Error storing trace info: ", e);
+      }
+    }
+  }
+
+  private void write(final HttpTrace trace) {
     // HttpTrace has no toString, nor do its inner classes...
     try {
       log.info("Adding trace info: {}", objectMapper.writeValueAsString(trace));
@@ -0,0 +1,16 @@
+package org.galatea.starter.utils.exception;
+
+/**
+ * Thrown instead of making a call to a host whose circuit breaker is open.
+ */
+public class CircuitBreakerOpenException extends RuntimeException {
+
+  /**
+   * Exception indicating a call was refused because the host has been failing.
+   *
+   * @param host the host the call was for
+   */
+  public CircuitBreakerOpenException(final String host) {
+    super("Calls to " + host + " are suspended after repeated failures");
+  }
+}
@@ -0,0 +1,96 @@
+package org.galatea.starter.utils.http.client;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.NonNull;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Feign client that makes its calls through an Apache HttpClient, so they can share a pool of
+ * kept-alive connections rather than opening a new one for each call as Feign's default client
+ * does.
+ *
+ * <p>The connect and read timeouts come from the Feign options of each call. The connect timeout
+ * also caps how long a call waits for a connection from the pool.
+ */
+public class ApacheHttpFeignClient implements Client {
+
+  private final HttpClient httpClient;
+
+  /**
+   * Creates a client that makes its calls through the given HttpClient.
+   *
+   * @param httpClient the client to call through, usually backed by a pooling connection manager
+   */
+  public ApacheHttpFeignClient(@NonNull final HttpClient httpClient) {
+    this.httpClient = httpClient;
+  }
+
+  @Override
+  public Response execute(final Request request, final Options options) throws IOException {
+    RequestBuilder builder = RequestBuilder.create(request.method())
+        .setUri(request.url())
+        .setConfig(RequestConfig.custom()
+            .setConnectTimeout(options.connectTimeoutMillis())
+            .setConnectionRequestTimeout(options.connectTimeoutMillis())
+            .setSocketTimeout(options.readTimeoutMillis())
+            .build());
+
+    String contentType = null;
+    for (Map.Entry<String, Collection<String>> header : request.headers().entrySet()) {
+      // HttpClient works out the content length from the entity
+      if (header.getKey().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+        continue;
+      }
+      for (String value : header.getValue()) {
+        if (header.getKey().equalsIgnoreCase(HttpHeaders.CONTENT_TYPE)) {
+          contentType = value;
+        }
+        builder.addHeader(header.getKey(), value);
+      }
+    }
+
+    if (request.body() != null) {
+      ContentType type = contentType == null ? null : ContentType.parse(contentType);
+      builder.setEntity(new ByteArrayEntity(request.body(), type));
+    }
+
+    return toFeignResponse(httpClient.execute(builder.build()));
+  }
+
+  private static Response toFeignResponse(final HttpResponse response) throws IOException {
+    Map<String, Collection<String>> headers = new LinkedHashMap<>();
+    for (Header header : response.getAllHeaders()) {
+      headers.computeIfAbsent(header.getName(), name -> new ArrayList<>()).add(header.getValue());
+    }
+
+    Response.Builder builder = Response.builder()
+        .status(response.getStatusLine().getStatusCode())
+        .reason(response.getStatusLine().getReasonPhrase())
+        .headers(headers);
+
+    // Closing the body stream hands the connection back to the pool once it's been read
+    HttpEntity entity = response.getEntity();
+    if (entity != null) {
+      long length = entity.getContentLength();
+      builder.body(entity.getContent(),
+          length >= 0 && length <= Integer.MAX_VALUE ? (int) length : null);
+    }
+    return builder.build();
+  }
+}
@@ -0,0 +1,94 @@
+package org.galatea.starter.utils.http.client;
+
+import java.time.Clock;
+import lombok.Getter;
+
+/**
+ * Stops calls to a failing dependency for a while, so we fail fast instead of piling up requests
+ * that are waiting on it.
+ *
+ * <p>The breaker opens after failureThreshold failures in a row. While it's open, calls are
+ * refused. Once openMillis have passed, one trial call is let through: if it succeeds the breaker
+ * closes again, and if it fails the breaker stays open for another openMillis.
+ */
+public class CircuitBreaker {
+
+  /**
+   * Where the breaker is at.
+   */
+  public enum State {
+    /** Calls go through. */
+    CLOSED,
+    /** Calls are refused. */
+    OPEN,
+    /** One trial call has been let through, and we're waiting to see how it does. */
+    HALF_OPEN
+  }
+
+  private final int failureThreshold;
+
+  private final long openMillis;
+
+  private final Clock clock;
+
+  @Getter
+  private State state = State.CLOSED;
+
+  private int consecutiveFailures;
+
+  private long openedAt;
+
+  /**
+   * Creates a closed breaker.
+   *
+   * @param failureThreshold the number of failures in a row that opens the breaker
+   * @param openMillis how long the breaker stays open before letting a trial call through
+   * @param clock tells the time
+   */
+  public CircuitBreaker(final int failureThreshold, final long openMillis, final Clock clock) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+    this.openMillis = openMillis;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns true if a call may be made now. Every call that's allowed must be followed by a call
+   * to recordSuccess or recordFailure.
+   */
+  public synchronized boolean tryAcquire() {
+    switch (state) {
+      case CLOSED:
+        return true;
+      case OPEN:
+        if (clock.millis() - openedAt >= openMillis) {
+          state = State.HALF_OPEN;
+          return true;
+        }
+        return false;
+      case HALF_OPEN:
+      default:
+        // Only the one trial call until we know how it went
+        return false;
+    }
+  }
+
+  /**
+   * Records that a call succeeded, closing the breaker.
+   */
+  public synchronized void recordSuccess() {
+    consecutiveFailures = 0;
+    state = State.CLOSED;
+  }
+
+  /**
+   * Records that a call failed, opening the breaker if the trial call failed or there have been too
+   * many failures in a row.
+   */
+  public synchronized void recordFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+      state = State.OPEN;
+      openedAt = clock.millis();
+    }
+  }
+}
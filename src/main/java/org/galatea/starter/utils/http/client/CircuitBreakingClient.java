@@ -0,0 +1,96 @@
+package org.galatea.starter.utils.http.client;
+
+import feign.Client;
+import feign.Request;
+import feign.Request.Options;
+import feign.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Clock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.exception.CircuitBreakerOpenException;
+
+/**
+ * Feign client that puts a {@link CircuitBreaker} per host in front of another client.
+ *
+ * <p>Connection errors and 5xx responses count as failures. Calls to a host whose breaker is open
+ * throw a CircuitBreakerOpenException without reaching the delegate. That isn't an IOException, so
+ * Feign doesn't retry it.
+ */
+@Slf4j
+public class CircuitBreakingClient implements Client {
+
+  private static final Counter REJECTED_CALLS = Metrics.counter("http.client.circuit.rejected");
+
+  private final Client delegate;
+
+  private final int failureThreshold;
+
+  private final long openMillis;
+
+  private final Clock clock;
+
+  private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a client whose per-host breakers open after failureThreshold failures in a row.
+   *
+   * @param delegate makes the calls
+   * @param failureThreshold the number of failures in a row that opens a host's breaker
+   * @param openMillis how long a host's breaker stays open before letting a trial call through
+   * @param clock tells the time
+   */
+  public CircuitBreakingClient(@NonNull final Client delegate, final int failureThreshold,
+      final long openMillis, @NonNull final Clock clock) {
+    this.delegate = delegate;
+    this.failureThreshold = failureThreshold;
+    this.openMillis = openMillis;
+    this.clock = clock;
+  }
+
+  @Override
+  public Response execute(final Request request, final Options options) throws IOException {
+    String host = URI.create(request.url()).getHost();
+    CircuitBreaker breaker = breakers.computeIfAbsent(host,
+        key -> new CircuitBreaker(failureThreshold, openMillis, clock));
+    if (!breaker.tryAcquire()) {
+      REJECTED_CALLS.increment();
+      throw new CircuitBreakerOpenException(host);
+    }
+
+    Response response;
+    try {
+      response = delegate.execute(request, options);
+    } catch (IOException | RuntimeException e) {
+      recordFailure(host, breaker);
+      throw e;
+    }
+
+    if (response.status() >= 500) {
+      recordFailure(host, breaker);
+    } else {
+      breaker.recordSuccess();
+    }
+    return response;
+  }
+
+  /**
+   * Returns the state of the host's breaker. Hosts that haven't been called are closed.
+   */
+  public CircuitBreaker.State getState(final String host) {
+    CircuitBreaker breaker = breakers.get(host);
+    return breaker == null ? CircuitBreaker.State.CLOSED : breaker.getState();
+  }
+
+  private static void recordFailure(final String host, final CircuitBreaker breaker) {
+    breaker.recordFailure();
+    if (breaker.getState() == CircuitBreaker.State.OPEN) {
+      log.warn("Circuit breaker for {} is open", host);
+    }
+  }
+}
@@ -0,0 +1,78 @@
+package org.galatea.starter.utils.http.client;
+
+import feign.FeignException;
+import feign.RetryableException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Feign retryer that backs off exponentially, with full jitter, between attempts.
+ *
+ * <p>The wait before retry n is a random time up to min(maxBackoffMillis, initialBackoffMillis *
+ * 2^(n-1)), so callers that failed together don't all retry together. If the server said when to
+ * retry, we wait at least that long, as long as it's within maxBackoffMillis. Once the attempts
+ * run out, the error that caused the last retry is thrown.
+ */
+public class JitteredRetryer implements feign.Retryer {
+
+  private final int maxAttempts;
+
+  private final long initialBackoffMillis;
+
+  private final long maxBackoffMillis;
+
+  private int attempt = 1;
+
+  /**
+   * Creates a retryer that makes at most maxAttempts attempts at each call.
+   *
+   * @param maxAttempts the most attempts at a call, including the first, 1 to never retry
+   * @param initialBackoffMillis the most to wait before the first retry
+   * @param maxBackoffMillis the most to wait before any retry
+   */
+  public JitteredRetryer(final int maxAttempts, final long initialBackoffMillis,
+      final long maxBackoffMillis) {
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.initialBackoffMillis = Math.max(1, initialBackoffMillis);
+    this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+  }
+
+  @Override
+  public void continueOrPropagate(final RetryableException e) {
+    if (attempt >= maxAttempts) {
+      throw unwrap(e);
+    }
+
+    long backoff = backoffMillis(attempt, e);
+    attempt++;
+    try {
+      Thread.sleep(backoff);
+    } catch (InterruptedException interrupted) {
+      Thread.currentThread().interrupt();
+      throw unwrap(e);
+    }
+  }
+
+  @Override
+  public feign.Retryer clone() {
+    // Feign clones the retryer for each call, so each call gets its own attempt count
+    return new JitteredRetryer(maxAttempts, initialBackoffMillis, maxBackoffMillis);
+  }
+
+  /**
+   * Returns how long to wait before retrying after the given attempt.
+   */
+  long backoffMillis(final int attempt, final RetryableException e) {
+    long ceiling = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 30));
+    long backoff = ThreadLocalRandom.current().nextLong(ceiling + 1);
+    if (e.retryAfter() != null) {
+      long retryAfter = e.retryAfter().getTime() - System.currentTimeMillis();
+      backoff = Math.max(backoff, Math.min(retryAfter, maxBackoffMillis));
+    }
+    return backoff;
+  }
+
+  private static FeignException unwrap(final RetryableException e) {
+    // RetryableStatusErrorDecoder wraps the error response, which has the status callers expect
+    return e.getCause() instanceof FeignException ? (FeignException) e.getCause() : e;
+  }
+}
@@ -0,0 +1,31 @@
+package org.galatea.starter.utils.http.client;
+
+import feign.Response;
+import feign.RetryableException;
+import feign.codec.ErrorDecoder;
+
+/**
+ * Error decoder that marks responses worth retrying as retryable: 429 Too Many Requests and the
+ * 502, 503 and 504 statuses a struggling server or proxy sends. Everything else is decoded as
+ * usual, and isn't retried.
+ *
+ * <p>The original error is kept as the cause of the RetryableException, and is what's thrown once
+ * JitteredRetryer runs out of attempts.
+ */
+public class RetryableStatusErrorDecoder implements ErrorDecoder {
+
+  private final ErrorDecoder delegate = new ErrorDecoder.Default();
+
+  @Override
+  public Exception decode(final String methodKey, final Response response) {
+    Exception error = delegate.decode(methodKey, response);
+    if (error instanceof RetryableException || !isRetryable(response.status())) {
+      return error;
+    }
+    return new RetryableException(error.getMessage(), error, null);
+  }
+
+  private static boolean isRetryable(final int status) {
+    return status == 429 || status == 502 || status == 503 || status == 504;
+  }
+}
@@ -1,14 +1,33 @@
 package org.galatea.starter.utils.http.converter;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public class CsvSerializer {
 
+  // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
+  // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
+  // A mapper is thread-safe once configured, so one is shared by all calls rather than building
+  // (and warming up) a new one per request
+  private static final CsvMapper MAPPER = new CsvMapper();
+
+  static {
+    MAPPER.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+  }
+
+  // Writers are immutable, so the writer (and with it the schema) for each row class is cached
+  private static final Map<Class<?>, ObjectWriter> WRITERS = new ConcurrentHashMap<>();
+
   private CsvSerializer() {}
 
   /**
@@ -27,15 +46,35 @@ public class CsvSerializer {
    */
   public static <T> String serializeToCsv(final Iterable<T> rows, final Class<T> clazz)
       throws IOException {
-    // Note that Jackson CSV doesn't work on objects with fields that hold complex objects
-    // See https://github.com/FasterXML/jackson-dataformat-csv/issues/9
-    CsvMapper mapper = new CsvMapper();
-    mapper.disable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+    return writerFor(clazz).writeValueAsString(rows);
+    // See CsvWriterTest for examples of Jackson CSV behavior
+  }
+
+  /**
+   * Serialize the given objects to a CSV document, writing each row to the given output stream
+   * (UTF-8 encoded) as it is serialized rather than building the whole document in memory.
+   *
+   * @param rows the collection of objects that should be serialized into the CSV document
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the document to. Flushed, but not closed, by this method.
+   * @param <T> the type of the row data
+   */
+  public static <T> void serializeToCsv(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out) throws IOException {
+    try (SequenceWriter sequenceWriter = writerFor(clazz)
+        .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+        .writeValues(out)) {
+      for (T row : rows) {
+        sequenceWriter.write(row);
+      }
+    }
+  }
+
+  private static ObjectWriter writerFor(final Class<?> clazz) {
     // Jackson CSV uses the property names for the header row by default. To have a custom header
     // for one or more columns, see
     // https://stackoverflow.com/questions/40221223/jackson-dataformat-csv-are-custom-column-names-possible
-    CsvSchema schema = mapper.schemaFor(clazz).withHeader();
-    return mapper.writer(schema).writeValueAsString(rows);
-    // See CsvWriterTest for examples of Jackson CSV behavior
+    return WRITERS.computeIfAbsent(clazz,
+        key -> MAPPER.writer(MAPPER.schemaFor(key).withHeader()));
   }
 }
@@ -0,0 +1,57 @@
+package org.galatea.starter.utils.http.converter;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import java.io.IOException;
+import org.galatea.starter.domain.HistoricalBarSeries;
+
+/**
+ * Writes a HistoricalBarSeries as a JSON array of bars in the same shape as a list of
+ * IexHistoricalPrices, straight from the series' columns, without building a bar object for each
+ * one.
+ */
+public class HistoricalBarSeriesSerializer extends StdSerializer<HistoricalBarSeries> {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Creates the serializer. Jackson instantiates it from the annotation on HistoricalBarSeries.
+   */
+  public HistoricalBarSeriesSerializer() {
+    super(HistoricalBarSeries.class);
+  }
+
+  @Override
+  public void serialize(final HistoricalBarSeries series, final JsonGenerator gen,
+      final SerializerProvider provider) throws IOException {
+    gen.writeStartArray(series.size());
+    for (int i = 0; i < series.size(); i++) {
+      // Same fields, in the same order, as IexHistoricalPrices
+      gen.writeStartObject();
+      writePrice(gen, "close", series.getClose(i));
+      writePrice(gen, "high", series.getHigh(i));
+      writePrice(gen, "low", series.getLow(i));
+      writePrice(gen, "open", series.getOpen(i));
+      gen.writeStringField("symbol", series.getSymbol(i));
+      if (series.getVolume(i) == HistoricalBarSeries.NO_VOLUME) {
+        gen.writeNullField("volume");
+      } else {
+        gen.writeNumberField("volume", series.getVolume(i));
+      }
+      gen.writeStringField("date", series.getDate(i).toString());
+      gen.writeEndObject();
+    }
+    gen.writeEndArray();
+  }
+
+  private static void writePrice(final JsonGenerator gen, final String field, final double price)
+      throws IOException {
+    if (Double.isNaN(price)) {
+      gen.writeNullField(field);
+    } else {
+      // Double.toString gives the shortest decimal that reads back as the same double
+      gen.writeNumberField(field, price);
+    }
+  }
+}
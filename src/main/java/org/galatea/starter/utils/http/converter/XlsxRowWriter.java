@@ -0,0 +1,215 @@
+package org.galatea.starter.utils.http.converter;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.primitives.Primitives;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * Writes objects of a given class as spreadsheet rows. Which fields become columns, and what their
+ * headers are, is worked out once per class; cells are then populated through method handles
+ * instead of per-cell reflective field access.
+ *
+ * <p>Numeric fields are written as numeric cells, everything else is basically toString()'ed and
+ * written as a string cell.
+ *
+ * @param <T> the type of the row data
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+final class XlsxRowWriter<T> {
+
+  // Largest magnitude at which every long can be represented exactly by a double
+  private static final long MAX_EXACT_DOUBLE = 1L << 53;
+
+  private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+  private static final Map<Class<?>, XlsxRowWriter<?>> ROW_WRITERS = new ConcurrentHashMap<>();
+
+  private final List<String> headers;
+
+  private final List<Column> columns;
+
+  /**
+   * Get the (cached) row writer for the given class.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> XlsxRowWriter<T> forClass(final Class<T> clazz) {
+    return (XlsxRowWriter<T>) ROW_WRITERS.computeIfAbsent(clazz, XlsxRowWriter::create);
+  }
+
+  /**
+   * Populate the given row with the header values, starting from the first column.
+   */
+  void writeHeaders(final Row row) {
+    for (int col = 0; col < headers.size(); col++) {
+      row.createCell(col).setCellValue(headers.get(col));
+    }
+  }
+
+  /**
+   * Populate the given row with the field values of the given object, starting from the first
+   * column.
+   */
+  void writeRow(final Row row, final T rowObject) {
+    for (int col = 0; col < columns.size(); col++) {
+      columns.get(col).write(row.createCell(col), rowObject);
+    }
+  }
+
+  private static <T> XlsxRowWriter<T> create(final Class<T> clazz) {
+    List<Field> fields = getFieldsToSerialize(clazz);
+    List<String> headers = new ArrayList<>(fields.size());
+    List<Column> columns = new ArrayList<>(fields.size());
+    for (Field field : fields) {
+      headers.add(getHeaderValue(field));
+      columns.add(new Column(getter(field), isNumeric(field.getType())));
+    }
+    return new XlsxRowWriter<>(Collections.unmodifiableList(headers),
+        Collections.unmodifiableList(columns));
+  }
+
+  /*
+   * Get a list of all fields in the given class, including inherited and private fields, but
+   * excluding any @JsonIgnore'd fields.
+   */
+  private static List<Field> getFieldsToSerialize(final Class<?> clazz) {
+    List<Field> fields = new ArrayList<>();
+    // Class#getFields() gets all public fields in a class including inherited fields, while
+    // Class#getDeclaredFields() gets all fields in a class excluding inherited fields
+    // To get all fields in the class, we do getDeclaredFields() all the way up the class hierarchy
+    if (clazz.getSuperclass() != null) {
+      fields = getFieldsToSerialize(clazz.getSuperclass());
+    }
+
+    Arrays.stream(clazz.getDeclaredFields())
+        .filter(XlsxRowWriter::shouldSerializeField)
+        .forEach(fields::add);
+    return fields;
+  }
+
+  /*
+   * Check whether a field should be serialized.
+   *
+   * Returns false if the field is static, synthetic, transient, or @JsonIgnore-d, and true
+   * otherwise.
+   */
+  private static boolean shouldSerializeField(final Field field) {
+    // Static fields aren't part of any one row
+    if (Modifier.isStatic(field.getModifiers())) {
+      return false;
+    }
+    // Jacoco adds a synthetic member variable "$jacocoData" to classes under test. Ignore such
+    // synthetic fields to avoid inconsistent test behavior.
+    // https://github.com/jacoco/jacoco/issues/168
+    // http://mylearningdump.blogspot.com/2017/05/java-reflection-synthetic-members-and.html
+    if (field.isSynthetic()) {
+      return false;
+    }
+    // The transient keyword indicates that a variable should not be serialized
+    if (Modifier.isTransient(field.getModifiers())) {
+      return false;
+    }
+    // Ignore any fields that have a @JsonIgnore annotation
+    JsonIgnore jsonIgnore = field.getAnnotation(JsonIgnore.class);
+    return jsonIgnore == null || !jsonIgnore.value();
+  }
+
+  /*
+   * Get the column header that should be used for the given field. If a @JsonProperty annotation
+   * is present on the field, use that annotation's value as the header, otherwise use the field
+   * name.
+   */
+  private static String getHeaderValue(final Field field) {
+    // Could also use a custom annotation instead of JsonProperty if different configuration is
+    // needed for JSON and XLSX serialization
+    JsonProperty customHeaderNameAnnotation = field.getAnnotation(JsonProperty.class);
+    return customHeaderNameAnnotation == null
+        ? field.getName()
+        : customHeaderNameAnnotation.value();
+  }
+
+  /*
+   * Get a method handle that reads the given field, adapted to (Object)Object so that it can be
+   * invoked without knowing the row type. Access checks happen here, once, rather than per cell.
+   */
+  @SneakyThrows(IllegalAccessException.class)
+  private static MethodHandle getter(final Field field) {
+    field.setAccessible(true);
+    return MethodHandles.lookup().unreflectGetter(field).asType(GETTER_TYPE);
+  }
+
+  private static boolean isNumeric(final Class<?> type) {
+    Class<?> boxed = Primitives.wrap(type);
+    return boxed == Byte.class || boxed == Short.class || boxed == Integer.class
+        || boxed == Long.class || boxed == Float.class || boxed == Double.class;
+  }
+
+  /*
+   * Get a useful string representation of the given object.
+   */
+  private static String stringify(final Object obj) {
+    if (obj == null) {
+      return "";
+    } else if (obj.getClass().isArray()) {
+      // Default toString() of an array isn't useful, as it just gives something like [C@6e1408
+      // We don't know whether obj is a primitive array or an object array, and primitive arrays
+      // can't be directly cast to Object[], so we copy the possibly-primitive array into
+      // an Object[] and go from there
+      // https://stackoverflow.com/questions/5606338/cast-primitive-type-array-into-object-array-in-java
+      int len = Array.getLength(obj);
+      Object[] objectArr = new Object[len];
+      for (int i = 0; i < len; i++) {
+        objectArr[i] = Array.get(obj, i);
+      }
+      return Arrays.toString(objectArr);
+    } else {
+      return obj.toString();
+    }
+  }
+
+  /*
+   * Whether the given number can be written as a numeric cell without losing any information.
+   */
+  private static boolean isExactDouble(final Number number) {
+    if (number instanceof Long) {
+      long value = number.longValue();
+      return value >= -MAX_EXACT_DOUBLE && value <= MAX_EXACT_DOUBLE;
+    }
+    // NaN and infinity can't be stored in a numeric cell
+    return Double.isFinite(number.doubleValue());
+  }
+
+  @RequiredArgsConstructor
+  private static final class Column {
+
+    private final MethodHandle getter;
+
+    private final boolean numeric;
+
+    @SneakyThrows
+    void write(final Cell cell, final Object rowObject) {
+      Object value = (Object) getter.invokeExact(rowObject);
+      if (numeric && value != null && isExactDouble((Number) value)) {
+        cell.setCellValue(((Number) value).doubleValue());
+      } else {
+        cell.setCellValue(stringify(value));
+      }
+    }
+  }
+}
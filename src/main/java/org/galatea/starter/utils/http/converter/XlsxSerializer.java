@@ -1,22 +1,12 @@
 package org.galatea.starter.utils.http.converter;
 
-import com.fasterxml.jackson.annotation.JsonIgnore;
-import com.fasterxml.jackson.annotation.JsonProperty;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Array;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import lombok.SneakyThrows;
+import java.io.OutputStream;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.reflect.FieldUtils;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 @Slf4j
@@ -29,7 +19,8 @@ public class XlsxSerializer {
    * Serialize the given objects to an XLSX spreadsheet.
    *
    * <p>Doesn't do any special handling of nested complex objects or collections in the given
-   * row objects - each field in the row object is basically toString()'ed and put in a cell.
+   * row objects - numeric fields are put in numeric cells, and every other field in the row object
+   * is basically toString()'ed and put in a cell.
    *
    * @param rows the row data that the spreadsheet should hold
    * @param clazz the class that is the type of the row data
@@ -40,124 +31,55 @@ public class XlsxSerializer {
       throws IOException {
     // XSSF is used for xlsx-format spreadsheets, HSSF is used for xls-format
     // SXSSF is the streaming version of XSSF, and is useful for working with large spreadsheets
+    // (see the OutputStream overload below)
     try (Workbook wb = new XSSFWorkbook()) {
-      Sheet sheet = wb.createSheet(clazz.getSimpleName());
-      List<Field> fieldsToSerialize = getFieldsToSerialize(clazz);
-      populateHeaderRow(sheet, getHeaderValues(fieldsToSerialize));
-      populateDataRows(sheet, fieldsToSerialize, rows);
+      populateSheet(wb, rows, clazz);
       return writeSpreadsheetToBytes(wb);
     }
   }
 
-  /*
-   * Get a list of all fields in the given class, including inherited and private fields, but
-   * excluding any @JsonIgnore'd fields.
-   */
-  private static List<Field> getFieldsToSerialize(final Class<?> clazz) {
-    List<Field> fields = new ArrayList<>();
-    // Class#getFields() gets all public fields in a class including inherited fields, while
-    // Class#getDeclaredFields() gets all fields in a class excluding inherited fields
-    // To get all fields in the class, we do getDeclaredFields() all the way up the class hierarchy
-    if (clazz.getSuperclass() != null) {
-      fields = getFieldsToSerialize(clazz.getSuperclass());
-    }
-
-    Arrays.stream(clazz.getDeclaredFields())
-        .filter(XlsxSerializer::shouldSerializeField)
-        .forEach(fields::add);
-    return fields;
-  }
-
-  /*
-   * Check whether a field should be serialized.
+  /**
+   * Serialize the given objects to an XLSX spreadsheet, streaming it to the given output stream.
    *
-   * Returns false if the field is synthetic, transient, or @JsonIgnore-d, and true otherwise.
-   */
-  private static boolean shouldSerializeField(final Field field) {
-    // Jacoco adds a synthetic member variable "$jacocoData" to classes under test. Ignore such
-    // synthetic fields to avoid inconsistent test behavior.
-    // https://github.com/jacoco/jacoco/issues/168
-    // http://mylearningdump.blogspot.com/2017/05/java-reflection-synthetic-members-and.html
-    if (field.isSynthetic()) {
-      return false;
-    }
-    // The transient keyword indicates that a variable should not be serialized
-    if (Modifier.isTransient(field.getModifiers())) {
-      return false;
-    }
-    // Ignore any fields that have a @JsonIgnore annotation
-    JsonIgnore jsonIgnore = field.getAnnotation(JsonIgnore.class);
-    return jsonIgnore == null || !jsonIgnore.value();
-  }
-
-  /*
-   * Get the column headers that should be used for the given fields. If a @JsonProperty annotation
-   * is present on a given field, use that annotation's value as the header, otherwise use the field
-   * name.
+   * <p>Only the last rowAccessWindowSize rows are kept in memory; older rows are flushed to a
+   * compressed temp file as the sheet is populated, and the temp file is removed once the
+   * spreadsheet has been written out. Prefer this over serializeToXlsx(Iterable, Class) for large
+   * exports.
+   *
+   * @param rows the row data that the spreadsheet should hold
+   * @param clazz the class that is the type of the row data
+   * @param out the stream to write the spreadsheet to. Not closed by this method.
+   * @param rowAccessWindowSize the number of rows to keep in memory while populating the sheet
+   * @param <T> the type of the row data
    */
-  private static List<String> getHeaderValues(final List<Field> fields) {
-    List<String> headers = new ArrayList<>();
-    for (Field field : fields) {
-      // Could also use a custom annotation instead of JsonProperty if different configuration is
-      // needed for JSON and XLSX serialization
-      JsonProperty customHeaderNameAnnotation = field.getAnnotation(JsonProperty.class);
-      String header = customHeaderNameAnnotation == null
-          ? field.getName()
-          : customHeaderNameAnnotation.value();
-      headers.add(header);
+  public static <T> void serializeToXlsx(final Iterable<T> rows, final Class<T> clazz,
+      final OutputStream out, final int rowAccessWindowSize) throws IOException {
+    SXSSFWorkbook wb = new SXSSFWorkbook(rowAccessWindowSize);
+    wb.setCompressTempFiles(true);
+    try {
+      populateSheet(wb, rows, clazz);
+      wb.write(out);
+    } finally {
+      // Closing the workbook doesn't remove the temp file backing the flushed rows
+      wb.dispose();
+      wb.close();
     }
-    return headers;
   }
 
   /*
-   * Populate the first row of the given sheet using the given list of header values.
+   * Create a sheet in the given workbook and populate it with a header row followed by the given
+   * row data.
    */
-  private static void populateHeaderRow(final Sheet sheet, final List<String> headers) {
-    Row headerRow = sheet.createRow(0);
-    for (int col = 0; col < headers.size(); col++) {
-      Cell headerCell = headerRow.createCell(col);
-      headerCell.setCellValue(headers.get(col));
-    }
-  }
+  private static <T> void populateSheet(final Workbook wb, final Iterable<T> rows,
+      final Class<T> clazz) {
+    Sheet sheet = wb.createSheet(clazz.getSimpleName());
+    XlsxRowWriter<T> rowWriter = XlsxRowWriter.forClass(clazz);
+    rowWriter.writeHeaders(sheet.createRow(0));
 
-  /*
-   * Populate the rows of the given sheet using the given row data.
-   */
-  @SneakyThrows(IllegalAccessException.class)
-  private static <T> void populateDataRows(final Sheet sheet, final List<Field> fieldsToSerialize,
-      final Iterable<T> rows) {
     int rowIndex = 1; // header is row 0
     for (T row : rows) {
-      Row dataRow = sheet.createRow(rowIndex);
+      rowWriter.writeRow(sheet.createRow(rowIndex), row);
       rowIndex++;
-      for (int col = 0; col < fieldsToSerialize.size(); col++) {
-        Cell dataCell = dataRow.createCell(col);
-        Object cellObject = FieldUtils.readField(fieldsToSerialize.get(col), row, true);
-        dataCell.setCellValue(stringify(cellObject));
-      }
-    }
-  }
-
-  /*
-   * Get a useful string representation of the given object.
-   */
-  private static String stringify(final Object obj) {
-    if (obj == null) {
-      return "";
-    } else if (obj.getClass().isArray()) {
-      // Default toString() of an array isn't useful, as it just gives something like [C@6e1408
-      // We don't know whether obj is a primitive array or an object array, and primitive arrays
-      // can't be directly cast to Object[], so we copy the possibly-primitive array into
-      // an Object[] and go from there
-      // https://stackoverflow.com/questions/5606338/cast-primitive-type-array-into-object-array-in-java
-      int len = Array.getLength(obj);
-      Object[] objectArr = new Object[len];
-      for (int i = 0; i < len; i++) {
-        objectArr[i] = Array.get(obj, i);
-      }
-      return Arrays.toString(objectArr);
-    } else {
-      return obj.toString();
     }
   }
 
@@ -0,0 +1,208 @@
+package org.galatea.starter.utils.jms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+import java.util.function.ToIntFunction;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Moves the number of consumers each listener container may run up and down with the load.
+ *
+ * <p>Every intervalMillis, each registered container's ceiling on consumers is set from what
+ * was seen since the last check, in this order of precedence:
+ *
+ * <ol>
+ *   <li>If the database connection pool is at least maxDbPoolUsage busy, one consumer is taken
+ *   away, since more consumers would only queue for connections.</li>
+ *   <li>If messages took longer than targetLatencyMillis on average to handle, one consumer is
+ *   taken away, since the consumers are getting in each other's way.</li>
+ *   <li>If more than backlogPerConsumer messages are waiting per consumer, the ceiling is raised
+ *   to cover the backlog in one go.</li>
+ *   <li>If the queue is empty, one consumer is taken away.</li>
+ * </ol>
+ *
+ * <p>The ceiling always stays within [minConsumers, maxConsumers]. Within it, the container
+ * itself starts consumers as messages arrive and retires idle ones.
+ */
+@Slf4j
+public class AdaptiveConcurrencyController {
+
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final ToIntFunction<String> queueDepth;
+
+  private final DoubleSupplier dbPoolUsage;
+
+  @Setter
+  private int minConsumers = 1;
+
+  @Setter
+  private int maxConsumers = 20;
+
+  @Setter
+  private long intervalMillis = 5000;
+
+  @Setter
+  private int backlogPerConsumer = 100;
+
+  // Zero or less to never back off on latency
+  @Setter
+  private long targetLatencyMillis = 0;
+
+  @Setter
+  private double maxDbPoolUsage = 0.9;
+
+  // Consumers only give up their thread, and so only notice they're surplus, after this many
+  // receives
+  @Setter
+  private int messagesPerTask = 20;
+
+  private final List<Tracked> containers = new CopyOnWriteArrayList<>();
+
+  private ScheduledExecutorService scheduler;
+
+  /**
+   * Creates a controller that sizes containers from the given load readings.
+   *
+   * @param queueDepth returns the number of messages waiting on the named queue, or a negative
+   *     number if it can't tell
+   * @param dbPoolUsage returns how busy the database connection pool is, from 0 (idle) to 1 (every
+   *     connection in use, or callers waiting for one)
+   */
+  public AdaptiveConcurrencyController(@NonNull final ToIntFunction<String> queueDepth,
+      @NonNull final DoubleSupplier dbPoolUsage) {
+    this.queueDepth = queueDepth;
+    this.dbPoolUsage = dbPoolUsage;
+  }
+
+  /**
+   * Puts the container under this controller, starting it at minConsumers. Must be called before
+   * the container is initialized.
+   */
+  public void register(final FuseMessageListenerContainer container) {
+    // Start at the floor, whatever the endpoint asked for. adjust() raises the ceiling from there.
+    container.setConcurrency(minConsumers + "-" + minConsumers);
+    if (container.getMaxMessagesPerTask() <= 0) {
+      container.setMaxMessagesPerTask(messagesPerTask);
+    }
+    Tracked tracked = new Tracked(container);
+    containers.add(tracked);
+    Metrics.gauge("jms.listener.consumers.max",
+        Tags.of("destination", String.valueOf(container.getDestinationName())), container,
+        FuseMessageListenerContainer::getMaxConcurrentConsumers);
+  }
+
+  /**
+   * Starts checking the containers every intervalMillis.
+   */
+  @PostConstruct
+  public void start() {
+    scheduler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat("jms-concurrency-%d").setDaemon(true).build());
+    scheduler.scheduleWithFixedDelay(this::adjustQuietly, intervalMillis, intervalMillis,
+        TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops checking the containers. Each keeps the ceiling it last had.
+   */
+  @PreDestroy
+  public void stop() {
+    if (scheduler != null) {
+      scheduler.shutdownNow();
+    }
+  }
+
+  /**
+   * Resizes every registered container from its load since the last call.
+   */
+  public void adjust() {
+    double dbUsage = dbPoolUsage.getAsDouble();
+    for (Tracked tracked : containers) {
+      FuseMessageListenerContainer container = tracked.container;
+      if (!container.isRunning()) {
+        continue;
+      }
+
+      long handled = container.getMessagesHandled();
+      long nanos = container.getHandlingNanos();
+      double latencyMillis = handled == tracked.lastHandled ? 0
+          : (nanos - tracked.lastNanos) / NANOS_PER_MILLI / (handled - tracked.lastHandled);
+      tracked.lastHandled = handled;
+      tracked.lastNanos = nanos;
+
+      int current = container.getMaxConcurrentConsumers();
+      int depth = queueDepth.applyAsInt(container.getDestinationName());
+      int next = nextCeiling(current, depth, latencyMillis, dbUsage);
+      if (next != current) {
+        log.info("Changing {} consumer ceiling from {} to {} (depth {}, latency {}ms, db {})",
+            container.getDestinationName(), current, next, depth, latencyMillis, dbUsage);
+        container.setMaxConcurrentConsumers(next);
+      }
+    }
+  }
+
+  /**
+   * Returns the consumer ceiling to use next, given the current one and the load seen since.
+   *
+   * @param current the current ceiling
+   * @param depth messages waiting on the queue, negative if unknown
+   * @param latencyMillis average time taken to handle a message, 0 if none were handled
+   * @param dbUsage how busy the database connection pool is, from 0 to 1
+   */
+  int nextCeiling(final int current, final int depth, final double latencyMillis,
+      final double dbUsage) {
+    int next;
+    if (dbUsage >= maxDbPoolUsage) {
+      next = current - 1;
+    } else if (targetLatencyMillis > 0 && latencyMillis > targetLatencyMillis) {
+      next = current - 1;
+    } else if (depth > (long) current * backlogPerConsumer) {
+      next = (int) Math.min(Integer.MAX_VALUE, (depth + backlogPerConsumer - 1L)
+          / Math.max(1, backlogPerConsumer));
+    } else if (depth == 0) {
+      next = current - 1;
+    } else {
+      next = current;
+    }
+    return Math.max(minConsumers, Math.min(Math.max(minConsumers, maxConsumers), next));
+  }
+
+  private void adjustQuietly() {
+    try {
+      adjust();
+    } catch (RuntimeException e) {
+      // Leave the containers as they are, we'll try again next time round
+      log.warn("Error adjusting listener concurrency: ", e);
+    }
+  }
+
+  /**
+   * A registered container and its totals as of the last check.
+   */
+  private static final class Tracked {
+
+    private final FuseMessageListenerContainer container;
+
+    private long lastHandled;
+
+    private long lastNanos;
+
+    private Tracked(final FuseMessageListenerContainer container) {
+      this.container = container;
+      this.lastHandled = container.getMessagesHandled();
+      this.lastNanos = container.getHandlingNanos();
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package org.galatea.starter.utils.jms;
+
+import javax.jms.MessageListener;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.jms.config.AbstractJmsListenerEndpoint;
+import org.springframework.jms.listener.MessageListenerContainer;
+
+/**
+ * Endpoint for registering a BatchMessageListener. We don't use SimpleJmsListenerEndpoint because
+ * sleuth wraps the listener of those endpoints in a tracing listener, which hides the batch
+ * listener from the container and silently falls back to one message at a time.
+ */
+@RequiredArgsConstructor
+@ToString(callSuper = true)
+@EqualsAndHashCode(callSuper = false)
+public class BatchJmsListenerEndpoint extends AbstractJmsListenerEndpoint {
+
+  @NonNull
+  protected BatchMessageListener batchMessageListener;
+
+  @Override
+  protected MessageListener createMessageListener(final MessageListenerContainer container) {
+    return batchMessageListener;
+  }
+}
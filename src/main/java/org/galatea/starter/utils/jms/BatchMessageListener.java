@@ -0,0 +1,35 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.Collections;
+import java.util.List;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import org.springframework.jms.support.JmsUtils;
+
+/**
+ * A listener that handles messages in batches. When registered with a FuseMessageListenerContainer
+ * that has a batch size greater than one, the container drains a batch of messages off the queue
+ * and hands them to this listener in a single call. Otherwise messages are delivered one at a time
+ * as single-element batches.
+ */
+@FunctionalInterface
+public interface BatchMessageListener extends MessageListener {
+
+  /**
+   * Handles a batch of messages, in the order they were received.
+   *
+   * @throws JMSException if the batch could not be handled and should not be retried
+   */
+  void onMessages(List<Message> messages) throws JMSException;
+
+  @Override
+  default void onMessage(final Message message) {
+    try {
+      onMessages(Collections.singletonList(message));
+    } catch (JMSException e) {
+      // MessageListener#onMessage can't throw checked exceptions
+      throw JmsUtils.convertJmsAccessException(e);
+    }
+  }
+}
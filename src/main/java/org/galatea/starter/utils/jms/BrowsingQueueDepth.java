@@ -0,0 +1,61 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.Enumeration;
+import java.util.function.ToIntFunction;
+import javax.jms.ConnectionFactory;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+
+/**
+ * Finds how many messages are waiting on a queue by browsing it. JMS has no standard way to ask a
+ * broker for a queue's depth, and browsing works with any of them.
+ *
+ * <p>Counting stops at a cap, since beyond some depth the exact number no longer matters and
+ * browsing a deep queue is expensive for the broker.
+ */
+@Slf4j
+public class BrowsingQueueDepth implements ToIntFunction<String> {
+
+  private final JmsTemplate jmsTemplate;
+
+  private final int cap;
+
+  /**
+   * Creates a probe that browses queues over connections from the given factory.
+   *
+   * @param connectionFactory the broker to browse
+   * @param cap the most messages counted, deeper queues are reported as this deep
+   */
+  public BrowsingQueueDepth(@NonNull final ConnectionFactory connectionFactory, final int cap) {
+    this.jmsTemplate = new JmsTemplate(connectionFactory);
+    this.cap = cap;
+  }
+
+  /**
+   * Returns the number of messages waiting on the queue, up to the cap, or -1 if it couldn't be
+   * browsed.
+   */
+  @Override
+  public int applyAsInt(final String queueName) {
+    if (queueName == null) {
+      return -1;
+    }
+    try {
+      Integer depth = jmsTemplate.browse(queueName, (session, browser) -> {
+        int count = 0;
+        Enumeration<?> messages = browser.getEnumeration();
+        while (count < cap && messages.hasMoreElements()) {
+          messages.nextElement();
+          count++;
+        }
+        return count;
+      });
+      return depth == null ? -1 : depth;
+    } catch (JmsException e) {
+      log.debug("Couldn't browse {} for its depth", queueName, e);
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,36 @@
+package org.galatea.starter.utils.jms;
+
+import java.time.Instant;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * A message that failed processing, as kept by the DeadLetterStore.
+ */
+@Value
+@Builder
+public class DeadLetter {
+
+  /**
+   * The JMS message types that can be dead-lettered, and so replayed.
+   */
+  public enum PayloadType {
+    TEXT, BYTES
+  }
+
+  long id;
+
+  // The queue the message was taken off, and is put back on when replayed
+  String queue;
+
+  String messageId;
+
+  PayloadType payloadType;
+
+  // The message body, UTF-8 encoded for text messages
+  byte[] payload;
+
+  String error;
+
+  Instant failedAt;
+}
@@ -0,0 +1,189 @@
+package org.galatea.starter.utils.jms;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import javax.annotation.PreDestroy;
+import javax.jms.BytesMessage;
+import javax.jms.ConnectionFactory;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jms.JmsException;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.jms.support.JmsUtils;
+
+/**
+ * Puts dead letters back on the queues they came off, so they're settled by the listeners as if
+ * they'd just arrived. Any that fail again go back to the dead-letter store.
+ *
+ * <p>Dead letters are replayed in batches of batchSize, up to parallelism batches at a time. Each
+ * batch is sent in one transaction and removed from the store once it commits, so a batch that
+ * can't be sent stays in the store for next time. If the removal fails after the send has
+ * committed, the batch is sent again by the next replay.
+ */
+@Slf4j
+public class DeadLetterReplayer {
+
+  private final DeadLetterStore store;
+
+  private final JmsTemplate jmsTemplate;
+
+  private final int batchSize;
+
+  private final ExecutorService executor;
+
+  // Batches read from the store but not yet sent, so a big replay doesn't pull everything into
+  // memory at once
+  private final Semaphore batchesInFlight;
+
+  /**
+   * Creates a replayer that sends dead letters over connections from the given factory.
+   *
+   * @param store where the dead letters are kept
+   * @param connectionFactory the broker to send them to
+   * @param batchSize the most dead letters sent in one transaction
+   * @param parallelism the most batches sent at the same time
+   */
+  public DeadLetterReplayer(@NonNull final DeadLetterStore store,
+      @NonNull final ConnectionFactory connectionFactory, final int batchSize,
+      final int parallelism) {
+    this.store = store;
+    this.jmsTemplate = new JmsTemplate(connectionFactory);
+    this.jmsTemplate.setSessionTransacted(true);
+    this.batchSize = Math.max(1, batchSize);
+    this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism),
+        new ThreadFactoryBuilder().setNameFormat("dead-letter-replay-%d").setDaemon(true).build());
+    this.batchesInFlight = new Semaphore(Math.max(1, parallelism));
+  }
+
+  /**
+   * Replays dead letters, oldest first, and returns once they've all been sent or failed. Only one
+   * replay runs at a time, so the same dead letter is never sent twice at once.
+   *
+   * @param queue only replay dead letters from this queue, or from every queue if null
+   * @param limit the most dead letters to replay. Zero or less for all of them.
+   */
+  public synchronized ReplayResult replay(final String queue, final int limit)
+      throws InterruptedException {
+    AtomicInteger replayed = new AtomicInteger();
+    AtomicInteger failed = new AtomicInteger();
+    List<CompletableFuture<Void>> batches = new ArrayList<>();
+
+    // Messages that fail again while we're replaying are stored after the ones we started with.
+    // Stopping at the number we started with keeps us from replaying them in a loop.
+    long after = 0;
+    long remaining = store.count(queue);
+    if (limit > 0) {
+      remaining = Math.min(remaining, limit);
+    }
+    while (remaining > 0) {
+      batchesInFlight.acquire();
+      List<DeadLetter> batch;
+      try {
+        batch = store.list(queue, after, (int) Math.min(batchSize, remaining));
+      } catch (RuntimeException e) {
+        batchesInFlight.release();
+        throw e;
+      }
+      if (batch.isEmpty()) {
+        batchesInFlight.release();
+        break;
+      }
+      after = batch.get(batch.size() - 1).getId();
+      remaining -= batch.size();
+
+      batches.add(CompletableFuture.runAsync(() -> {
+        try {
+          if (send(batch)) {
+            replayed.addAndGet(batch.size());
+          } else {
+            failed.addAndGet(batch.size());
+          }
+        } finally {
+          batchesInFlight.release();
+        }
+      }, executor));
+    }
+
+    CompletableFuture.allOf(batches.toArray(new CompletableFuture[0])).join();
+    log.info("Replayed {} dead letters, {} failed", replayed.get(), failed.get());
+    return ReplayResult.builder().replayed(replayed.get()).failed(failed.get())
+        .remaining(store.count(queue)).build();
+  }
+
+  /**
+   * Stops the replay threads.
+   */
+  @PreDestroy
+  public void stop() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Sends the batch in one transaction, then removes it from the store. Returns whether it was
+   * sent.
+   */
+  private boolean send(final List<DeadLetter> batch) {
+    try {
+      jmsTemplate.execute(session -> {
+        MessageProducer producer = session.createProducer(null);
+        try {
+          for (DeadLetter deadLetter : batch) {
+            Message message;
+            if (deadLetter.getPayloadType() == DeadLetter.PayloadType.TEXT) {
+              message = session.createTextMessage(
+                  new String(deadLetter.getPayload(), StandardCharsets.UTF_8));
+            } else {
+              BytesMessage bytesMessage = session.createBytesMessage();
+              bytesMessage.writeBytes(deadLetter.getPayload());
+              message = bytesMessage;
+            }
+            producer.send(session.createQueue(deadLetter.getQueue()), message);
+          }
+          JmsUtils.commitIfNecessary(session);
+        } finally {
+          JmsUtils.closeMessageProducer(producer);
+        }
+        return null;
+      });
+    } catch (JmsException e) {
+      log.warn("Error replaying {} dead letters starting at {}, leaving them in the store",
+          batch.size(), batch.get(0).getId(), e);
+      return false;
+    }
+
+    try {
+      store.delete(batch.stream().map(DeadLetter::getId).collect(Collectors.toList()));
+    } catch (DataAccessException e) {
+      log.warn("Error removing {} replayed dead letters starting at {}, the next replay will send "
+          + "them again", batch.size(), batch.get(0).getId(), e);
+    }
+    return true;
+  }
+
+  /**
+   * What a replay did.
+   */
+  @Value
+  @Builder
+  public static class ReplayResult {
+    // Put back on their queues
+    long replayed;
+    // Couldn't be sent, so still in the store
+    long failed;
+    // Left in the store for the queue replayed once the replay finished
+    long remaining;
+  }
+}
@@ -0,0 +1,255 @@
+package org.galatea.starter.utils.jms;
+
+import com.google.common.base.Throwables;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import javax.jms.BytesMessage;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Queue;
+import javax.jms.TextMessage;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.utils.jms.DeadLetter.PayloadType;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jms.support.JmsUtils;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * File-backed store of messages that failed processing, so they can be looked at and replayed
+ * later rather than lost. Fed by the listener containers through the failed message consumer.
+ *
+ * <p>Messages are kept in an embedded H2 database of their own, rather than the application's
+ * database, so the store keeps working through the database outages that send most messages
+ * here. Only text and bytes messages taken off queues can be stored. Anything else is logged and
+ * dropped, as before there was a store.
+ */
+@Slf4j
+public class DeadLetterStore implements FailedMessageConsumer, AutoCloseable {
+
+  // Most characters of the error kept per message
+  private static final int MAX_ERROR_LENGTH = 4000;
+
+  private static final String COLUMNS =
+      "id, queue_name, message_id, payload_type, payload, error_text, failed_at";
+
+  private static final RowMapper<DeadLetter> ROW_MAPPER = (rs, rowNum) -> DeadLetter.builder()
+      .id(rs.getLong("id"))
+      .queue(rs.getString("queue_name"))
+      .messageId(rs.getString("message_id"))
+      .payloadType(PayloadType.valueOf(rs.getString("payload_type")))
+      .payload(rs.getBytes("payload"))
+      .error(rs.getString("error_text"))
+      .failedAt(rs.getTimestamp("failed_at").toInstant())
+      .build();
+
+  private final JdbcConnectionPool connectionPool;
+
+  private final JdbcTemplate jdbcTemplate;
+
+  private final TransactionTemplate transactionTemplate;
+
+  /**
+   * Opens the store kept in the given file, creating it if it doesn't exist yet.
+   *
+   * @param path the database file, without H2's .mv.db extension. Relative to the working
+   *     directory if not absolute.
+   */
+  public DeadLetterStore(@NonNull final String path) {
+    // H2 won't take a relative path unless it starts with ./
+    this.connectionPool = JdbcConnectionPool.create(
+        "jdbc:h2:file:" + Paths.get(path).toAbsolutePath(), "sa", "");
+    this.jdbcTemplate = new JdbcTemplate(connectionPool);
+    this.transactionTemplate =
+        new TransactionTemplate(new DataSourceTransactionManager(connectionPool));
+    jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS dead_letter ("
+        + "id BIGINT AUTO_INCREMENT PRIMARY KEY, "
+        + "queue_name VARCHAR(255) NOT NULL, "
+        + "message_id VARCHAR(255), "
+        + "payload_type VARCHAR(16) NOT NULL, "
+        + "payload VARBINARY NOT NULL, "
+        + "error_text VARCHAR(" + MAX_ERROR_LENGTH + "), "
+        + "failed_at TIMESTAMP NOT NULL)");
+    jdbcTemplate.execute(
+        "CREATE INDEX IF NOT EXISTS dead_letter_queue ON dead_letter (queue_name, id)");
+  }
+
+  /**
+   * Stores the failed message, or logs and drops it if it can't be replayed. An error reading or
+   * storing the message is thrown, so the listener container puts the message back on its queue.
+   */
+  @Override
+  public void accept(final Message message, final Exception error) {
+    acceptAll(Collections.singletonList(message), error);
+  }
+
+  /**
+   * Stores the failed messages in one transaction, so if one can't be stored none of them are, and
+   * the listener container puts them all back on their queue together. Messages that can't be
+   * replayed are logged and dropped.
+   */
+  @Override
+  public void acceptAll(final List<Message> messages, final Exception error) {
+    List<DeadLetter> deadLetters = new ArrayList<>(messages.size());
+    for (Message message : messages) {
+      try {
+        deadLetters.add(toDeadLetter(message, error));
+      } catch (MessageConversionException e) {
+        log.error("Can't dead-letter message {}, dropping it: {}", message, e.getMessage());
+      } catch (JMSException e) {
+        throw JmsUtils.convertJmsAccessException(e);
+      }
+    }
+    transactionTemplate.execute(status -> {
+      deadLetters.forEach(this::add);
+      return null;
+    });
+  }
+
+  /**
+   * Stores the failed message. Throws a MessageConversionException if it isn't a text or bytes
+   * message taken off a queue.
+   *
+   * @return the id it was stored under
+   */
+  public long add(final Message message, final Exception error) throws JMSException {
+    return add(toDeadLetter(message, error));
+  }
+
+  /**
+   * Stores the dead letter, ignoring its id.
+   *
+   * @return the id it was stored under
+   */
+  public long add(final DeadLetter deadLetter) {
+    KeyHolder keyHolder = new GeneratedKeyHolder();
+    jdbcTemplate.update(connection -> {
+      PreparedStatement statement = connection.prepareStatement("INSERT INTO dead_letter "
+          + "(queue_name, message_id, payload_type, payload, error_text, failed_at) "
+          + "VALUES (?, ?, ?, ?, ?, ?)", Statement.RETURN_GENERATED_KEYS);
+      statement.setString(1, deadLetter.getQueue());
+      statement.setString(2, deadLetter.getMessageId());
+      statement.setString(3, deadLetter.getPayloadType().name());
+      statement.setBytes(4, deadLetter.getPayload());
+      statement.setString(5, truncate(deadLetter.getError()));
+      statement.setTimestamp(6, Timestamp.from(deadLetter.getFailedAt()));
+      return statement;
+    }, keyHolder);
+    return keyHolder.getKey().longValue();
+  }
+
+  /**
+   * Returns up to limit dead letters with ids after the given one, oldest first.
+   *
+   * @param queue only dead letters from this queue, or from every queue if null
+   * @param after only dead letters with a greater id. 0 to start from the oldest.
+   * @param limit the most dead letters to return
+   */
+  public List<DeadLetter> list(final String queue, final long after, final int limit) {
+    if (queue == null) {
+      return jdbcTemplate.query("SELECT " + COLUMNS + " FROM dead_letter WHERE id > ? "
+          + "ORDER BY id LIMIT ?", ROW_MAPPER, after, limit);
+    }
+    return jdbcTemplate.query("SELECT " + COLUMNS + " FROM dead_letter "
+        + "WHERE queue_name = ? AND id > ? ORDER BY id LIMIT ?", ROW_MAPPER, queue, after, limit);
+  }
+
+  /**
+   * Returns the number of dead letters held.
+   *
+   * @param queue only count dead letters from this queue, or from every queue if null
+   */
+  public long count(final String queue) {
+    Long count = queue == null
+        ? jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dead_letter", Long.class)
+        : jdbcTemplate.queryForObject("SELECT COUNT(*) FROM dead_letter WHERE queue_name = ?",
+            Long.class, queue);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Removes the dead letters with the given ids, e.g. once they've been replayed.
+   *
+   * @return the number removed
+   */
+  public int delete(final Collection<Long> ids) {
+    if (ids.isEmpty()) {
+      return 0;
+    }
+    return new NamedParameterJdbcTemplate(jdbcTemplate).update(
+        "DELETE FROM dead_letter WHERE id IN (:ids)", Collections.singletonMap("ids", ids));
+  }
+
+  /**
+   * Closes the store's connections, which closes the database file.
+   */
+  @Override
+  public void close() {
+    connectionPool.dispose();
+  }
+
+  private static DeadLetter toDeadLetter(final Message message, final Exception error)
+      throws JMSException {
+    Destination destination = message.getJMSDestination();
+    if (!(destination instanceof Queue)) {
+      throw new MessageConversionException("Not taken off a queue: " + destination);
+    }
+
+    PayloadType payloadType;
+    byte[] payload;
+    if (message instanceof TextMessage) {
+      payloadType = PayloadType.TEXT;
+      String text = ((TextMessage) message).getText();
+      payload = text == null ? new byte[0] : text.getBytes(StandardCharsets.UTF_8);
+    } else if (message instanceof BytesMessage) {
+      payloadType = PayloadType.BYTES;
+      BytesMessage bytesMessage = (BytesMessage) message;
+      // The listener has usually read the body already
+      bytesMessage.reset();
+      payload = new byte[(int) bytesMessage.getBodyLength()];
+      bytesMessage.readBytes(payload);
+    } else {
+      throw new MessageConversionException(
+          "Unsupported message type: " + message.getClass().getName());
+    }
+
+    return DeadLetter.builder()
+        .queue(((Queue) destination).getQueueName())
+        .messageId(message.getJMSMessageID())
+        .payloadType(payloadType)
+        .payload(payload)
+        .error(describe(error))
+        .failedAt(Instant.now())
+        .build();
+  }
+
+  private static String describe(final Exception error) {
+    if (error == null) {
+      return null;
+    }
+    Throwable rootCause = Throwables.getRootCause(error);
+    return rootCause == error ? error.toString()
+        : error.toString() + ", caused by " + rootCause.toString();
+  }
+
+  private static String truncate(final String error) {
+    return error == null || error.length() <= MAX_ERROR_LENGTH ? error
+        : error.substring(0, MAX_ERROR_LENGTH);
+  }
+}
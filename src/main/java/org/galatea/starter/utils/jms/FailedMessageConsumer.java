@@ -0,0 +1,21 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.List;
+import java.util.function.BiConsumer;
+import javax.jms.Message;
+
+/**
+ * Takes messages that failed processing and won't be retried, along with the error. Throwing a
+ * RuntimeException puts the messages back on their queue.
+ */
+@FunctionalInterface
+public interface FailedMessageConsumer extends BiConsumer<Message, Exception> {
+
+  /**
+   * Takes a batch of messages that failed together. By default each message is taken on its own,
+   * so if one throws, those before it have already been taken.
+   */
+  default void acceptAll(final List<Message> messages, final Exception error) {
+    messages.forEach(message -> accept(message, error));
+  }
+}
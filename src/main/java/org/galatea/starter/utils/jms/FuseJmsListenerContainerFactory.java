@@ -1,13 +1,13 @@
 package org.galatea.starter.utils.jms;
 
-import java.util.function.BiConsumer;
-import javax.jms.Message;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
+import org.springframework.jms.config.JmsListenerEndpoint;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
 
 
@@ -18,11 +18,83 @@ import org.springframework.jms.listener.DefaultMessageListenerContainer;
 public class FuseJmsListenerContainerFactory extends DefaultJmsListenerContainerFactory {
 
   @NonNull
-  protected BiConsumer<Message, Exception> failedMessageConsumer;
+  protected FailedMessageConsumer failedMessageConsumer;
+
+  /**
+   * Passed through to each container. See FuseMessageListenerContainer#batchSize.
+   */
+  @Setter
+  protected int batchSize = 1;
+
+  /**
+   * Passed through to each container. See FuseMessageListenerContainer#batchTimeout.
+   */
+  @Setter
+  protected long batchTimeout = 0;
+
+  /**
+   * Passed through to each container. See FuseMessageListenerContainer#prefetch.
+   */
+  @Setter
+  protected int prefetch = 0;
+
+  /**
+   * Passed through to each container. See FuseMessageListenerContainer#commitBatchSize.
+   */
+  @Setter
+  protected int commitBatchSize = 1;
+
+  /**
+   * Passed through to each container. See FuseMessageListenerContainer#commitIntervalMillis.
+   */
+  @Setter
+  protected long commitIntervalMillis = 0;
+
+  /**
+   * Passed through to each container. See FuseMessageListenerContainer#maxDeliveryAttempts.
+   */
+  @Setter
+  protected int maxDeliveryAttempts = 0;
+
+  /**
+   * Most messages each container handles at once. When set, each container starts with one
+   * consumer and adds more as messages back up, up to this many, in place of whatever concurrency
+   * its endpoint asked for. Zero or less leaves the endpoint's concurrency alone.
+   */
+  @Setter
+  protected int maxInFlight = 0;
+
+  /**
+   * When set, sizes each container by its load, in place of both the endpoint's concurrency and
+   * maxInFlight.
+   */
+  @Setter
+  protected AdaptiveConcurrencyController concurrencyController;
+
+  @Override
+  public DefaultMessageListenerContainer createListenerContainer(
+      final JmsListenerEndpoint endpoint) {
+    DefaultMessageListenerContainer container = super.createListenerContainer(endpoint);
+    if (concurrencyController != null) {
+      concurrencyController.register((FuseMessageListenerContainer) container);
+    } else if (maxInFlight > 0) {
+      // The endpoint has had its say by now, so this wins
+      container.setConcurrency("1-" + maxInFlight);
+    }
+    return container;
+  }
 
   @Override
   protected DefaultMessageListenerContainer createContainerInstance() {
-    return new FuseMessageListenerContainer(failedMessageConsumer);
+    FuseMessageListenerContainer container =
+        new FuseMessageListenerContainer(failedMessageConsumer);
+    container.setBatchSize(batchSize);
+    container.setBatchTimeout(batchTimeout);
+    container.setPrefetch(prefetch);
+    container.setCommitBatchSize(commitBatchSize);
+    container.setCommitIntervalMillis(commitIntervalMillis);
+    container.setMaxDeliveryAttempts(maxDeliveryAttempts);
+    return container;
   }
 
 }
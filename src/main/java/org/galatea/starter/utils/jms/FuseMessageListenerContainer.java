@@ -1,16 +1,27 @@
 package org.galatea.starter.utils.jms;
 
-import java.util.function.BiConsumer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.jms.Connection;
+import javax.jms.Destination;
 import javax.jms.JMSException;
 import javax.jms.Message;
+import javax.jms.MessageConsumer;
 import javax.jms.Session;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.ToString;
+import lombok.experimental.Delegate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.jms.listener.DefaultMessageListenerContainer;
+import org.springframework.transaction.TransactionStatus;
 
 @RequiredArgsConstructor
 @Slf4j
@@ -18,23 +29,431 @@ import org.springframework.jms.listener.DefaultMessageListenerContainer;
 @EqualsAndHashCode(callSuper = true)
 public class FuseMessageListenerContainer extends DefaultMessageListenerContainer {
 
+  // Set by the broker, counting the first delivery
+  private static final String DELIVERY_COUNT = "JMSXDeliveryCount";
+
   @NonNull
-  protected BiConsumer<Message, Exception> failedMessageConsumer;
+  protected FailedMessageConsumer failedMessageConsumer;
+
+  /**
+   * Maximum number of messages handed to a BatchMessageListener in one call. Values of one or less
+   * disable batching.
+   */
+  @Setter
+  protected int batchSize = 1;
+
+  /**
+   * Maximum time in millis to wait for a batch to fill up once its first message has arrived.
+   */
+  @Setter
+  protected long batchTimeout = 0;
+
+  /**
+   * Messages the broker pushes to each consumer ahead of it asking for them, passed to ActiveMQ as
+   * the consumer.prefetchSize destination option. Zero or less leaves the broker's default.
+   */
+  @Setter
+  protected int prefetch = 0;
+
+  /**
+   * Most messages received on a transacted session before it is committed. Values of one or less
+   * commit after every message (or batch), as the parent container does.
+   */
+  @Setter
+  protected int commitBatchSize = 1;
+
+  /**
+   * Longest time in millis a transacted session holds received messages uncommitted. Checked as
+   * messages arrive and whenever a receive times out empty, so an idle consumer commits within
+   * receiveTimeout. Zero or less to only commit on commitBatchSize (or when idle).
+   */
+  @Setter
+  protected long commitIntervalMillis = 0;
+
+  /**
+   * Deliveries after which a message whose listener throws is handed to the failed message
+   * consumer rather than rolled back onto the queue. Keep it below the broker's own redelivery
+   * limit, so messages reach the failed message consumer before the broker gives up on them. Zero
+   * or less leaves redelivery to the broker.
+   */
+  @Setter
+  protected int maxDeliveryAttempts = 0;
+
+  // Running totals of the messages handed to the listener and the time it took to handle them
+  private final LongAdder messagesHandled = new LongAdder();
+  private final LongAdder handlingNanos = new LongAdder();
+
+  // Running totals of the commits made and the time they took, and the slowest of them
+  private final LongAdder commits = new LongAdder();
+  private final LongAdder commitNanos = new LongAdder();
+  private final LongAccumulator maxCommitNanos = new LongAccumulator(Math::max, 0);
+
+  // Transacted sessions holding received messages that haven't been committed yet. Each session
+  // belongs to one consumer, so only its own consumer ever touches its entry. Entries are removed
+  // when the session commits, rolls back or closes.
+  private final Map<Session, PendingCommit> pendingCommits = new ConcurrentHashMap<>();
+
+  private final long createdNanos = System.nanoTime();
+
+  /**
+   * Returns the number of messages handed to the listener since the container was created.
+   */
+  public long getMessagesHandled() {
+    return messagesHandled.sum();
+  }
+
+  /**
+   * Returns the total time, in nanos, the listener has spent handling messages since the container
+   * was created.
+   */
+  public long getHandlingNanos() {
+    return handlingNanos.sum();
+  }
+
+  /**
+   * Returns the number of session commits made since the container was created.
+   */
+  public long getCommits() {
+    return commits.sum();
+  }
+
+  /**
+   * Returns the total time, in nanos, spent committing sessions since the container was created.
+   */
+  public long getCommitNanos() {
+    return commitNanos.sum();
+  }
+
+  /**
+   * Returns the longest time, in nanos, a session commit has taken since the container was
+   * created.
+   */
+  public long getMaxCommitNanos() {
+    return maxCommitNanos.get();
+  }
+
+  /**
+   * Returns the time, in nanos, since the container was created.
+   */
+  public long getUptimeNanos() {
+    return System.nanoTime() - createdNanos;
+  }
 
   @Override
   @SneakyThrows
   protected void invokeListener(final Session session, final Message message) {
 
-    // We expect the listener to handle any retryable exceptions internally. If the exception
-    // reaches the catch block, then we assume that the message has failed processing and should
-    // NOT be
-    // retried. That being said, the failed message consumer could decide to throw a
-    // RuntimeException, which would result in the message being placed back on the queue. While
-    // this is not encouraged, there may be certain circumstances where that is necessary.
+    // A checked JMSException means the message has failed processing and should NOT be retried,
+    // so it goes straight to the failed message consumer. A RuntimeException is rethrown, which
+    // rolls the message back onto the queue to be redelivered, until it has been delivered
+    // maxDeliveryAttempts times; then it goes to the failed message consumer too. It also goes
+    // there if the session is holding earlier messages uncommitted, since rolling back would
+    // deliver those again, and if the session would never deliver it again (acknowledged on
+    // receipt rather than transacted or client acknowledged). The failed message consumer can
+    // itself throw a RuntimeException to put the message back on the queue.
+    long start = System.nanoTime();
     try {
       super.invokeListener(session, message);
     } catch (JMSException e) {
       failedMessageConsumer.accept(message, e);
+    } catch (RuntimeException e) {
+      if (!isLastDeliveryAttempt(message) && !isHoldingHandledMessages(session)
+          && isRedeliveredOnFailure(session)) {
+        throw e;
+      }
+      failedMessageConsumer.accept(message, e);
+    } finally {
+      recordHandled(1, System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Drains up to batchSize messages off the consumer and hands them to the listener in one call
+   * when the listener is a BatchMessageListener. The whole batch is committed (or acknowledged)
+   * once, after the listener returns. Falls back to per-message delivery otherwise.
+   */
+  @Override
+  protected boolean doReceiveAndExecute(final Object invoker, final Session session,
+      final MessageConsumer consumer, final TransactionStatus status) throws JMSException {
+
+    if (batchSize <= 1 || session == null || consumer == null
+        || !(getMessageListener() instanceof BatchMessageListener)) {
+      return super.doReceiveAndExecute(invoker, session, consumer, status);
+    }
+
+    List<Message> batch = receiveBatch(consumer);
+    if (batch.isEmpty()) {
+      noMessageReceived(invoker, session);
+      return false;
+    }
+
+    messageReceived(invoker, session);
+    if (!isAcceptMessagesWhileStopping() && !isRunning()) {
+      log.debug("Rejecting batch of {} messages because of listener container having been "
+          + "stopped in the meantime", batch.size());
+      rollbackIfNecessary(session);
+      return true;
+    }
+
+    log.debug("Invoking batch listener with {} messages", batch.size());
+    Exception failure = null;
+    long start = System.nanoTime();
+    try {
+      ((BatchMessageListener) getMessageListener()).onMessages(batch);
+    } catch (JMSException e) {
+      // Same contract as invokeListener: a checked exception means the batch should NOT be retried
+      failure = e;
+    } catch (RuntimeException | Error e) {
+      if (e instanceof Error || (!anyOnLastDeliveryAttempt(batch)
+          && !isHoldingHandledMessages(session) && isRedeliveredOnFailure(session))) {
+        rollbackBatch(session, status, e);
+        return true;
+      }
+      // The whole batch is given up on, rather than let any of it run out of deliveries or have
+      // earlier batches delivered again
+      failure = (RuntimeException) e;
+    } finally {
+      recordHandled(batch.size(), System.nanoTime() - start);
+    }
+
+    if (failure != null) {
+      try {
+        failedMessageConsumer.acceptAll(batch, failure);
+      } catch (RuntimeException e) {
+        // The failed message consumer wants the batch back on the queue
+        rollbackBatch(session, status, e);
+        return true;
+      }
+    }
+
+    commitReceived(session, batch.get(batch.size() - 1), batch.size());
+    return true;
+  }
+
+  /**
+   * As the parent does for a single message: rolls the batch back onto the queue and reports the
+   * exception, rather than throw it up to the consumer as a setup failure.
+   */
+  private void rollbackBatch(final Session session, final TransactionStatus status,
+      final Throwable ex) throws JMSException {
+    if (status != null) {
+      status.setRollbackOnly();
+    }
+    rollbackOnExceptionIfNecessary(session, ex);
+    handleListenerException(ex);
+  }
+
+  /**
+   * Blocks for the first message as usual, then keeps receiving until the batch is full or the
+   * batch timeout has elapsed.
+   */
+  protected List<Message> receiveBatch(final MessageConsumer consumer) throws JMSException {
+    List<Message> batch = new ArrayList<>(batchSize);
+
+    Message message = receiveMessage(consumer);
+    if (message == null) {
+      return batch;
+    }
+    batch.add(message);
+
+    long deadline = System.currentTimeMillis() + batchTimeout;
+    while (batch.size() < batchSize) {
+      long remaining = deadline - System.currentTimeMillis();
+      message = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+      if (message == null) {
+        break;
+      }
+      batch.add(message);
+    }
+
+    return batch;
+  }
+
+  /**
+   * Returns whether the message has been delivered maxDeliveryAttempts times.
+   */
+  protected boolean isLastDeliveryAttempt(final Message message) throws JMSException {
+    if (maxDeliveryAttempts <= 0) {
+      return false;
+    }
+    Object deliveries = message.getObjectProperty(DELIVERY_COUNT);
+    return deliveries instanceof Number && ((Number) deliveries).intValue() >= maxDeliveryAttempts;
+  }
+
+  /**
+   * Returns whether the session is holding messages that were handled but not yet committed, which
+   * a rollback would put back on the queue to be handled again.
+   */
+  private boolean isHoldingHandledMessages(final Session session) {
+    return pendingCommits.containsKey(session);
+  }
+
+  /**
+   * Returns whether a message that fails on the session goes back on the queue. Sessions that are
+   * neither transacted nor client acknowledged have acknowledged it on receipt, so it's gone.
+   */
+  private boolean isRedeliveredOnFailure(final Session session) throws JMSException {
+    return session.getTransacted() || isClientAcknowledge(session);
+  }
+
+  private boolean anyOnLastDeliveryAttempt(final List<Message> batch) throws JMSException {
+    for (Message message : batch) {
+      if (isLastDeliveryAttempt(message)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Appends the prefetch option to the queue name when a prefetch is set, so each consumer is
+   * created with it.
+   */
+  @Override
+  protected Destination resolveDestinationName(final Session session,
+      final String destinationName) throws JMSException {
+    String name = destinationName;
+    if (prefetch > 0 && !name.contains("consumer.prefetchSize=")) {
+      name += (name.indexOf('?') < 0 ? "?" : "&") + "consumer.prefetchSize=" + prefetch;
+    }
+    return super.resolveDestinationName(session, name);
+  }
+
+  @Override
+  protected void commitIfNecessary(final Session session, final Message message)
+      throws JMSException {
+    if (message == null) {
+      // Called after an empty receive, so nothing new to count
+      if (pendingCommits.remove(session) != null) {
+        timedCommit(session, null);
+      } else {
+        super.commitIfNecessary(session, null);
+      }
+      return;
+    }
+    commitReceived(session, message, 1);
+  }
+
+  /**
+   * Commits (or acknowledges) the messages received on the session, unless the session is locally
+   * transacted and has yet to reach commitBatchSize messages or commitIntervalMillis.
+   */
+  protected void commitReceived(final Session session, final Message message,
+      final int messages) throws JMSException {
+    if (commitBatchSize <= 1 || !session.getTransacted() || !isSessionLocallyTransacted(session)) {
+      timedCommit(session, message);
+      return;
+    }
+
+    PendingCommit pending = pendingCommits.computeIfAbsent(session,
+        key -> new PendingCommit(System.currentTimeMillis()));
+    pending.messages += messages;
+    if (pending.messages >= commitBatchSize || (commitIntervalMillis > 0
+        && System.currentTimeMillis() - pending.firstReceivedMillis >= commitIntervalMillis)) {
+      pendingCommits.remove(session);
+      timedCommit(session, message);
+    }
+  }
+
+  /**
+   * Commits whatever the session is holding once its receive has timed out, rather than leave
+   * messages uncommitted while the queue is quiet.
+   */
+  @Override
+  @SneakyThrows
+  protected void noMessageReceived(final Object invoker, final Session session) {
+    super.noMessageReceived(invoker, session);
+    if (session != null && pendingCommits.remove(session) != null) {
+      timedCommit(session, null);
+    }
+  }
+
+  @Override
+  protected void rollbackIfNecessary(final Session session) throws JMSException {
+    // The rollback returns every message the session was holding to the queue, not just the last
+    pendingCommits.remove(session);
+    super.rollbackIfNecessary(session);
+  }
+
+  @Override
+  protected void rollbackOnExceptionIfNecessary(final Session session, final Throwable ex)
+      throws JMSException {
+    pendingCommits.remove(session);
+    super.rollbackOnExceptionIfNecessary(session, ex);
+  }
+
+  /**
+   * Wraps each session so that closing it first commits the messages it's holding. Consumers close
+   * their sessions when they're retired or the container shuts down, and closing would otherwise
+   * roll back messages that have already been handled, to be handled a second time.
+   */
+  @Override
+  protected Session createSession(final Connection connection) throws JMSException {
+    return new CommitOnCloseSession(super.createSession(connection));
+  }
+
+  private void timedCommit(final Session session, final Message message) throws JMSException {
+    if (!session.getTransacted()) {
+      super.commitIfNecessary(session, message);
+      return;
+    }
+
+    long start = System.nanoTime();
+    super.commitIfNecessary(session, message);
+    long elapsed = System.nanoTime() - start;
+    commits.increment();
+    commitNanos.add(elapsed);
+    maxCommitNanos.accumulate(elapsed);
+  }
+
+  private void recordHandled(final int messages, final long nanos) {
+    messagesHandled.add(messages);
+    handlingNanos.add(nanos);
+  }
+
+  /**
+   * The session methods CommitOnCloseSession doesn't simply pass on.
+   */
+  private interface SessionClose {
+
+    void close() throws JMSException;
+  }
+
+  /**
+   * Session that commits the messages it's holding before it closes.
+   */
+  @RequiredArgsConstructor
+  private final class CommitOnCloseSession implements Session {
+
+    @Delegate(excludes = SessionClose.class)
+    private final Session session;
+
+    @Override
+    public void close() throws JMSException {
+      try {
+        if (pendingCommits.remove(this) != null) {
+          timedCommit(this, null);
+        }
+      } catch (JMSException e) {
+        log.warn("Error committing messages held by a closing session, they'll be delivered again",
+            e);
+      } finally {
+        session.close();
+      }
+    }
+  }
+
+  /**
+   * Messages received on a transacted session since it was last committed.
+   */
+  private static final class PendingCommit {
+
+    private final long firstReceivedMillis;
+
+    private int messages;
+
+    private PendingCommit(final long firstReceivedMillis) {
+      this.firstReceivedMillis = firstReceivedMillis;
     }
   }
 }
@@ -0,0 +1,80 @@
+package org.galatea.starter.utils.jms;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.jms.config.JmsListenerEndpointRegistry;
+import org.springframework.jms.listener.MessageListenerContainer;
+
+/**
+ * Actuator endpoint listing how fast each JMS listener container receives messages and how long
+ * its session commits take, e.g. GET /actuator/jmslisteners. Rates and means cover the lifetime of
+ * the container.
+ */
+@RequiredArgsConstructor
+@Endpoint(id = "jmslisteners")
+public class ListenerThroughputEndpoint {
+
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @NonNull
+  private final JmsListenerEndpointRegistry registry;
+
+  /**
+   * Returns a throughput summary per listener container, ordered by listener id.
+   */
+  @ReadOperation
+  public List<ListenerThroughput> listeners() {
+    return registry.getListenerContainerIds().stream()
+        .sorted()
+        .map(id -> summarise(id, registry.getListenerContainer(id)))
+        .filter(summary -> summary != null)
+        .collect(Collectors.toList());
+  }
+
+  private static ListenerThroughput summarise(final String id,
+      final MessageListenerContainer listenerContainer) {
+    if (!(listenerContainer instanceof FuseMessageListenerContainer)) {
+      return null;
+    }
+    FuseMessageListenerContainer container = (FuseMessageListenerContainer) listenerContainer;
+
+    long received = container.getMessagesHandled();
+    long commits = container.getCommits();
+    double elapsedSeconds = container.getUptimeNanos() / 1e9;
+    return ListenerThroughput.builder()
+        .id(id)
+        .destination(container.getDestinationName())
+        .consumers(container.getActiveConsumerCount())
+        .received(received)
+        .receivedPerSecond(elapsedSeconds > 0 ? received / elapsedSeconds : 0)
+        .commits(commits)
+        .messagesPerCommit(commits > 0 ? received / (double) commits : 0)
+        .meanCommitMillis(commits > 0 ? container.getCommitNanos() / NANOS_PER_MILLI / commits : 0)
+        .maxCommitMillis(container.getMaxCommitNanos() / NANOS_PER_MILLI)
+        .build();
+  }
+
+  /**
+   * Receive rate and commit latency of one listener container.
+   */
+  @Value
+  @Builder
+  public static class ListenerThroughput {
+    String id;
+    String destination;
+    int consumers;
+    long received;
+    double receivedPerSecond;
+    long commits;
+    double messagesPerCommit;
+    double meanCommitMillis;
+    double maxCommitMillis;
+  }
+}
@@ -0,0 +1,222 @@
+package org.galatea.starter.utils.rest;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.springframework.util.FastByteArrayOutputStream;
+
+/**
+ * Response wrapper that holds back up to a fixed number of body bytes so headers can still be
+ * added after the handler has written its response.
+ *
+ * <p>Unlike ContentCachingResponseWrapper, the whole body is never buffered. As soon as the body
+ * outgrows the cap, the beforeCommit callback is run, the buffered bytes are written out, and the
+ * rest of the body streams straight through to the underlying response. The same happens if the
+ * handler calls flushBuffer or sets a WriteListener, since either means it wants the body sent as
+ * it's written.
+ */
+public class CappedBufferResponseWrapper extends HttpServletResponseWrapper {
+
+  private final int bufferLimit;
+
+  private final Runnable beforeCommit;
+
+  private final FastByteArrayOutputStream buffer = new FastByteArrayOutputStream(1024);
+
+  private final CappedOutputStream outputStream = new CappedOutputStream();
+
+  private PrintWriter writer;
+
+  private boolean contentLengthSet;
+
+  // Set once the body has outgrown the buffer (or the response was completed) and bytes go
+  // straight through to the underlying response
+  private boolean passThrough;
+
+  /**
+   * Creates a wrapper buffering at most bufferLimit body bytes.
+   *
+   * @param response the response to wrap
+   * @param bufferLimit the most body bytes held back, 0 to stream the body straight through
+   * @param beforeCommit run exactly once, just before the first byte of the body is written out
+   */
+  public CappedBufferResponseWrapper(final HttpServletResponse response, final int bufferLimit,
+      final Runnable beforeCommit) {
+    super(response);
+    this.bufferLimit = Math.max(0, bufferLimit);
+    this.beforeCommit = beforeCommit;
+  }
+
+  @Override
+  public ServletOutputStream getOutputStream() {
+    return outputStream;
+  }
+
+  @Override
+  public PrintWriter getWriter() throws IOException {
+    if (writer == null) {
+      writer = new PrintWriter(new OutputStreamWriter(outputStream, getCharacterEncoding()));
+    }
+    return writer;
+  }
+
+  @Override
+  public void setContentLength(final int len) {
+    contentLengthSet = true;
+    super.setContentLength(len);
+  }
+
+  @Override
+  public void setContentLengthLong(final long len) {
+    contentLengthSet = true;
+    super.setContentLengthLong(len);
+  }
+
+  @Override
+  public void flushBuffer() throws IOException {
+    // An explicit flush means the handler wants what it's written so far sent now, e.g. a
+    // streamed response, so stop holding the body back
+    flushWriter();
+    startPassThrough();
+    super.flushBuffer();
+  }
+
+  @Override
+  public void resetBuffer() {
+    super.resetBuffer();
+    buffer.reset();
+  }
+
+  @Override
+  public void reset() {
+    super.reset();
+    buffer.reset();
+    contentLengthSet = false;
+  }
+
+  @Override
+  public void sendError(final int sc) throws IOException {
+    startPassThrough();
+    super.sendError(sc);
+  }
+
+  @Override
+  public void sendError(final int sc, final String msg) throws IOException {
+    startPassThrough();
+    super.sendError(sc, msg);
+  }
+
+  @Override
+  public void sendRedirect(final String location) throws IOException {
+    startPassThrough();
+    super.sendRedirect(location);
+  }
+
+  /**
+   * Returns true once the body has started streaming through to the underlying response, after
+   * which headers can no longer be added.
+   */
+  public boolean isPassThrough() {
+    return passThrough;
+  }
+
+  /**
+   * Writes out whatever part of the body is still held back. Must be called once the handler is
+   * done with the response.
+   */
+  public void complete() throws IOException {
+    flushWriter();
+    if (!passThrough && !contentLengthSet && !getResponse().isCommitted()) {
+      // The whole body is in hand, so we can tell the client how big it is
+      super.setContentLength(buffer.size());
+    }
+    startPassThrough();
+  }
+
+  private void flushWriter() {
+    if (writer != null) {
+      writer.flush();
+    }
+  }
+
+  /**
+   * Runs the beforeCommit callback and writes out the buffered bytes, the first time it's called.
+   */
+  private void startPassThrough() throws IOException {
+    if (passThrough) {
+      return;
+    }
+    passThrough = true;
+    beforeCommit.run();
+    if (buffer.size() > 0) {
+      buffer.writeTo(getResponse().getOutputStream());
+      buffer.reset();
+    }
+  }
+
+  private class CappedOutputStream extends ServletOutputStream {
+
+    @Override
+    public void write(final int b) throws IOException {
+      if (!passThrough && buffer.size() + 1 > bufferLimit) {
+        startPassThrough();
+      }
+      if (passThrough) {
+        getResponse().getOutputStream().write(b);
+      } else {
+        buffer.write(b);
+      }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      if (!passThrough && buffer.size() + len > bufferLimit) {
+        startPassThrough();
+      }
+      if (passThrough) {
+        getResponse().getOutputStream().write(b, off, len);
+      } else {
+        buffer.write(b, off, len);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      // Message converters flush the stream after every body they write, so this can't be taken
+      // to mean the handler wants the body sent now. That's what flushBuffer is for.
+      if (passThrough) {
+        getResponse().getOutputStream().flush();
+      }
+    }
+
+    @Override
+    public boolean isReady() {
+      // Writes into the buffer never block
+      return !passThrough || delegate().isReady();
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+      // The listener has to be told when the underlying stream can take more, so stop buffering
+      try {
+        startPassThrough();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      delegate().setWriteListener(writeListener);
+    }
+
+    private ServletOutputStream delegate() {
+      try {
+        return getResponse().getOutputStream();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
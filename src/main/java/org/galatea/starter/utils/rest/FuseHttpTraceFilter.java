@@ -3,25 +3,38 @@ package org.galatea.starter.utils.rest;
 import static org.galatea.starter.entrypoint.BaseRestController.EXTERNAL_REQUEST_ID;
 
 import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-import java.util.Random;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
 import lombok.EqualsAndHashCode;
 import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.MDC;
 import org.springframework.boot.actuate.trace.http.HttpExchangeTracer;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
 import org.springframework.boot.actuate.trace.http.HttpTraceRepository;
+import org.springframework.boot.actuate.trace.http.TraceableRequest;
+import org.springframework.boot.actuate.trace.http.TraceableResponse;
 import org.springframework.boot.actuate.web.trace.servlet.HttpTraceFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
-import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.util.WebUtils;
 
 /**
@@ -29,6 +42,9 @@ import org.springframework.web.util.WebUtils;
  * capture some additional timing data as well The filter also adds these audit fields as headers to
  * the response.
  *
+ * <p>Only the requests picked by the {@link HttpTraceSampler} have their trace recorded, along
+ * with any that fail if the sampler says so.
+ *
  * @author rbasu
  */
 @ToString
@@ -38,11 +54,47 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
 
   private static final String INTERNAL_REQUEST_ID = "internal-request-id";
 
-  private static final Random QUERY_ID_GENERATOR = new Random();
+  // Suffix the log pattern expects on the request ids held in MDC
+  private static final String MDC_ID_SUFFIX = " - ";
+
+  /**
+   * Request attribute holding the internal request id.
+   */
+  public static final String REQUEST_ID_ATTRIBUTE =
+      FuseHttpTraceFilter.class.getName() + ".requestId";
+
+  /**
+   * Request attribute holding the System.nanoTime() at which the request was received.
+   */
+  public static final String REQUEST_START_NANOS_ATTRIBUTE =
+      FuseHttpTraceFilter.class.getName() + ".startNanos";
+
+  private static final String REQUEST_RECEIVED_TIME_ATTRIBUTE =
+      FuseHttpTraceFilter.class.getName() + ".receivedTime";
+
+  // The trace of an async request, held until the response is sent on its async dispatch
+  private static final String PENDING_TRACE_ATTRIBUTE =
+      FuseHttpTraceFilter.class.getName() + ".pendingTrace";
 
   @NonNull
   protected final Predicate<String> pathsToSkip;
 
+  private final HttpTraceRepository repository;
+
+  private final HttpExchangeTracer tracer;
+
+  @NonNull
+  private final HttpTraceSampler sampler;
+
+  private final int maxBufferedPayload;
+
+  @NonNull
+  private final RequestIdGenerator requestIdGenerator;
+
+  // Latencies aren't recorded unless this is set
+  @Setter
+  private RequestLatencyRecorder latencyRecorder;
+
   /**
    * Sadly we have to write our own constructor since lombok can't call super with args.
    *
@@ -52,8 +104,39 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
    */
   public FuseHttpTraceFilter(final HttpTraceRepository repository, final HttpExchangeTracer tracer,
       final Predicate<String> pathsToSkip) {
+    this(repository, tracer, pathsToSkip, HttpTraceSampler.always(), Integer.MAX_VALUE,
+        new RequestIdGenerator());
+  }
+
+  /**
+   * Creates a filter that only records the traces picked by the sampler, and holds back at most
+   * maxBufferedPayload bytes of each response body.
+   *
+   * @param repository the repository where we store our trace
+   * @param pathsToSkip a predicate that will return try if we want to a skip a certain url
+   *     path
+   * @param sampler decides which requests have their trace recorded
+   * @param maxBufferedPayload the most response body bytes held back so the audit headers can be
+   *     added once the request has been handled. Bigger responses are streamed through, with the
+   *     audit headers added just before the first byte goes out.
+   * @param requestIdGenerator hands out the internal request ids
+   */
+  public FuseHttpTraceFilter(final HttpTraceRepository repository, final HttpExchangeTracer tracer,
+      final Predicate<String> pathsToSkip, final HttpTraceSampler sampler,
+      final int maxBufferedPayload, final RequestIdGenerator requestIdGenerator) {
     super(repository, tracer);
+    this.repository = repository;
+    this.tracer = tracer;
     this.pathsToSkip = pathsToSkip;
+    this.sampler = sampler;
+    this.maxBufferedPayload = maxBufferedPayload;
+    this.requestIdGenerator = requestIdGenerator;
+  }
+
+  @Override
+  protected boolean shouldNotFilterAsyncDispatch() {
+    // We need to see the async dispatch so the held back response can be sent once it's done
+    return false;
   }
 
   @Override
@@ -61,74 +144,156 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
       final HttpServletResponse response, final FilterChain filterChain)
       throws ServletException, IOException {
 
+    if (isAsyncDispatch(request)) {
+      // The request was received on its first dispatch, all that's left is to record its trace
+      // and send the response. Log against the same request id as the first dispatch did.
+      MDC.put(INTERNAL_REQUEST_ID, request.getAttribute(REQUEST_ID_ATTRIBUTE) + MDC_ID_SUFFIX);
+      int status = HttpStatus.INTERNAL_SERVER_ERROR.value();
+      try {
+        filterChain.doFilter(request, response);
+        status = response.getStatus();
+      } finally {
+        if (!isAsyncStarted(request)) {
+          PendingTrace pending = (PendingTrace) request.getAttribute(PENDING_TRACE_ATTRIBUTE);
+          if (pending != null) {
+            request.removeAttribute(PENDING_TRACE_ATTRIBUTE);
+            recordTrace(request, response, pending.trace, pending.sampled, status);
+          }
+          updateResponse(response);
+          recordLatency(request, status);
+        }
+        MDC.clear();
+      }
+      return;
+    }
+
+    // Timings are taken from the monotonic clock, the wall clock is only read for the header
+    request.setAttribute(REQUEST_START_NANOS_ATTRIBUTE, System.nanoTime());
+
     // generate the internal request Id
-    // we want positive numbers only, so use nextInt(upperBound)
-    String internallyGeneratedId =
-        Integer.toString(QUERY_ID_GENERATOR.nextInt(Integer.MAX_VALUE));
+    String internallyGeneratedId = requestIdGenerator.nextId();
+    request.setAttribute(REQUEST_ID_ATTRIBUTE, internallyGeneratedId);
 
     log.debug("Created internal request id: {}", internallyGeneratedId);
 
     // And add to MDC so it will show up in the logs
     // The key used here must align with the key defined in the logging
     // config's log-pattern
-    MDC.put(INTERNAL_REQUEST_ID, internallyGeneratedId + " - ");
+    MDC.put(INTERNAL_REQUEST_ID, internallyGeneratedId + MDC_ID_SUFFIX);
 
-    // Skip paths that are not interesting to trace
+    // Skip paths that are not interesting to trace, though we still want to know how long they
+    // take
     if (pathsToSkip.test(request.getRequestURI())) {
-      filterChain.doFilter(request, response);
+      int status = HttpStatus.INTERNAL_SERVER_ERROR.value();
+      try {
+        filterChain.doFilter(request, response);
+        status = response.getStatus();
+      } finally {
+        if (!isAsyncStarted(request)) {
+          recordLatency(request, status);
+        }
+      }
       return;
     }
 
-    boolean isFirstRequest = !isAsyncDispatch(request);
-    HttpServletRequest requestToUse = request;
+    request.setAttribute(REQUEST_RECEIVED_TIME_ATTRIBUTE, Instant.now().toString());
     HttpServletResponse responseToUse = response;
 
-    // We need to do this for the request and response since you can only read the stream that holds
-    // the payload once
-    if (isFirstRequest && !(request instanceof ContentCachingRequestWrapper)) {
-      requestToUse = new ContentCachingRequestWrapper(request);
-    }
-    if (isFirstRequest && !(response instanceof ContentCachingRequestWrapper)) {
-      responseToUse = new ContentCachingResponseWrapper(response);
+    // Hold back the start of the response so we can add the audit headers once the request has
+    // been handled. Anything bigger than the cap is streamed through instead of being cached.
+    if (!(response instanceof CappedBufferResponseWrapper)) {
+      responseToUse = new CappedBufferResponseWrapper(response, maxBufferedPayload,
+          () -> addAuditHeaders(request, response));
     }
 
-    doFilterInternalHelper(requestToUse, responseToUse, filterChain, Instant.now());
+    doFilterInternalHelper(request, responseToUse, filterChain);
   }
 
   @SneakyThrows
-  // what's this method responsible for?
+  // Handles the request, recording its trace if it was sampled (or failed) and adding the audit
+  // headers before the response goes out
   protected void doFilterInternalHelper(final HttpServletRequest request,
-      final HttpServletResponse response, final FilterChain filterChain,
-      final Instant requestReceivedTime) {
+      final HttpServletResponse response, final FilterChain filterChain) {
+
+    boolean sampled = sampler.sample(request.getRequestURI());
+    HttpTrace trace = null;
+    if ((sampled || sampler.isAlwaysTraceErrors()) && isRequestValid(request)) {
+      trace = tracer.receivedRequest(new TraceableServletRequest(request));
+    }
 
+    int status = HttpStatus.INTERNAL_SERVER_ERROR.value();
     try {
-      super.doFilterInternal(request, response, filterChain);
+      filterChain.doFilter(request, response);
+      status = response.getStatus();
     } finally {
-      addAuditHeaders(requestReceivedTime.toString(), response);
-      updateResponse(response);
+      if (isAsyncStarted(request)) {
+        // The response isn't in yet, and may be written from another thread while we're here.
+        // The trace is recorded on the async dispatch, once the final status is known.
+        if (trace != null) {
+          request.setAttribute(PENDING_TRACE_ATTRIBUTE, new PendingTrace(trace, sampled));
+        }
+      } else {
+        if (trace != null) {
+          recordTrace(request, response, trace, sampled, status);
+        }
+        updateResponse(response);
+        recordLatency(request, status);
+      }
       MDC.clear();
     }
   }
 
-  private void addAuditHeaders(final String requestReceivedTime,
+  /**
+   * Records the trace if the request was sampled, or if its status is one we always trace.
+   */
+  private void recordTrace(final HttpServletRequest request, final HttpServletResponse response,
+      final HttpTrace trace, final boolean sampled, final int status) {
+    if (sampled || sampler.traceOnStatus(status)) {
+      tracer.sendingResponse(trace, new TraceableServletResponse(response, status),
+          request::getUserPrincipal, () -> getSessionId(request));
+      repository.add(trace);
+    }
+  }
+
+  private void addAuditHeaders(final HttpServletRequest request,
       final HttpServletResponse response) {
     log.info("Attempting to add audit headers");
-    String internalQueryId = MDC.get(INTERNAL_REQUEST_ID);
-    if (internalQueryId != null) {
-      logAndAddAuditHeader(response, "internalQueryId",
-          internalQueryId.replace(" - ", "")); // internalQueryId has a ' - ' in MDC
-    }
+    logAndAddAuditHeader(response, "internalQueryId",
+        (String) request.getAttribute(REQUEST_ID_ATTRIBUTE));
     String externalQueryId = MDC.get(EXTERNAL_REQUEST_ID);
-    if (externalQueryId != null) {
-      logAndAddAuditHeader(response, "externalQueryId",
-          externalQueryId.replace(" - ", "")); // externalQueryId has a ' - ' in MDC
+    if (externalQueryId != null && externalQueryId.endsWith(MDC_ID_SUFFIX)) {
+      // externalQueryId has a ' - ' in MDC
+      externalQueryId =
+          externalQueryId.substring(0, externalQueryId.length() - MDC_ID_SUFFIX.length());
     }
+    logAndAddAuditHeader(response, "externalQueryId", externalQueryId);
 
-    logAndAddAuditHeader(response, "requestReceivedTime", requestReceivedTime);
+    logAndAddAuditHeader(response, "requestReceivedTime",
+        (String) request.getAttribute(REQUEST_RECEIVED_TIME_ATTRIBUTE));
 
-    String requestElapsedTimeMillis =
-        String.valueOf(Instant.parse(requestReceivedTime).until(Instant.now(), ChronoUnit.MILLIS));
-    logAndAddAuditHeader(response, "requestElapsedTimeMillis", requestElapsedTimeMillis);
+    long elapsedNanos = System.nanoTime() - getRequestStartNanos(request);
+    logAndAddAuditHeader(response, "requestElapsedTimeMillis",
+        Long.toString(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)));
+  }
+
+  /**
+   * Returns the System.nanoTime() at which this filter received the request, or the current
+   * nanoTime if the request didn't go through the filter.
+   */
+  public static long getRequestStartNanos(final HttpServletRequest request) {
+    Object startNanos = request.getAttribute(REQUEST_START_NANOS_ATTRIBUTE);
+    return startNanos instanceof Long ? (Long) startNanos : System.nanoTime();
+  }
+
+  /**
+   * Records how long the request took against the handler mapping that served it.
+   */
+  private void recordLatency(final HttpServletRequest request, final int status) {
+    if (latencyRecorder != null) {
+      latencyRecorder.record(
+          (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE), status,
+          System.nanoTime() - getRequestStartNanos(request));
+    }
   }
 
   /**
@@ -145,13 +310,103 @@ public class FuseHttpTraceFilter extends HttpTraceFilter {
   }
 
   /**
-   * Updates the response because we add headers *after* the filter has been applied. This way we
-   * ensure that any fields that were created during request handling (e.g. externalQueryId) will
-   * make it onto the response.
+   * Sends out whatever part of the response is still held back. The audit headers are added first
+   * if the response hasn't already started streaming, so any fields that were created during
+   * request handling (e.g. externalQueryId) will make it onto the response.
    */
   private void updateResponse(final HttpServletResponse response) throws IOException {
-    ContentCachingResponseWrapper responseWrapper =
-        WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
-    responseWrapper.copyBodyToResponse();
+    CappedBufferResponseWrapper responseWrapper =
+        WebUtils.getNativeResponse(response, CappedBufferResponseWrapper.class);
+    if (responseWrapper != null) {
+      responseWrapper.complete();
+    }
+  }
+
+  private static boolean isRequestValid(final HttpServletRequest request) {
+    try {
+      new URI(request.getRequestURL().toString());
+      return true;
+    } catch (URISyntaxException e) {
+      return false;
+    }
+  }
+
+  private static String getSessionId(final HttpServletRequest request) {
+    HttpSession session = request.getSession(false);
+    return session == null ? null : session.getId();
+  }
+
+  /**
+   * The trace of a request whose response is still to come, and whether it was sampled.
+   */
+  @RequiredArgsConstructor
+  private static final class PendingTrace {
+
+    private final HttpTrace trace;
+
+    private final boolean sampled;
+  }
+
+  /**
+   * Exposes a servlet request to the exchange tracer (spring's own adapter is package-private).
+   */
+  @RequiredArgsConstructor
+  private static final class TraceableServletRequest implements TraceableRequest {
+
+    private final HttpServletRequest request;
+
+    @Override
+    public String getMethod() {
+      return request.getMethod();
+    }
+
+    @Override
+    public URI getUri() {
+      StringBuffer url = request.getRequestURL();
+      String queryString = request.getQueryString();
+      if (StringUtils.hasText(queryString)) {
+        url.append('?').append(queryString);
+      }
+      return URI.create(url.toString());
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaders() {
+      Map<String, List<String>> headers = new LinkedHashMap<>();
+      for (String name : Collections.list(request.getHeaderNames())) {
+        headers.put(name, Collections.list(request.getHeaders(name)));
+      }
+      return headers;
+    }
+
+    @Override
+    public String getRemoteAddress() {
+      return request.getRemoteAddr();
+    }
+  }
+
+  /**
+   * Exposes a servlet response to the exchange tracer, with the status the request ended with.
+   */
+  @RequiredArgsConstructor
+  private static final class TraceableServletResponse implements TraceableResponse {
+
+    private final HttpServletResponse response;
+
+    private final int status;
+
+    @Override
+    public int getStatus() {
+      return status;
+    }
+
+    @Override
+    public Map<String, List<String>> getHeaders() {
+      Map<String, List<String>> headers = new LinkedHashMap<>();
+      for (String name : response.getHeaderNames()) {
+        headers.put(name, new ArrayList<>(response.getHeaders(name)));
+      }
+      return headers;
+    }
   }
 }
@@ -0,0 +1,95 @@
+package org.galatea.starter.utils.rest;
+
+import com.google.common.base.Splitter;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.ToString;
+
+/**
+ * Decides which requests get their HTTP trace recorded.
+ *
+ * <p>Each request is sampled at the rate of the longest path prefix configured for it, or at the
+ * default rate if none match. Requests that end in an error status can be recorded whether or not
+ * they were sampled.
+ */
+@ToString
+public class HttpTraceSampler {
+
+  private static final int ERROR_STATUS = 400;
+
+  private final double defaultRate;
+
+  // Path prefix to sample rate, longest prefix first
+  private final Map<String, Double> pathRates;
+
+  private final boolean alwaysTraceErrors;
+
+  /**
+   * Creates a sampler.
+   *
+   * @param defaultRate fraction of requests to trace, from 0 (none) to 1 (all)
+   * @param pathRates comma separated prefix=rate pairs overriding the default rate for matching
+   *     paths, e.g. "/iex=0.1,/settlementEngine/missions=0.5"
+   * @param alwaysTraceErrors trace every request that ends with a 4xx or 5xx status
+   */
+  public HttpTraceSampler(final double defaultRate, final String pathRates,
+      final boolean alwaysTraceErrors) {
+    this.defaultRate = checkRate(defaultRate);
+    this.alwaysTraceErrors = alwaysTraceErrors;
+    this.pathRates = new LinkedHashMap<>();
+    Splitter.on(',').trimResults().omitEmptyStrings().withKeyValueSeparator('=')
+        .split(pathRates == null ? "" : pathRates).entrySet().stream()
+        .sorted(Comparator.comparing((Entry<String, String> e) -> e.getKey().length()).reversed())
+        .forEach(e -> this.pathRates.put(e.getKey(), checkRate(Double.parseDouble(e.getValue()))));
+  }
+
+  /**
+   * Returns a sampler that traces every request.
+   */
+  public static HttpTraceSampler always() {
+    return new HttpTraceSampler(1, "", true);
+  }
+
+  /**
+   * Returns true if a request to the given path should be traced regardless of how it ends.
+   */
+  public boolean sample(final String path) {
+    double rate = rateFor(path);
+    return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+  }
+
+  /**
+   * Returns true if requests that weren't sampled should still be traced should they end with an
+   * error, in which case the exchange needs to be traced up front.
+   */
+  public boolean isAlwaysTraceErrors() {
+    return alwaysTraceErrors;
+  }
+
+  /**
+   * Returns true if a request that wasn't sampled should be traced because of its status.
+   */
+  public boolean traceOnStatus(final int status) {
+    return alwaysTraceErrors && status >= ERROR_STATUS;
+  }
+
+  private double rateFor(final String path) {
+    for (Map.Entry<String, Double> entry : pathRates.entrySet()) {
+      if (path.startsWith(entry.getKey())) {
+        return entry.getValue();
+      }
+    }
+    return defaultRate;
+  }
+
+  private static double checkRate(final double rate) {
+    if (rate < 0 || rate > 1) {
+      throw new IllegalArgumentException("Trace sample rate must be between 0 and 1 but was "
+          + rate);
+    }
+    return rate;
+  }
+}
@@ -0,0 +1,106 @@
+package org.galatea.starter.utils.rest;
+
+import io.micrometer.core.instrument.Metrics;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Caps the number of requests being handled at once, counting a request from the moment it's
+ * received until its response is complete, including any time spent waiting on an async result.
+ *
+ * <p>Requests over the cap are turned away with a 503 straight away, rather than queueing for a
+ * thread, so a burst can't build up a backlog that every later request has to wait behind.
+ */
+@Slf4j
+public class InFlightLimitFilter extends OncePerRequestFilter {
+
+  private final int maxInFlight;
+
+  private final Semaphore permits;
+
+  /**
+   * Creates a filter letting through at most maxInFlight requests at once.
+   *
+   * @param maxInFlight the most requests handled at the same time
+   */
+  public InFlightLimitFilter(final int maxInFlight) {
+    this.maxInFlight = Math.max(1, maxInFlight);
+    this.permits = new Semaphore(this.maxInFlight);
+    Metrics.gauge("http.server.requests.in-flight", this, InFlightLimitFilter::getInFlight);
+  }
+
+  /**
+   * Returns the number of requests currently being handled.
+   */
+  public int getInFlight() {
+    return maxInFlight - permits.availablePermits();
+  }
+
+  @Override
+  protected void doFilterInternal(final HttpServletRequest request,
+      final HttpServletResponse response, final FilterChain filterChain)
+      throws ServletException, IOException {
+    if (!permits.tryAcquire()) {
+      log.debug("Turning away request, {} requests already in flight", maxInFlight);
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+          "Too many requests in progress");
+      return;
+    }
+
+    Permit permit = new Permit();
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      if (request.isAsyncStarted()) {
+        // Still in flight until the async result has been sent
+        request.getAsyncContext().addListener(permit);
+      } else {
+        permit.release();
+      }
+    }
+  }
+
+  /**
+   * Hands back one request's permit, exactly once.
+   */
+  private final class Permit implements AsyncListener {
+
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        permits.release();
+      }
+    }
+
+    @Override
+    public void onComplete(final AsyncEvent event) {
+      release();
+    }
+
+    @Override
+    public void onTimeout(final AsyncEvent event) {
+      // onComplete follows
+    }
+
+    @Override
+    public void onError(final AsyncEvent event) {
+      // onComplete follows
+    }
+
+    @Override
+    public void onStartAsync(final AsyncEvent event) {
+      // Async was started again, which drops the listeners, so we have to add ourselves back
+      event.getAsyncContext().addListener(this);
+    }
+  }
+}
@@ -0,0 +1,28 @@
+package org.galatea.starter.utils.rest;
+
+import java.util.List;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import org.galatea.starter.utils.rest.RequestLatencyRecorder.LatencySummary;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+/**
+ * Actuator endpoint listing request latency percentiles and throughput per handler mapping and
+ * status class, e.g. GET /actuator/latency.
+ */
+@RequiredArgsConstructor
+@Endpoint(id = "latency")
+public class LatencyEndpoint {
+
+  @NonNull
+  private final RequestLatencyRecorder recorder;
+
+  /**
+   * Returns a latency summary per handler mapping and status class.
+   */
+  @ReadOperation
+  public List<LatencySummary> latency() {
+    return recorder.summarise();
+  }
+}
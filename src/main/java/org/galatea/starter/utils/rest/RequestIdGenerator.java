@@ -0,0 +1,67 @@
+package org.galatea.starter.utils.rest;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+
+/**
+ * Hands out request ids of the form {@code <node prefix>-<sequence>}.
+ *
+ * <p>Each thread reserves a block of sequence numbers from a shared counter and then hands them
+ * out without touching any shared state until the block runs out, so generating an id is almost
+ * always contention-free. Ids from one thread are strictly increasing, and no two ids from the
+ * same generator are ever equal. The node prefix keeps ids from different instances (or restarts
+ * of the same instance) apart.
+ */
+@ToString(of = "nodePrefix")
+public final class RequestIdGenerator {
+
+  private static final int BLOCK_SIZE = 1024;
+
+  @Getter
+  private final String nodePrefix;
+
+  private final AtomicLong nextBlockStart = new AtomicLong();
+
+  // Per-thread [next sequence, end of reserved block)
+  private final ThreadLocal<long[]> threadBlock = ThreadLocal.withInitial(() -> new long[2]);
+
+  /**
+   * Creates a generator whose ids start with the given node prefix.
+   *
+   * @param nodePrefix identifies this instance, should be unique across instances and restarts
+   */
+  public RequestIdGenerator(@NonNull final String nodePrefix) {
+    this.nodePrefix = nodePrefix;
+  }
+
+  /**
+   * Creates a generator with a random node prefix.
+   */
+  public RequestIdGenerator() {
+    this(randomNodePrefix());
+  }
+
+  /**
+   * Returns the next request id.
+   */
+  public String nextId() {
+    long[] block = threadBlock.get();
+    if (block[0] == block[1]) {
+      block[0] = nextBlockStart.getAndAdd(BLOCK_SIZE);
+      block[1] = block[0] + BLOCK_SIZE;
+    }
+    return nodePrefix + '-' + block[0]++;
+  }
+
+  /**
+   * Returns a random 7 character prefix, so two instances are unlikely to hand out the same ids.
+   */
+  public static String randomNodePrefix() {
+    long bits = new SecureRandom().nextInt() & 0xFFFFFFFFL;
+    String prefix = Long.toString(bits, 36);
+    return "0000000".substring(Math.min(prefix.length(), 7)) + prefix;
+  }
+}
@@ -0,0 +1,131 @@
+package org.galatea.starter.utils.rest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * Records request latencies into one histogram per handler mapping and status class (2xx, 4xx,
+ * ...), and summarises them for the latency actuator endpoint.
+ *
+ * <p>The histograms are micrometer timers, so they're also published to whatever registry backs
+ * the app under the http.server.latency name. Percentiles are kept to two significant digits over
+ * micrometer's rolling window, while counts and throughput cover the lifetime of the app.
+ */
+@RequiredArgsConstructor
+public class RequestLatencyRecorder {
+
+  public static final String METER_NAME = "http.server.latency";
+
+  // Handler name for requests that no handler mapping matched
+  public static final String UNMAPPED = "UNMAPPED";
+
+  private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+  @NonNull
+  private final MeterRegistry meterRegistry;
+
+  // Timers are looked up here rather than registered on every request
+  private final ConcurrentMap<Key, Series> series = new ConcurrentHashMap<>();
+
+  /**
+   * Records a request's latency.
+   *
+   * @param handler the pattern of the handler mapping that served the request, or null if none did
+   * @param status the response status
+   * @param elapsedNanos how long the request took
+   */
+  public void record(final String handler, final int status, final long elapsedNanos) {
+    Key key = new Key(handler == null ? UNMAPPED : handler, status / 100);
+    series.computeIfAbsent(key, this::newSeries).timer
+        .record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns a summary of every histogram, ordered by handler then status class.
+   */
+  public List<LatencySummary> summarise() {
+    return series.entrySet().stream()
+        .sorted(Comparator.comparing((Map.Entry<Key, Series> e) -> e.getKey().handler)
+            .thenComparing(e -> e.getKey().statusClass))
+        .map(e -> summariseSeries(e.getKey(), e.getValue()))
+        .collect(Collectors.toList());
+  }
+
+  private Series newSeries(final Key key) {
+    Timer timer = Timer.builder(METER_NAME)
+        .description("Latency of requests handled by the trace filter")
+        .tag("handler", key.handler)
+        .tag("status", key.statusClass + "xx")
+        .publishPercentiles(PERCENTILES)
+        .percentilePrecision(2)
+        .register(meterRegistry);
+    return new Series(timer, System.nanoTime());
+  }
+
+  private static LatencySummary summariseSeries(final Key key, final Series series) {
+    HistogramSnapshot snapshot = series.timer.takeSnapshot();
+    LatencySummary.LatencySummaryBuilder summary = LatencySummary.builder()
+        .handler(key.handler)
+        .status(key.statusClass + "xx")
+        .count(snapshot.count())
+        .meanMillis(snapshot.mean(TimeUnit.MILLISECONDS))
+        .maxMillis(snapshot.max(TimeUnit.MILLISECONDS));
+
+    double elapsedSeconds = (System.nanoTime() - series.createdNanos) / 1e9;
+    summary.throughputPerSecond(elapsedSeconds > 0 ? snapshot.count() / elapsedSeconds : 0);
+
+    for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+      double millis = percentile.value(TimeUnit.MILLISECONDS);
+      if (percentile.percentile() == 0.5) {
+        summary.p50Millis(millis);
+      } else if (percentile.percentile() == 0.99) {
+        summary.p99Millis(millis);
+      } else if (percentile.percentile() == 0.999) {
+        summary.p999Millis(millis);
+      }
+    }
+    return summary.build();
+  }
+
+  @Value
+  private static class Key {
+    String handler;
+    int statusClass;
+  }
+
+  @RequiredArgsConstructor
+  private static class Series {
+    private final Timer timer;
+    private final long createdNanos;
+  }
+
+  /**
+   * Latency of the requests to one handler that ended in one status class.
+   */
+  @Value
+  @Builder
+  public static class LatencySummary {
+    String handler;
+    String status;
+    long count;
+    double throughputPerSecond;
+    double meanMillis;
+    double maxMillis;
+    double p50Millis;
+    double p99Millis;
+    double p999Millis;
+  }
+}
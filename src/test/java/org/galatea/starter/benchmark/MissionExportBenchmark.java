@@ -0,0 +1,106 @@
+package org.galatea.starter.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.http.converter.SettlementMissionCsvConverter;
+import org.galatea.starter.utils.http.converter.SettlementMissionXlsxConverter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+
+/**
+ * Measures the CSV and XLSX http message converters used for mission exports. The converters write
+ * into a stream that discards its input, so only the cost of the conversion itself is measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MissionExportBenchmark {
+
+  @Param({"1", "1000", "100000"})
+  public int rowCount;
+
+  private final SettlementMissionCsvConverter csvConverter = new SettlementMissionCsvConverter();
+
+  private final SettlementMissionXlsxConverter xlsxConverter =
+      new SettlementMissionXlsxConverter();
+
+  private SettlementMissionList missions;
+
+  /**
+   * Builds the missions to export.
+   */
+  @Setup
+  public void setup() {
+    missions = new SettlementMissionList(LongStream.range(0, rowCount)
+        .mapToObj(id -> TestDataGenerator.defaultSettlementMissionData().id(id).build())
+        .collect(Collectors.toList()));
+  }
+
+  @Benchmark
+  public void writeCsv(final Blackhole blackhole) throws IOException {
+    DiscardingOutputMessage message = new DiscardingOutputMessage(blackhole);
+    csvConverter.write(missions, MvcConfig.TEXT_CSV, message);
+  }
+
+  @Benchmark
+  public void writeXlsx(final Blackhole blackhole) throws IOException {
+    DiscardingOutputMessage message = new DiscardingOutputMessage(blackhole);
+    xlsxConverter.write(missions, MvcConfig.APPLICATION_EXCEL, message);
+  }
+
+  /**
+   * An output message whose body hands every byte to a blackhole, so that the JIT cannot
+   * eliminate the writes.
+   */
+  private static class DiscardingOutputMessage implements HttpOutputMessage {
+
+    private final HttpHeaders headers = new HttpHeaders();
+
+    private final OutputStream body;
+
+    DiscardingOutputMessage(final Blackhole blackhole) {
+      body = new OutputStream() {
+        @Override
+        public void write(final int b) {
+          blackhole.consume(b);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) {
+          blackhole.consume(b);
+        }
+      };
+    }
+
+    @Override
+    public OutputStream getBody() {
+      return body;
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+      return headers;
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package org.galatea.starter.benchmark;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.galatea.starter.AppConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.service.CoalescingMissionLoader;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+/**
+ * Measures SettlementService#spawnMissions end to end against the in-memory H2 database, for both
+ * the single saveAll path (persistChunkSize 0) and the chunked, JDBC-batched path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpawnMissionsBenchmark {
+
+  @Param({"1", "1000", "10000"})
+  public int agreementCount;
+
+  @Param({"0", "1000"})
+  public int persistChunkSize;
+
+  private ConfigurableApplicationContext context;
+
+  private JdbcTemplate jdbcTemplate;
+
+  private SettlementService settlementService;
+
+  private List<TradeAgreement> agreements;
+
+  /**
+   * Starts a JPA-only spring context and builds the service and agreements under test.
+   */
+  @Setup
+  public void setup() {
+    context = new SpringApplicationBuilder(PersistenceConfig.class)
+        .web(WebApplicationType.NONE)
+        .run();
+    jdbcTemplate = context.getBean(JdbcTemplate.class);
+
+    ISettlementMissionRpsy missionRpsy = context.getBean(ISettlementMissionRpsy.class);
+    settlementService = new SettlementService(missionRpsy, new AppConfig().agreementTransformer(),
+        new NoOpCacheManager(), new CoalescingMissionLoader(missionRpsy, new NoOpCacheManager()));
+    ReflectionTestUtils.setField(settlementService, "persistChunkSize", persistChunkSize);
+
+    agreements = IntStream.range(0, agreementCount)
+        .mapToObj(i -> TestDataGenerator.defaultTradeAgreementData().build())
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Empties the mission table so that every iteration inserts into a table of the same size.
+   */
+  @TearDown(Level.Iteration)
+  public void truncateMissions() {
+    jdbcTemplate.execute("TRUNCATE TABLE settlement_mission");
+  }
+
+  @TearDown
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public Set<Long> spawnMissions() {
+    return settlementService.spawnMissions(agreements);
+  }
+
+  /**
+   * Only the persistence layer is needed, so we avoid starting the web server, JMS broker and
+   * feign clients that the full application would bring up.
+   */
+  @Configuration
+  @EnableJpaRepositories(basePackageClasses = ISettlementMissionRpsy.class)
+  @EntityScan(basePackageClasses = SettlementMission.class)
+  @ImportAutoConfiguration({DataSourceAutoConfiguration.class,
+      HibernateJpaAutoConfiguration.class, TransactionAutoConfiguration.class,
+      JdbcTemplateAutoConfiguration.class})
+  static class PersistenceConfig {
+
+  }
+}
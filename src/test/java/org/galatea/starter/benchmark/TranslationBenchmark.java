@@ -0,0 +1,127 @@
+package org.galatea.starter.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.AppConfig;
+import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.ProtoMessageTranslationConfig;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.SettlementMissionProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.service.IAgreementTransformer;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.galatea.starter.utils.translation.ITranslator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the per-message cost of the agreement transformer and the message translators that sit
+ * on the settlement hot path. The beans are created straight from their configuration classes so
+ * no spring context is needed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TranslationBenchmark {
+
+  private IAgreementTransformer agreementTransformer;
+
+  private ITranslator<TradeAgreementMessage, TradeAgreement> agreementMessageTranslator;
+
+  private ITranslator<SettlementMission, SettlementMissionMessage> missionTranslator;
+
+  private ITranslator<SettlementMissionMessage, SettlementMission> missionMessageTranslator;
+
+  private ITranslator<TradeAgreementProtoMessage, TradeAgreement> agreementProtoTranslator;
+
+  private ITranslator<byte[], TradeAgreement> agreementBinaryProtoTranslator;
+
+  private ITranslator<SettlementMission, SettlementMissionProtoMessage> missionProtoTranslator;
+
+  private TradeAgreement agreement;
+
+  private TradeAgreementMessage agreementMessage;
+
+  private TradeAgreementProtoMessage agreementProtoMessage;
+
+  private byte[] agreementProtoBytes;
+
+  private SettlementMission mission;
+
+  private SettlementMissionMessage missionMessage;
+
+  /**
+   * Creates the translators under test and the messages they translate.
+   */
+  @Setup
+  public void setup() {
+    MessageTranslationConfig messageConfig = new MessageTranslationConfig();
+    ProtoMessageTranslationConfig protoConfig = new ProtoMessageTranslationConfig();
+
+    agreementTransformer = new AppConfig().agreementTransformer();
+    agreementMessageTranslator = messageConfig.tradeAgreementMessageTranslator();
+    missionTranslator = messageConfig.settlementMissionTranslator();
+    missionMessageTranslator = messageConfig.settlementMissionMsgTranslator();
+    agreementProtoTranslator = protoConfig.tradeAgreementProtoTranslator();
+    agreementBinaryProtoTranslator =
+        protoConfig.tradeAgreementBinaryProtobufTranslator(agreementProtoTranslator);
+    missionProtoTranslator = protoConfig.settlementMissionProtoTranslator();
+
+    agreement = TestDataGenerator.defaultTradeAgreementData().build();
+    agreementMessage = TradeAgreementMessage.builder().instrument(agreement.getInstrument())
+        .internalParty(agreement.getInternalParty()).externalParty(agreement.getExternalParty())
+        .buySell(agreement.getBuySell()).qty(agreement.getQty()).build();
+    agreementProtoMessage = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+    agreementProtoBytes = agreementProtoMessage.toByteArray();
+    mission = TestDataGenerator.defaultSettlementMissionData().build();
+    missionMessage = missionTranslator.translate(mission);
+  }
+
+  @Benchmark
+  public SettlementMission transformAgreement() {
+    return agreementTransformer.transform(agreement);
+  }
+
+  @Benchmark
+  public TradeAgreement translateAgreementMessage() {
+    return agreementMessageTranslator.translate(agreementMessage);
+  }
+
+  @Benchmark
+  public SettlementMissionMessage translateMission() {
+    return missionTranslator.translate(mission);
+  }
+
+  @Benchmark
+  public SettlementMission translateMissionMessage() {
+    return missionMessageTranslator.translate(missionMessage);
+  }
+
+  @Benchmark
+  public TradeAgreement translateAgreementProtoMessage() {
+    return agreementProtoTranslator.translate(agreementProtoMessage);
+  }
+
+  @Benchmark
+  public TradeAgreement translateAgreementProtoBytes() {
+    return agreementBinaryProtoTranslator.translate(agreementProtoBytes);
+  }
+
+  @Benchmark
+  public SettlementMissionProtoMessage translateMissionToProto() {
+    return missionProtoTranslator.translate(mission);
+  }
+}
@@ -0,0 +1,98 @@
+package org.galatea.starter.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class HistoricalBarSeriesTest {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private static final List<IexHistoricalPrices> PRICES = Arrays.asList(
+      IexHistoricalPrices.builder().symbol("AAPL").date("2019-02-20").open(new BigDecimal("42.5"))
+          .high(new BigDecimal("43.33")).low(new BigDecimal("42.3475"))
+          .close(new BigDecimal("43.0075")).volume(104457448).build(),
+      IexHistoricalPrices.builder().symbol("AAPL").date("2019-02-21")
+          .close(new BigDecimal("42.7725")).build());
+
+  @Test
+  public void testColumns() {
+    HistoricalBarSeries series = HistoricalBarSeries.fromPrices(PRICES);
+
+    assertEquals(2, series.size());
+    assertEquals("AAPL", series.getSymbol(0));
+    assertEquals(series.getSymbolId(0), series.getSymbolId(1));
+    assertEquals(LocalDate.of(2019, 2, 20), series.getDate(0));
+    assertEquals(LocalDate.of(2019, 2, 20).toEpochDay(), series.getEpochDay(0));
+    assertEquals(43.0075, series.getClose(0), 0);
+    assertEquals(104457448, series.getVolume(0));
+    assertTrue(Double.isNaN(series.getOpen(1)));
+    assertEquals(HistoricalBarSeries.NO_VOLUME, series.getVolume(1));
+  }
+
+  @Test
+  public void testRoundTrip() {
+    assertEquals(PRICES, HistoricalBarSeries.fromPrices(PRICES).toPrices());
+  }
+
+  @Test
+  public void testJsonSameAsPrices() throws Exception {
+    assertEquals(MAPPER.readTree(MAPPER.writeValueAsString(PRICES)),
+        MAPPER.readTree(MAPPER.writeValueAsString(HistoricalBarSeries.fromPrices(PRICES))));
+  }
+
+  @Test
+  public void testEmptyJson() throws Exception {
+    assertEquals("[]", MAPPER.writeValueAsString(HistoricalBarSeries.empty()));
+  }
+
+  @Test
+  public void testBasicDateFormat() {
+    List<IexHistoricalPrices> prices = Arrays.asList(
+        IexHistoricalPrices.builder().symbol("AAPL").date("20190220").build());
+
+    assertEquals(LocalDate.of(2019, 2, 20), HistoricalBarSeries.fromPrices(prices).getDate(0));
+  }
+
+  @Test
+  public void testMissingSymbol() {
+    List<IexHistoricalPrices> prices = Arrays.asList(
+        IexHistoricalPrices.builder().date("2019-02-20").build());
+
+    HistoricalBarSeries series = HistoricalBarSeries.fromPrices(prices);
+    assertEquals(SymbolIds.NO_SYMBOL, series.getSymbolId(0));
+    assertNull(series.getSymbol(0));
+  }
+
+  @Test
+  public void testBuilderGrows() {
+    HistoricalBarSeries.Builder builder = HistoricalBarSeries.builder(0);
+    LocalDate day = LocalDate.of(2019, 1, 1);
+    for (int i = 0; i < 100; i++) {
+      builder.add("MSFT", day.plusDays(i), i, i, i, i, i);
+    }
+
+    HistoricalBarSeries series = builder.build();
+    assertEquals(100, series.size());
+    assertEquals(day.plusDays(99), series.getDate(99));
+    assertEquals(99, series.getClose(99), 0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnexpectedDate() {
+    HistoricalBarSeries.fromPrices(Arrays.asList(
+        IexHistoricalPrices.builder().symbol("AAPL").date("Feb 20").build()));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testIndexOutOfBounds() {
+    HistoricalBarSeries.fromPrices(PRICES).getClose(2);
+  }
+}
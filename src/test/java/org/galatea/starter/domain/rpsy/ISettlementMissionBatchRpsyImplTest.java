@@ -0,0 +1,63 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+@Slf4j
+// Only the JPA slice of the application is loaded, backed by an embedded database
+@DataJpaTest
+public class ISettlementMissionBatchRpsyImplTest extends ASpringTest {
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @Autowired
+  private TestEntityManager entityManager;
+
+  @Test
+  public void testPersistInChunks() {
+    List<SettlementMission> missions = IntStream.range(0, 7)
+        .mapToObj(i -> TestDataGenerator.defaultSettlementMissionData().id(null)
+            .instrument("INSTR-" + i).build())
+        .collect(Collectors.toList());
+
+    List<Long> ids = missionRpsy.persistInChunks(missions, 3);
+
+    assertEquals(missions.size(), ids.size());
+    assertEquals(missions.size(), ids.stream().distinct().count());
+
+    // Every chunk is cleared from the persistence context once it has been flushed
+    missions.forEach(mission -> assertFalse(entityManager.getEntityManager().contains(mission)));
+
+    for (int i = 0; i < ids.size(); i++) {
+      SettlementMission persisted = entityManager.find(SettlementMission.class, ids.get(i));
+      assertEquals("INSTR-" + i, persisted.getInstrument());
+    }
+  }
+
+  @Test
+  public void testPersistInChunksEmpty() {
+    assertTrue(missionRpsy.persistInChunks(Collections.emptyList(), 3).isEmpty());
+  }
+
+  // Repository exceptions are translated into spring's DataAccessException hierarchy
+  @Test(expected = InvalidDataAccessApiUsageException.class)
+  public void testPersistInChunksInvalidChunkSize() {
+    missionRpsy.persistInChunks(Collections.emptyList(), 0);
+  }
+}
@@ -0,0 +1,95 @@
+package org.galatea.starter.domain.rpsy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionCriteria;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+@Slf4j
+// Only the JPA slice of the application is loaded, backed by an embedded database
+@DataJpaTest
+public class ISettlementMissionQueryRpsyImplTest extends ASpringTest {
+
+  @Autowired
+  private ISettlementMissionRpsy missionRpsy;
+
+  @Autowired
+  private TestEntityManager entityManager;
+
+  private List<Long> ids;
+
+  @Before
+  public void setup() {
+    // Alternate the depot so that the filters have something to do
+    ids = Stream.of("DEPOT-A", "DEPOT-B", "DEPOT-A", "DEPOT-B", "DEPOT-A")
+        .map(depot -> TestDataGenerator.defaultSettlementMissionData().id(null)
+            .depot(depot).build())
+        .map(mission -> entityManager.persistAndGetId(mission, Long.class))
+        .collect(Collectors.toList());
+    entityManager.flush();
+    entityManager.clear();
+  }
+
+  @Test
+  public void testFindPage() {
+    SettlementMissionCriteria depotA = SettlementMissionCriteria.builder().depot("DEPOT-A").build();
+
+    List<SettlementMission> firstPage = missionRpsy.findPage(depotA, null, 2);
+    assertEquals(idsAt(0, 2), idsOf(firstPage));
+
+    List<SettlementMission> secondPage =
+        missionRpsy.findPage(depotA, firstPage.get(1).getId(), 2);
+    assertEquals(idsAt(4), idsOf(secondPage));
+  }
+
+  @Test
+  public void testFindPageIdRange() {
+    SettlementMissionCriteria range =
+        SettlementMissionCriteria.builder().fromId(ids.get(1)).toId(ids.get(3)).build();
+
+    assertEquals(idsAt(1, 2, 3), idsOf(missionRpsy.findPage(range, null, 10)));
+  }
+
+  @Test(expected = InvalidDataAccessApiUsageException.class)
+  public void testFindPageInvalidLimit() {
+    missionRpsy.findPage(SettlementMissionCriteria.builder().build(), null, 0);
+  }
+
+  @Test
+  public void testStreamMissions() {
+    SettlementMissionCriteria depotB = SettlementMissionCriteria.builder().depot("DEPOT-B")
+        .instrument(TestDataGenerator.defaultSettlementMissionData().build().getInstrument())
+        .build();
+
+    List<SettlementMission> streamed;
+    try (Stream<SettlementMission> missions = missionRpsy.streamMissions(depotB)) {
+      streamed = missions.collect(Collectors.toList());
+    }
+
+    assertEquals(idsAt(1, 3), idsOf(streamed));
+    // Missions are detached as they are streamed so the persistence context doesn't fill up
+    streamed.forEach(mission -> assertFalse(entityManager.getEntityManager().contains(mission)));
+  }
+
+  private List<Long> idsAt(final int... indexes) {
+    return Arrays.stream(indexes).mapToObj(ids::get).collect(Collectors.toList());
+  }
+
+  private static List<Long> idsOf(final List<SettlementMission> missions) {
+    return missions.stream().map(SettlementMission::getId).collect(Collectors.toList());
+  }
+}
@@ -3,8 +3,11 @@ package org.galatea.starter.entrypoint;
 
 import static java.util.Collections.singletonList;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.BDDMockito.given;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -18,6 +21,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import junitparams.FileParameters;
@@ -300,6 +304,49 @@ public class FuseHttpTraceFilterTest extends ASpringTest {
     verifyHeadersPresent(response);
   }
 
+  @Test
+  public void testGetMissionsPageLargerThanTracePayload_JSON() {
+    // Big enough that the response outgrows mvc.max-size-trace-payload and is streamed through
+    List<SettlementMission> missions = LongStream.rangeClosed(1, 2000)
+        .mapToObj(id -> TestDataGenerator.defaultSettlementMissionData().id(id).build())
+        .collect(Collectors.toList());
+
+    BDDMockito.given(this.mockSettlementService.findMissionsPage(any(), any(), anyInt()))
+        .willReturn(missions);
+
+    Response response =
+        RestAssured.given()
+            .log().ifValidationFails()
+            .when()
+            .get("/settlementEngine/missions/page?limit=2000&requestId=1234")
+            .then()
+            .extract().response();
+
+    assertThat(response.getBody().asByteArray().length, greaterThan(50_000));
+    verifyHeadersPresent(response);
+  }
+
+  @Test
+  public void testLatencyRecordedPerHandler() {
+    given(this.mockSettlementService.findMission(MISSION_ID_1))
+        .willReturn(Optional.of(TestDataGenerator.defaultSettlementMissionData().build()));
+
+    RestAssured.given()
+        .accept(MediaType.APPLICATION_JSON_VALUE)
+        .when()
+        .get("/settlementEngine/mission/" + MISSION_ID_1)
+        .then()
+        .statusCode(200);
+
+    RestAssured.given()
+        .when()
+        .get("/actuator/latency")
+        .then()
+        .statusCode(200)
+        .body("find { it.handler == '/settlementEngine/mission/{id}' && it.status == '2xx' }"
+            + ".count", greaterThan(0));
+  }
+
   /**
    * Verifies required audit fields are present
    */
@@ -1,26 +1,39 @@
 package org.galatea.starter.entrypoint;
 
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.client.WireMock;
 import feign.FeignException;
 import java.math.BigDecimal;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
+import org.galatea.starter.MvcConfig;
+import org.galatea.starter.service.LastTradedPriceLoader;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.ResultActions;
 
 
 @RequiredArgsConstructor
@@ -42,6 +55,20 @@ public class IexRestControllerTest extends ASpringTest {
   @Autowired
   private MockMvc mvc;
 
+  @Autowired
+  private CacheManager cacheManager;
+
+  /**
+   * Performs a request against an endpoint that answers asynchronously, returning the outcome of
+   * the dispatch that sends the response.
+   */
+  private ResultActions performAsync(final RequestBuilder builder) throws Exception {
+    MvcResult started = this.mvc.perform(builder)
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    return this.mvc.perform(asyncDispatch(started));
+  }
+
   @Test
   public void testGetSymbolsEndpoint() throws Exception {
     MvcResult result = this.mvc.perform(
@@ -57,10 +84,30 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testSearchSymbols() throws Exception {
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/symbols/search?prefix=aa&enabled=true&type=cs")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()", is(1)))
+        .andExpect(jsonPath("$[0].symbol", is("AA")))
+        .andExpect(jsonPath("$[0].enabled", is(true)));
+
+    this.mvc.perform(
+        org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+            .get("/iex/symbols/search?name=gold")
+            .accept(MediaType.APPLICATION_JSON_VALUE))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.length()", is(1)))
+        .andExpect(jsonPath("$[0].symbol", is("AAAU")));
+  }
+
   @Test
   public void testGetLastTradedPrice() throws Exception {
 
-    MvcResult result = this.mvc.perform(
+    MvcResult result = performAsync(
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/lastTradedPrice?token=DUMMY_TOKEN&symbols=FB")
             // This URL will be hit by the MockMvc client. The result is configured in the file
@@ -72,10 +119,28 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testGetLastTradedPriceCached() throws Exception {
+    // Start from an empty cache, so the first request has to go to IEX
+    cacheManager.getCache(LastTradedPriceLoader.LAST_TRADED_PRICES_CACHE).clear();
+    WireMock.resetAllRequests();
+
+    for (int i = 0; i < 3; i++) {
+      performAsync(
+          org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+              .get("/iex/lastTradedPrice?token=DUMMY_TOKEN&symbols=FB")
+              .accept(MediaType.APPLICATION_JSON_VALUE))
+          .andExpect(status().isOk())
+          .andExpect(jsonPath("$[0].symbol", is("FB")));
+    }
+
+    WireMock.verify(WireMock.exactly(1), WireMock.getRequestedFor(urlPathEqualTo("/tops/last")));
+  }
+
   @Test
   public void testGetLastTradedPriceEmpty() throws Exception {
 
-    MvcResult result = this.mvc.perform(
+    MvcResult result = performAsync(
         org.springframework.test.web.servlet.request.MockMvcRequestBuilders
             .get("/iex/lastTradedPrice?token=DUMMY_TOKEN&symbols=")
             .accept(MediaType.APPLICATION_JSON_VALUE))
@@ -87,7 +152,7 @@ public class IexRestControllerTest extends ASpringTest {
   @Test
   public void testGetHistoricalPrice() throws Exception {
 
-    MvcResult result = this.mvc.perform(
+    MvcResult result = performAsync(
             org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                 .get("/iex/historicalPrice?token=DUMMY_TOKEN&symbol=AAPL")
                 // This URL will be hit by the MockMvc client. The result is configured in the file
@@ -104,7 +169,7 @@ public class IexRestControllerTest extends ASpringTest {
   @Test
   public void testGetHistoricalPriceEmptySymbol() throws Exception{
 
-        MvcResult result = this.mvc.perform(
+        MvcResult result = performAsync(
                 org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                     .get("/iex/historicalPrice?token=DUMMY_TOKEN&symbol=")
                     // This URL will be hit by the MockMvc client. The result is configured in the file
@@ -117,7 +182,7 @@ public class IexRestControllerTest extends ASpringTest {
 
   @Test
   public void testGetHistoricalPriceEmptyRange() throws Exception{
-    MvcResult result = this.mvc.perform(
+    MvcResult result = performAsync(
             org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                 .get("/iex/historicalPrice?token=DUMMY_TOKEN&symbol=AAPL&range=")
                 // This URL will be hit by the MockMvc client. The result is configured in the file
@@ -129,7 +194,7 @@ public class IexRestControllerTest extends ASpringTest {
 
   @Test
   public void testGetHistoricalPriceEmptyDate() throws Exception{
-    MvcResult result = this.mvc.perform(
+    MvcResult result = performAsync(
             org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                 .get("/iex/historicalPrice?token=DUMMY_TOKEN&symbol=AAPL&date=")
                 // This URL will be hit by the MockMvc client. The result is configured in the file
@@ -141,7 +206,7 @@ public class IexRestControllerTest extends ASpringTest {
 
   @Test
   public void testGetHistoricalPriceBothDateAndRange() throws Exception{
-    MvcResult result = this.mvc.perform(
+    MvcResult result = performAsync(
             org.springframework.test.web.servlet.request.MockMvcRequestBuilders
                 .get("/iex/historicalPrice?token=DUMMY_TOKEN&symbol=AAPL&range=max&date=20190220")
                 // This URL will be hit by the MockMvc client. The result is configured in the file
@@ -152,4 +217,26 @@ public class IexRestControllerTest extends ASpringTest {
         .andReturn();
   }
 
+  @Test
+  public void testGetHistoricalPricesBatch() throws Exception {
+    MvcResult result = performAsync(
+            org.springframework.test.web.servlet.request.MockMvcRequestBuilders
+                // AAPL is stubbed in mapping-historicalPriceBothDateAndRange.json, MSFT isn't
+                .get("/iex/historicalPrices?symbols=AAPL,MSFT&range=max&date=20190220")
+                .accept(MvcConfig.APPLICATION_NDJSON_VALUE))
+        .andExpect(status().isOk())
+        .andReturn();
+
+    Map<String, JsonNode> lines = new HashMap<>();
+    for (String line : result.getResponse().getContentAsString().split("\n")) {
+      JsonNode node = new ObjectMapper().readTree(line);
+      lines.put(node.get("symbol").asText(), node);
+    }
+    Assert.assertEquals(2, lines.size());
+    Assert.assertEquals("AAPL", lines.get("AAPL").get("prices").get(0).get("symbol").asText());
+    Assert.assertFalse(lines.get("AAPL").has("error"));
+    Assert.assertTrue(lines.get("MSFT").has("error"));
+    Assert.assertFalse(lines.get("MSFT").has("prices"));
+  }
+
 }
@@ -0,0 +1,89 @@
+package org.galatea.starter.entrypoint;
+
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Arrays;
+import java.util.List;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.TradeAgreement;
+import org.galatea.starter.entrypoint.messagecontracts.ProtobufMessages.TradeAgreementProtoMessage;
+import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
+import org.galatea.starter.service.SettlementService;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@RequiredArgsConstructor
+@Slf4j
+@ToString
+@EqualsAndHashCode(callSuper = true)
+@SpringBootTest(properties = {"jms.batch.enabled=true", "jms.listener-concurrency=1",
+    "jms.batch.max-wait-millis=2000"})
+public class SettlementJmsBatchListenerTest extends ASpringTest {
+
+  @Autowired
+  protected JmsTemplate jmsTemplate;
+
+  @Autowired
+  protected ObjectMapper objectMapper;
+
+  @MockBean
+  private SettlementService mockSettlementService;
+
+  @Value("${jms.agreement-queue-json}")
+  protected String jsonQueueName;
+
+  @Value("${jms.agreement-queue-proto}")
+  protected String protoQueueName;
+
+  // See SettlementJmsListenerTest for why each test dirties the context
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementBatchJson() throws Exception {
+    List<TradeAgreement> agreements = Arrays.asList(
+        TestDataGenerator.defaultTradeAgreementData().qty(100d).build(),
+        TestDataGenerator.defaultTradeAgreementData().qty(200d).build(),
+        TestDataGenerator.defaultTradeAgreementData().qty(300d).build());
+
+    for (TradeAgreement agreement : agreements) {
+      String message = objectMapper.writeValueAsString(toMessage(agreement));
+      jmsTemplate.send(jsonQueueName, s -> s.createTextMessage(message));
+    }
+
+    // All three messages arrive well within the batch wait, so they are settled in one call
+    verify(mockSettlementService, timeout(10000)).spawnMissions(agreements);
+  }
+
+  @Test
+  @DirtiesContext
+  public void testSettleAgreementBatchProtoSkipsUntranslatableMessage() {
+    TradeAgreementProtoMessage message
+        = TestDataGenerator.defaultTradeAgreementProtoMessageData().build();
+    TradeAgreement agreement = TestDataGenerator.defaultTradeAgreementData().build();
+
+    jmsTemplate.convertAndSend(protoQueueName, message.toByteArray());
+    jmsTemplate.convertAndSend(protoQueueName, new byte[] {(byte) 0xFF});
+    jmsTemplate.convertAndSend(protoQueueName, message.toByteArray());
+
+    verify(mockSettlementService, timeout(10000))
+        .spawnMissions(Arrays.asList(agreement, agreement));
+  }
+
+  private TradeAgreementMessage toMessage(final TradeAgreement agreement) {
+    return TradeAgreementMessage.builder().instrument(agreement.getInstrument())
+        .internalParty(agreement.getInternalParty()).externalParty(agreement.getExternalParty())
+        .buySell(agreement.getBuySell()).qty(agreement.getQty()).build();
+  }
+}
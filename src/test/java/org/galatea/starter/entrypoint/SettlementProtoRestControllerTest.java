@@ -2,6 +2,7 @@ package org.galatea.starter.entrypoint;
 
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.BDDMockito.given;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -9,6 +10,8 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.google.common.collect.Sets;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.util.Optional;
 import junitparams.JUnitParamsRunner;
 import lombok.RequiredArgsConstructor;
@@ -50,6 +53,9 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
 
   private static final String APPLICATION_X_PROTOBUF = "application/x-protobuf";
 
+  private static final String APPLICATION_X_PROTOBUF_DELIMITED =
+      "application/x-protobuf-delimited";
+
   @Autowired
   private ITranslator<SettlementMission, SettlementMissionProtoMessage> settlementMissionTranslator;
 
@@ -89,6 +95,38 @@ public class SettlementProtoRestControllerTest extends ASpringTest {
         .contains("/settlementEngine/mission/" + expectedId));
   }
 
+  @Test
+  public void testSettleAgreementStream() throws Exception {
+    TradeAgreement agreement1 = TestDataGenerator.defaultTradeAgreementData().build();
+    TradeAgreement agreement2 = TestDataGenerator.defaultTradeAgreementData()
+        .instrument("MSFT").build();
+
+    ByteArrayOutputStream body = new ByteArrayOutputStream();
+    TestDataGenerator.defaultTradeAgreementProtoMessageData().build().writeDelimitedTo(body);
+    TestDataGenerator.defaultTradeAgreementProtoMessageData().setInstrument("MSFT").build()
+        .writeDelimitedTo(body);
+
+    // The test properties use a chunk size of 1, so each agreement is settled separately
+    given(this.mockSettlementService.spawnMissions(singletonList(agreement1)))
+        .willReturn(Sets.newTreeSet(singletonList(1L)));
+    given(this.mockSettlementService.spawnMissions(singletonList(agreement2)))
+        .willReturn(Sets.newTreeSet(singletonList(2L)));
+
+    MvcResult result = this.mvc.perform(
+        post("/settlementEngine/stream?requestId=1234")
+            .contentType(APPLICATION_X_PROTOBUF_DELIMITED)
+            .accept(APPLICATION_X_PROTOBUF_DELIMITED).content(body.toByteArray()))
+        .andExpect(status().isOk()).andReturn();
+
+    ByteArrayInputStream received =
+        new ByteArrayInputStream(result.getResponse().getContentAsByteArray());
+    assertEquals(singletonList("/settlementEngine/mission/1"),
+        SettlementResponseProtoMessage.parseDelimitedFrom(received).getSpawnedMissionPathsList());
+    assertEquals(singletonList("/settlementEngine/mission/2"),
+        SettlementResponseProtoMessage.parseDelimitedFrom(received).getSpawnedMissionPathsList());
+    assertNull(SettlementResponseProtoMessage.parseDelimitedFrom(received));
+  }
+
   @Test
   public void testGetMission() throws Exception {
     SettlementMission mission = TestDataGenerator.defaultSettlementMissionData().build();
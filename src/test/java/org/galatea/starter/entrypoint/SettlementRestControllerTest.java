@@ -7,6 +7,8 @@ import static org.galatea.starter.MvcConfig.TEXT_CSV;
 import static org.hamcrest.Matchers.hasXPath;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
@@ -23,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
@@ -31,10 +34,13 @@ import junitparams.JUnitParamsRunner;
 import lombok.extern.slf4j.Slf4j;
 import org.galatea.starter.ASpringTest;
 import org.galatea.starter.MessageTranslationConfig;
+import org.galatea.starter.MvcConfig;
 import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.SettlementMissionCriteria;
 import org.galatea.starter.domain.TradeAgreement;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionList;
 import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionMessage;
+import org.galatea.starter.entrypoint.messagecontracts.SettlementMissionPage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessage;
 import org.galatea.starter.entrypoint.messagecontracts.TradeAgreementMessages;
 import org.galatea.starter.service.SettlementService;
@@ -77,12 +83,21 @@ public class SettlementRestControllerTest
   @Value("${mvc.settleMissionPath}")
   private String settleMissionPath;
 
+  @Value("${mvc.settleMissionStreamPath}")
+  private String settleMissionStreamPath;
+
   @Value("${mvc.getMissionPath}")
   private String getMissionPath;
 
   @Value("${mvc.getMissionsPath}")
   private String getMissionsPath;
 
+  @Value("${mvc.getMissionsPagePath}")
+  private String getMissionsPagePath;
+
+  @Value("${mvc.streamMissionsPath}")
+  private String streamMissionsPath;
+
   @Value("${mvc.deleteMissionPath}")
   private String deleteMissionPath;
 
@@ -132,9 +147,12 @@ public class SettlementRestControllerTest
     RestAssuredMockMvc.standaloneSetup(
         MockMvcBuilders.standaloneSetup(settlementRestController).
             addPlaceholderValue("mvc.settleMissionPath", settleMissionPath).
+            addPlaceholderValue("mvc.settleMissionStreamPath", settleMissionStreamPath).
             addPlaceholderValue("mvc.deleteMissionPath", deleteMissionPath).
             addPlaceholderValue("mvc.updateMissionPath", updateMissionPath).
             addPlaceholderValue("mvc.getMissionsPath", getMissionsPath).
+            addPlaceholderValue("mvc.getMissionsPagePath", getMissionsPagePath).
+            addPlaceholderValue("mvc.streamMissionsPath", streamMissionsPath).
             addPlaceholderValue("mvc.getMissionPath", getMissionPath).
             setContentNegotiationManager(manager).
             setMessageConverters(new MappingJackson2HttpMessageConverter(),
@@ -216,6 +234,45 @@ public class SettlementRestControllerTest
         .statusCode(HttpStatus.OK.value());
   }
 
+  @Test
+  public void testSettleAgreementStream_NDJSON() throws Exception {
+    TradeAgreement agreement1 = TestDataGenerator.defaultTradeAgreementData().build();
+    TradeAgreement agreement2 = TestDataGenerator.defaultTradeAgreementData()
+        .instrument("MSFT").build();
+
+    String ndjson = objectMapper.writeValueAsString(toMessage(agreement1)) + "\n"
+        + objectMapper.writeValueAsString(toMessage(agreement2)) + "\n";
+
+    log.info("Agreement ndjson to post {}", ndjson);
+
+    // The test properties use a chunk size of 1, so each agreement is settled separately
+    BDDMockito.given(this.mockSettlementService.spawnMissions(singletonList(agreement1)))
+        .willReturn(Collections.singleton(1L));
+    BDDMockito.given(this.mockSettlementService.spawnMissions(singletonList(agreement2)))
+        .willReturn(Collections.singleton(2L));
+
+    String expectedResponse = "{\"spawnedMissions\":[\"/settlementEngine/mission/1\"]}\n"
+        + "{\"spawnedMissions\":[\"/settlementEngine/mission/2\"]}\n";
+
+    given()
+        .log().ifValidationFails()
+        .contentType(MvcConfig.APPLICATION_NDJSON_VALUE)
+        .accept(MvcConfig.APPLICATION_NDJSON_VALUE)
+        .body(ndjson)
+        .when()
+        .post("/settlementEngine/stream?requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .body(is(expectedResponse));
+  }
+
+  private TradeAgreementMessage toMessage(final TradeAgreement agreement) {
+    return TradeAgreementMessage.builder().instrument(agreement.getInstrument())
+        .internalParty(agreement.getInternalParty()).externalParty(agreement.getExternalParty())
+        .buySell(agreement.getBuySell()).qty(agreement.getQty()).build();
+  }
+
   private List<TradeAgreement> toTradeAgreements(TradeAgreementMessages messages) {
     return tradeAgreementTranslator.translate(messages);
   }
@@ -393,6 +450,112 @@ public class SettlementRestControllerTest
     assertTrue(XlsxComparator.equals(expectedXlsx, response.asByteArray()));
   }
 
+  @Test
+  public void testGetMissionsPage_JSON() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(11L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(12L).build();
+    SettlementMission mission3 = TestDataGenerator.defaultSettlementMissionData().id(13L).build();
+    SettlementMissionCriteria criteria =
+        SettlementMissionCriteria.builder().depot("DEPOT-1").build();
+
+    // One more mission than the limit comes back, so there is another page after this one
+    BDDMockito.given(this.mockSettlementService.findMissionsPage(criteria, 10L, 3))
+        .willReturn(Arrays.asList(mission1, mission2, mission3));
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/page?depot=DEPOT-1&after=10&limit=2&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .content(is(objectMapper.writeValueAsString(
+            new SettlementMissionPage(Arrays.asList(mission1, mission2), 12L))));
+  }
+
+  @Test
+  public void testGetMissionsPage_lastPage() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(11L).build();
+    SettlementMissionCriteria criteria = SettlementMissionCriteria.builder().build();
+
+    BDDMockito.given(this.mockSettlementService.findMissionsPage(criteria, null, 3))
+        .willReturn(singletonList(mission1));
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/page?limit=2&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .content(is(objectMapper.writeValueAsString(
+            new SettlementMissionPage(singletonList(mission1), null))));
+  }
+
+  @Test
+  public void testStreamMissions_JSON() throws Exception {
+    List<SettlementMission> missions = Arrays.asList(
+        TestDataGenerator.defaultSettlementMissionData().id(1L).build(),
+        TestDataGenerator.defaultSettlementMissionData().id(2L).build());
+    SettlementMissionCriteria criteria =
+        SettlementMissionCriteria.builder().instrument("IBM").fromId(1L).toId(2L).build();
+    givenStreamedMissions(criteria, missions);
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/stream?instrument=IBM&fromId=1&toId=2&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType(MediaType.APPLICATION_JSON_VALUE)
+        .content(is(objectMapper.writeValueAsString(new SettlementMissionList(missions))));
+  }
+
+  @Test
+  public void testStreamMissions_CSV() throws Exception {
+    List<SettlementMission> missions = Arrays.asList(
+        SettlementMission.builder()
+            .id(1L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+            .qty(100.0).version(0L).build(),
+        SettlementMission.builder()
+            .id(2L).instrument("ABC").externalParty("EXT-1").depot("DEPOT-1").direction("REC")
+            .qty(100.0).version(0L).build());
+    SettlementMissionCriteria criteria =
+        SettlementMissionCriteria.builder().externalParty("EXT-1").build();
+    givenStreamedMissions(criteria, missions);
+
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/stream?externalParty=EXT-1&format=csv&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.OK.value())
+        .contentType("text/csv")
+        .body(is(readData("SettlementMissions.csv")));
+  }
+
+  @Test
+  public void testStreamMissions_unsupportedFormat() {
+    given()
+        .log().ifValidationFails()
+        .when()
+        .get("/settlementEngine/missions/stream?format=pdf&requestId=1234")
+        .then()
+        .log().ifValidationFails()
+        .statusCode(HttpStatus.NOT_ACCEPTABLE.value());
+  }
+
+  @SuppressWarnings("unchecked")
+  private void givenStreamedMissions(final SettlementMissionCriteria criteria,
+      final List<SettlementMission> missions) {
+    BDDMockito.willAnswer(invocation -> {
+      ((Consumer<Iterable<SettlementMission>>) invocation.getArgument(1)).accept(missions);
+      return null;
+    }).given(this.mockSettlementService).streamMissions(eq(criteria), any());
+  }
+
   @Test
   public void testIncorrectlyFormattedAgreement() {
     String expectedMessage = "Incorrectly formatted message.  Please consult the documentation.";
@@ -0,0 +1,105 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.collect.Sets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.SettlementMission;
+import org.galatea.starter.domain.rpsy.ISettlementMissionRpsy;
+import org.galatea.starter.testutils.TestDataGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class CoalescingMissionLoaderTest {
+
+  private ISettlementMissionRpsy mockSettlementMissionRpsy;
+
+  private CacheManager cacheManager;
+
+  private CoalescingMissionLoader loader;
+
+  private ExecutorService callers;
+
+  @Before
+  public void setup() {
+    mockSettlementMissionRpsy = mock(ISettlementMissionRpsy.class);
+    cacheManager = new ConcurrentMapCacheManager(ISettlementMissionRpsy.MISSIONS_CACHE);
+    loader = new CoalescingMissionLoader(mockSettlementMissionRpsy, cacheManager);
+    // A long window so that all of the concurrent lookups below land in the same batch
+    ReflectionTestUtils.setField(loader, "windowMillis", 500L);
+    ReflectionTestUtils.setField(loader, "maxBatchSize", 100);
+    ReflectionTestUtils.setField(loader, "loaderThreads", 1);
+    loader.start();
+    callers = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void teardown() {
+    loader.stop();
+    callers.shutdownNow();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testConcurrentLookupsAreCoalesced() throws Exception {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    SettlementMission mission2 = TestDataGenerator.defaultSettlementMissionData().id(2L).build();
+    given(mockSettlementMissionRpsy.findAllById(any()))
+        .willReturn(Arrays.asList(mission1, mission2));
+
+    List<Callable<Optional<SettlementMission>>> lookups = Arrays.asList(1L, 2L, 3L, 1L).stream()
+        .map(id -> (Callable<Optional<SettlementMission>>) () -> loader.findMission(id))
+        .collect(Collectors.toList());
+    List<Future<Optional<SettlementMission>>> results = callers.invokeAll(lookups);
+
+    assertEquals(Optional.of(mission1), results.get(0).get());
+    assertEquals(Optional.of(mission2), results.get(1).get());
+    assertFalse(results.get(2).get().isPresent());
+    assertEquals(Optional.of(mission1), results.get(3).get());
+
+    // One query for all of the distinct ids
+    ArgumentCaptor<Iterable<Long>> ids = ArgumentCaptor.forClass(Iterable.class);
+    verify(mockSettlementMissionRpsy).findAllById(ids.capture());
+    assertEquals(Sets.newHashSet(1L, 2L, 3L), Sets.newHashSet(ids.getValue()));
+
+    // Loaded missions are cached
+    assertEquals(mission1, cacheManager.getCache(ISettlementMissionRpsy.MISSIONS_CACHE)
+        .get(1L, SettlementMission.class));
+  }
+
+  @Test
+  public void testCachedLookupSkipsRepository() {
+    SettlementMission mission1 = TestDataGenerator.defaultSettlementMissionData().id(1L).build();
+    cacheManager.getCache(ISettlementMissionRpsy.MISSIONS_CACHE).put(1L, mission1);
+
+    assertEquals(Optional.of(mission1), loader.findMission(1L));
+    verify(mockSettlementMissionRpsy, never()).findAllById(any());
+  }
+
+  @Test(expected = DataRetrievalFailureException.class)
+  public void testLoadFailureIsRethrown() {
+    given(mockSettlementMissionRpsy.findAllById(any()))
+        .willThrow(new DataRetrievalFailureException("Database is down"));
+
+    loader.findMission(1L);
+  }
+}
@@ -0,0 +1,164 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.galatea.starter.domain.HistoricalBarSeries;
+import org.galatea.starter.domain.IexHistoricalPricesResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class HistoricalPriceBatchLoaderTest {
+
+  private IexCallExecutor executor;
+
+  private HistoricalPriceBatchLoader loader;
+
+  @Before
+  public void setup() {
+    executor = new IexCallExecutor();
+    ReflectionTestUtils.setField(executor, "threads", 8);
+    ReflectionTestUtils.setField(executor, "queueSize", 100);
+    executor.start();
+    loader = new HistoricalPriceBatchLoader(executor);
+    ReflectionTestUtils.setField(loader, "parallelism", 3);
+  }
+
+  @After
+  public void tearDown() {
+    executor.stop();
+  }
+
+  @Test
+  public void testParallelismBounded() {
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    List<String> symbols = IntStream.range(0, 20).mapToObj(i -> "SYM" + i)
+        .collect(Collectors.toList());
+
+    List<IexHistoricalPricesResult> results = new ArrayList<>();
+    loader.load(symbols, symbol -> {
+      maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+      TimeUnit.MILLISECONDS.sleep(10);
+      running.decrementAndGet();
+      return bar(symbol);
+    }, results::add).join();
+
+    assertEquals(symbols.size(), results.size());
+    assertTrue("More than 3 fetches ran at once: " + maxRunning, maxRunning.get() <= 3);
+    assertTrue(maxRunning.get() > 1);
+  }
+
+  @Test
+  public void testFailuresReportedPerSymbol() {
+    List<IexHistoricalPricesResult> results = new ArrayList<>();
+    loader.load(Arrays.asList("AAPL", "BAD", "MSFT"), symbol -> {
+      if (symbol.equals("BAD")) {
+        throw new IllegalArgumentException("Unknown symbol");
+      }
+      return bar(symbol);
+    }, results::add).join();
+
+    Map<String, IexHistoricalPricesResult> bySymbol = results.stream()
+        .collect(Collectors.toMap(IexHistoricalPricesResult::getSymbol, Function.identity()));
+    assertEquals(3, bySymbol.size());
+    assertEquals("Unknown symbol", bySymbol.get("BAD").getError());
+    assertNull(bySymbol.get("BAD").getPrices());
+    assertEquals(1, bySymbol.get("AAPL").getPrices().size());
+    assertNull(bySymbol.get("AAPL").getError());
+  }
+
+  @Test
+  public void testResultsInCompletionOrder() {
+    List<String> order = new ArrayList<>();
+    loader.load(Arrays.asList("SLOW", "FAST"), symbol -> {
+      if (symbol.equals("SLOW")) {
+        TimeUnit.MILLISECONDS.sleep(200);
+      }
+      return HistoricalBarSeries.empty();
+    }, result -> order.add(result.getSymbol())).join();
+
+    assertEquals(Arrays.asList("FAST", "SLOW"), order);
+  }
+
+  @Test
+  public void testRepeatedSymbolsFetchedOnce() {
+    AtomicInteger fetches = new AtomicInteger();
+    List<IexHistoricalPricesResult> results = new ArrayList<>();
+    loader.load(Arrays.asList("AAPL", "aapl", "AAPL"), symbol -> {
+      fetches.incrementAndGet();
+      return HistoricalBarSeries.empty();
+    }, results::add).join();
+
+    assertEquals(1, fetches.get());
+    assertEquals(1, results.size());
+  }
+
+  @Test
+  public void testFailedHandOverStopsBatch() {
+    AtomicInteger fetches = new AtomicInteger();
+    List<String> symbols = IntStream.range(0, 20).mapToObj(i -> "SYM" + i)
+        .collect(Collectors.toList());
+
+    CompletableFuture<Void> done = loader.load(symbols, symbol -> {
+      fetches.incrementAndGet();
+      return HistoricalBarSeries.empty();
+    }, result -> {
+      throw new UncheckedIOException(new IOException("Client went away"));
+    });
+
+    try {
+      done.join();
+      fail("Expected the batch to fail");
+    } catch (CompletionException e) {
+      assertTrue(e.getCause() instanceof UncheckedIOException);
+    }
+    assertTrue("Kept fetching after the failure: " + fetches, fetches.get() <= 3);
+  }
+
+  @Test
+  public void testCancelWaitsForHandOver() throws Exception {
+    CountDownLatch handingOver = new CountDownLatch(1);
+    AtomicBoolean handedOver = new AtomicBoolean();
+
+    CompletableFuture<Void> done = loader.load(Arrays.asList("AAPL"),
+        symbol -> HistoricalBarSeries.empty(), result -> {
+          handingOver.countDown();
+          try {
+            TimeUnit.MILLISECONDS.sleep(200);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          handedOver.set(true);
+        });
+
+    handingOver.await();
+    done.cancel(false);
+    assertTrue(handedOver.get());
+  }
+
+  private static HistoricalBarSeries bar(final String symbol) {
+    return HistoricalBarSeries.builder(1)
+        .add(symbol, LocalDate.of(2019, 2, 20), 42.5, 43.33, 42.3475, 43.0075, 1000).build();
+  }
+}
@@ -0,0 +1,251 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.galatea.starter.ASpringTest;
+import org.galatea.starter.domain.HistoricalBarSeries;
+import org.galatea.starter.domain.IexHistoricalPrices;
+import org.galatea.starter.domain.rpsy.IIexHistoricalPriceBarRpsy;
+import org.galatea.starter.domain.rpsy.IIexHistoricalPriceCoverageRpsy;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+// Only the JPA slice of the application is loaded, backed by an embedded database
+@DataJpaTest
+public class HistoricalPriceStoreTest extends ASpringTest {
+
+  private static final ZoneId NEW_YORK = ZoneId.of("America/New_York");
+
+  @Autowired
+  private IIexHistoricalPriceBarRpsy barRpsy;
+
+  @Autowired
+  private IIexHistoricalPriceCoverageRpsy coverageRpsy;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  private IexClient mockIexClient;
+
+  private HistoricalPriceStore store;
+
+  @Before
+  public void setup() {
+    mockIexClient = mock(IexClient.class);
+    store = new HistoricalPriceStore(mockIexClient, barRpsy, coverageRpsy, transactionManager);
+    setToday("2019-03-15");
+  }
+
+  @Test
+  public void testRangeServedLocallyOnceFetched() {
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "1m"))
+        .willReturn(bars("AAPL", "2019-03-13", "2019-03-14", "2019-03-15"));
+
+    HistoricalBarSeries fetched = store.getRange("AAPL", "1m");
+    HistoricalBarSeries local = store.getRange("aapl", "1m");
+
+    assertEquals(3, fetched.size());
+    // Today's bar is still changing, so it isn't stored
+    assertEquals(dates("2019-03-13", "2019-03-14"), datesOf(local));
+    assertEquals(43.0075, local.getClose(0), 0);
+    assertEquals(1000, local.getVolume(0));
+    verify(mockIexClient, times(1)).getHistoricalPricesRange(anyString(), anyString());
+  }
+
+  @Test
+  public void testSmallerRangeServedLocally() {
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "3m"))
+        .willReturn(bars("AAPL", "2019-01-02", "2019-03-13", "2019-03-14"));
+
+    store.getRange("AAPL", "3m");
+    HistoricalBarSeries local = store.getRange("AAPL", "1m");
+
+    assertEquals(dates("2019-03-13", "2019-03-14"), datesOf(local));
+    verify(mockIexClient, never()).getHistoricalPricesRange("AAPL", "1m");
+  }
+
+  @Test
+  public void testOnlyMissingDaysFetched() {
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "5y"))
+        .willReturn(bars("AAPL", "2015-01-02", "2019-03-14"));
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "5d"))
+        .willReturn(bars("AAPL", "2019-03-14", "2019-03-15", "2019-03-18"));
+
+    store.getRange("AAPL", "5y");
+    setToday("2019-03-19");
+    HistoricalBarSeries prices = store.getRange("AAPL", "5y");
+
+    assertEquals(dates("2015-01-02", "2019-03-14", "2019-03-15", "2019-03-18"), datesOf(prices));
+    verify(mockIexClient, times(1)).getHistoricalPricesRange("AAPL", "5y");
+    verify(mockIexClient, times(1)).getHistoricalPricesRange("AAPL", "5d");
+  }
+
+  @Test
+  public void testGapFetchedWithSmallestRangeReachingIt() {
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "1m"))
+        .willReturn(bars("AAPL", "2019-03-14"));
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "3m"))
+        .willReturn(bars("AAPL", "2019-03-14", "2019-04-15"));
+
+    store.getRange("AAPL", "1m");
+    setToday("2019-04-16");
+    store.getRange("AAPL", "5d");
+
+    verify(mockIexClient, times(1)).getHistoricalPricesRange("AAPL", "3m");
+  }
+
+  @Test
+  public void testWiderRangeFetchedWhole() {
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "1m"))
+        .willReturn(bars("AAPL", "2019-03-14"));
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "1y"))
+        .willReturn(bars("AAPL", "2018-06-01", "2019-03-14"));
+
+    store.getRange("AAPL", "1m");
+    store.getRange("AAPL", "1y");
+    HistoricalBarSeries local = store.getRange("AAPL", "1y");
+
+    assertEquals(dates("2018-06-01", "2019-03-14"), datesOf(local));
+    verify(mockIexClient, times(1)).getHistoricalPricesRange("AAPL", "1y");
+  }
+
+  @Test
+  public void testFiveDaysCountsTradingDays() {
+    // A monday, so 5 trading days reach back past the weekend
+    setToday("2019-03-18");
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "1m")).willReturn(bars("AAPL",
+        "2019-03-07", "2019-03-08", "2019-03-11", "2019-03-12", "2019-03-13", "2019-03-14",
+        "2019-03-15", "2019-03-18"));
+
+    HistoricalBarSeries fetched = store.getRange("AAPL", "5d");
+    HistoricalBarSeries local = store.getRange("AAPL", "5d");
+
+    List<String> lastFiveDays =
+        dates("2019-03-11", "2019-03-12", "2019-03-13", "2019-03-14", "2019-03-15");
+    assertEquals(lastFiveDays, datesOf(fetched));
+    assertEquals(lastFiveDays, datesOf(local));
+    verify(mockIexClient, times(1)).getHistoricalPricesRange(anyString(), anyString());
+  }
+
+  @Test
+  public void testDayMissingFromResponseNotCovered() {
+    // IEX hasn't published the 14th yet
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "1m"))
+        .willReturn(bars("AAPL", "2019-03-12", "2019-03-13"));
+    given(mockIexClient.getHistoricalPricesDate("AAPL", "20190314"))
+        .willReturn(bars("AAPL", "2019-03-14"));
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "5d"))
+        .willReturn(bars("AAPL", "2019-03-13", "2019-03-14", "2019-03-15"));
+
+    store.getRange("AAPL", "1m");
+
+    // Not taken to be a day the market was shut
+    assertEquals(dates("2019-03-14"), datesOf(store.getDate("AAPL", "20190314")));
+    verify(mockIexClient).getHistoricalPricesDate("AAPL", "20190314");
+
+    // The range fetches the missing day again rather than answering without it
+    HistoricalBarSeries local = store.getRange("AAPL", "1m");
+    assertEquals(dates("2019-03-12", "2019-03-13", "2019-03-14"), datesOf(local));
+    verify(mockIexClient, times(1)).getHistoricalPricesRange("AAPL", "5d");
+  }
+
+  @Test
+  public void testDefaultRangeUsesDefaultEndpoint() {
+    given(mockIexClient.getHistoricalPricesForSymbol("AAPL"))
+        .willReturn(bars("AAPL", "2019-03-14"));
+
+    store.getRange("AAPL", null);
+    store.getRange("AAPL", null);
+
+    verify(mockIexClient, times(1)).getHistoricalPricesForSymbol("AAPL");
+  }
+
+  @Test
+  public void testIntradayRangePassedThrough() {
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "1d"))
+        .willReturn(bars("AAPL", "2019-03-15"));
+
+    store.getRange("AAPL", "1d");
+    store.getRange("AAPL", "1d");
+
+    verify(mockIexClient, times(2)).getHistoricalPricesRange("AAPL", "1d");
+    assertEquals(0, barRpsy.count());
+  }
+
+  @Test
+  public void testDateServedLocally() {
+    given(mockIexClient.getHistoricalPricesDate("AAPL", "20190220"))
+        .willReturn(bars("AAPL", "2019-02-20"));
+
+    store.getDate("AAPL", "20190220");
+    HistoricalBarSeries local = store.getDate("AAPL", "20190220");
+
+    assertEquals(dates("2019-02-20"), datesOf(local));
+    verify(mockIexClient, times(1)).getHistoricalPricesDate("AAPL", "20190220");
+  }
+
+  @Test
+  public void testCoveredDateWithNoBarNotFetched() {
+    given(mockIexClient.getHistoricalPricesRange("AAPL", "1m"))
+        .willReturn(bars("AAPL", "2019-03-08", "2019-03-11"));
+
+    store.getRange("AAPL", "1m");
+
+    // A saturday, so there's no bar for it
+    assertTrue(store.getDate("AAPL", "20190309").isEmpty());
+    verify(mockIexClient, never()).getHistoricalPricesDate(anyString(), anyString());
+  }
+
+  @Test
+  public void testTodayPassedThrough() {
+    given(mockIexClient.getHistoricalPricesDate("AAPL", "20190315"))
+        .willReturn(bars("AAPL", "2019-03-15"));
+
+    store.getDate("AAPL", "20190315");
+    store.getDate("AAPL", "20190315");
+
+    verify(mockIexClient, times(2)).getHistoricalPricesDate("AAPL", "20190315");
+    assertEquals(0, barRpsy.count());
+  }
+
+  private void setToday(final String date) {
+    store.setClock(Clock.fixed(
+        LocalDate.parse(date).atTime(12, 0).atZone(NEW_YORK).toInstant(), NEW_YORK));
+  }
+
+  private static List<IexHistoricalPrices> bars(final String symbol, final String... dates) {
+    return Stream.of(dates)
+        .map(date -> IexHistoricalPrices.builder().symbol(symbol).date(date)
+            .open(new BigDecimal("42.5")).high(new BigDecimal("43.33"))
+            .low(new BigDecimal("42.3475")).close(new BigDecimal("43.0075")).volume(1000)
+            .build())
+        .collect(Collectors.toList());
+  }
+
+  private static List<String> dates(final String... dates) {
+    return Stream.of(dates).collect(Collectors.toList());
+  }
+
+  private static List<String> datesOf(final HistoricalBarSeries series) {
+    return IntStream.range(0, series.size()).mapToObj(i -> series.getDate(i).toString())
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,141 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.IexLastTradedPrice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class LastTradedPriceLoaderTest {
+
+  private IexClient mockIexClient;
+
+  private CacheManager cacheManager;
+
+  private LastTradedPriceLoader loader;
+
+  private ExecutorService callers;
+
+  @Before
+  public void setup() {
+    mockIexClient = mock(IexClient.class);
+    cacheManager = new ConcurrentMapCacheManager(LastTradedPriceLoader.LAST_TRADED_PRICES_CACHE);
+    loader = new LastTradedPriceLoader(mockIexClient, cacheManager);
+    ReflectionTestUtils.setField(loader, "maxBatchSize", 100);
+    callers = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void teardown() {
+    callers.shutdownNow();
+  }
+
+  private static IexLastTradedPrice price(final String symbol) {
+    return IexLastTradedPrice.builder().symbol(symbol).price(new BigDecimal("100.5")).size(10)
+        .time(1565273330617L).build();
+  }
+
+  private static List<String> symbolsOf(final List<IexLastTradedPrice> prices) {
+    return prices.stream().map(IexLastTradedPrice::getSymbol).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testOnlyMissesAreFetched() {
+    cacheManager.getCache(LastTradedPriceLoader.LAST_TRADED_PRICES_CACHE).put("FB", price("FB"));
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"AAPL", "NOPE"}))
+        .willReturn(Collections.singletonList(price("AAPL")));
+
+    List<IexLastTradedPrice> prices =
+        loader.getLastTradedPrices(Arrays.asList("aapl", "FB", "NOPE", "AAPL"));
+
+    // In the order asked for, without repeats or the unknown symbol
+    assertEquals(Arrays.asList("AAPL", "FB"), symbolsOf(prices));
+
+    // Second time round everything comes from the cache, including the fact NOPE has no price
+    assertEquals(Arrays.asList("FB", "AAPL"),
+        symbolsOf(loader.getLastTradedPrices(Arrays.asList("FB", "AAPL", "NOPE"))));
+    verify(mockIexClient, times(1)).getLastTradedPriceForSymbols(any());
+  }
+
+  @Test
+  public void testAllCachedSkipsIex() {
+    cacheManager.getCache(LastTradedPriceLoader.LAST_TRADED_PRICES_CACHE).put("FB", price("FB"));
+
+    assertEquals(Collections.singletonList("FB"),
+        symbolsOf(loader.getLastTradedPrices(Collections.singletonList("FB"))));
+    verify(mockIexClient, never()).getLastTradedPriceForSymbols(any());
+  }
+
+  @Test
+  public void testMissesSplitIntoBatches() {
+    ReflectionTestUtils.setField(loader, "maxBatchSize", 2);
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"A", "B"}))
+        .willReturn(Arrays.asList(price("A"), price("B")));
+    given(mockIexClient.getLastTradedPriceForSymbols(new String[] {"C"}))
+        .willReturn(Collections.singletonList(price("C")));
+
+    assertEquals(Arrays.asList("A", "B", "C"),
+        symbolsOf(loader.getLastTradedPrices(Arrays.asList("A", "B", "C"))));
+  }
+
+  @Test
+  public void testConcurrentMissesShareOneCall() throws Exception {
+    CountDownLatch fetchStarted = new CountDownLatch(1);
+    CountDownLatch releaseFetch = new CountDownLatch(1);
+    given(mockIexClient.getLastTradedPriceForSymbols(any())).willAnswer(invocation -> {
+      fetchStarted.countDown();
+      releaseFetch.await(5, TimeUnit.SECONDS);
+      return Collections.singletonList(price("FB"));
+    });
+
+    Future<List<IexLastTradedPrice>> first =
+        callers.submit(() -> loader.getLastTradedPrices(Collections.singletonList("FB")));
+    fetchStarted.await(5, TimeUnit.SECONDS);
+    // This one finds FB already being fetched and waits for it
+    Future<List<IexLastTradedPrice>> second =
+        callers.submit(() -> loader.getLastTradedPrices(Collections.singletonList("FB")));
+    Thread.sleep(100);
+    releaseFetch.countDown();
+
+    assertEquals(Collections.singletonList("FB"), symbolsOf(first.get()));
+    assertEquals(Collections.singletonList("FB"), symbolsOf(second.get()));
+    verify(mockIexClient, times(1)).getLastTradedPriceForSymbols(any());
+  }
+
+  @Test
+  public void testFailureIsRethrownAndNotCached() {
+    given(mockIexClient.getLastTradedPriceForSymbols(any()))
+        .willThrow(new IllegalStateException("IEX is down"));
+
+    try {
+      loader.getLastTradedPrices(Collections.singletonList("FB"));
+      fail("Expected the IEX failure to be rethrown");
+    } catch (IllegalStateException e) {
+      assertEquals("IEX is down", e.getMessage());
+    }
+
+    assertNull(cacheManager.getCache(LastTradedPriceLoader.LAST_TRADED_PRICES_CACHE).get("FB"));
+  }
+}
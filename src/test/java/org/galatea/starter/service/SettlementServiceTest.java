@@ -7,6 +7,9 @@ import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.doNothing;
 
+import com.google.common.collect.Sets;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -22,6 +25,10 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
 
 public class SettlementServiceTest extends ASpringTest {
 
@@ -33,9 +40,17 @@ public class SettlementServiceTest extends ASpringTest {
 
   private SettlementService service;
 
+  private CacheManager cacheManager;
+
+  private CoalescingMissionLoader missionLoader;
+
   @Before
   public void setup() {
-    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer);
+    cacheManager = new ConcurrentMapCacheManager(ISettlementMissionRpsy.MISSIONS_CACHE);
+    // Coalescing is off by default, so lookups go straight to the repository
+    missionLoader = new CoalescingMissionLoader(mockSettlementMissionRpsy, cacheManager);
+    service = new SettlementService(mockSettlementMissionRpsy, mockAgreementTransformer,
+        cacheManager, missionLoader);
   }
 
   @Test
@@ -98,6 +113,42 @@ public class SettlementServiceTest extends ASpringTest {
     }
   }
 
+  @Test
+  public void testFindMissionsCached() {
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    Metrics.addRegistry(meterRegistry);
+
+    try {
+      SettlementMission settlementMission1 = TestDataGenerator.defaultSettlementMissionData()
+          .id(1L).build();
+      SettlementMission settlementMission2 = TestDataGenerator.defaultSettlementMissionData()
+          .id(2L).build();
+      Cache cache = cacheManager.getCache(ISettlementMissionRpsy.MISSIONS_CACHE);
+      cache.put(1L, settlementMission1);
+
+      // Only the mission that isn't cached is loaded from the database
+      given(this.mockSettlementMissionRpsy.findAllById(Collections.singletonList(2L)))
+          .willReturn(Collections.singletonList(settlementMission2));
+
+      List<SettlementMission> actual = service.findMissions(Arrays.asList(2L, 1L));
+      assertEquals(Arrays.asList(settlementMission2, settlementMission1), actual);
+      assertEquals(settlementMission2, cache.get(2L, SettlementMission.class));
+
+      // Now both are served from the cache
+      assertEquals(Arrays.asList(settlementMission1, settlementMission2),
+          service.findMissions(Arrays.asList(1L, 2L)));
+      Mockito.verify(this.mockSettlementMissionRpsy, Mockito.times(1))
+          .findAllById(Mockito.any());
+
+      assertEquals(3, meterRegistry.get("settlement.missions.cache.requests")
+          .tag("result", "hit").counter().count(), 0);
+      assertEquals(1, meterRegistry.get("settlement.missions.cache.requests")
+          .tag("result", "miss").counter().count(), 0);
+    } finally {
+      Metrics.removeRegistry(meterRegistry);
+    }
+  }
+
   @Test
   public void testSpawnMissions() {
 
@@ -114,6 +165,21 @@ public class SettlementServiceTest extends ASpringTest {
     assertEquals(1, missionIds.size());
   }
 
+  @Test
+  public void testSpawnMissionsInChunks() {
+    ReflectionTestUtils.setField(service, "persistChunkSize", 2);
+
+    TradeAgreement testTradeAgreement = TestDataGenerator.defaultTradeAgreementData().build();
+
+    given(this.mockSettlementMissionRpsy.persistInChunks(Mockito.any(), Mockito.eq(2)))
+        .willReturn(Arrays.asList(35L, 36L));
+
+    Set<Long> missionIds = service.spawnMissions(
+        Arrays.asList(testTradeAgreement, testTradeAgreement));
+    assertEquals(Sets.newHashSet(35L, 36L), missionIds);
+    Mockito.verify(this.mockSettlementMissionRpsy, Mockito.never()).saveAll(Mockito.anyList());
+  }
+
   @Test
   public void testUpdateMission() {
 
@@ -123,8 +189,8 @@ public class SettlementServiceTest extends ASpringTest {
     given(this.mockSettlementMissionRpsy.save(testSettlementMission))
         .willReturn(testSettlementMission);
 
-    SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+    SettlementService service = new SettlementService(this.mockSettlementMissionRpsy,
+        this.mockAgreementTransformer, this.cacheManager, this.missionLoader);
 
     Optional<SettlementMission> settlementMissionOptional = service.updateMission(35L, testSettlementMission);
     assertEquals((Long) 35L, settlementMissionOptional.get().getId());
@@ -136,8 +202,8 @@ public class SettlementServiceTest extends ASpringTest {
     given(this.mockSettlementMissionRpsy.existsById(35L))
         .willReturn(true);
 
-    SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+    SettlementService service = new SettlementService(this.mockSettlementMissionRpsy,
+        this.mockAgreementTransformer, this.cacheManager, this.missionLoader);
 
     boolean missionExists = service.missionExists(35L);
     assertTrue(missionExists);
@@ -148,8 +214,8 @@ public class SettlementServiceTest extends ASpringTest {
 
     doNothing().when(this.mockSettlementMissionRpsy).deleteById(35L);
 
-    SettlementService service =
-        new SettlementService(this.mockSettlementMissionRpsy, this.mockAgreementTransformer);
+    SettlementService service = new SettlementService(this.mockSettlementMissionRpsy,
+        this.mockAgreementTransformer, this.cacheManager, this.missionLoader);
 
     service.deleteMission(35L);
     boolean missionExists = service.missionExists(35L);
@@ -0,0 +1,100 @@
+package org.galatea.starter.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.galatea.starter.domain.IexSymbol;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class SymbolIndexTest {
+
+  private IexClient mockIexClient;
+
+  private SymbolIndex index;
+
+  @Before
+  public void setup() {
+    mockIexClient = mock(IexClient.class);
+    index = new SymbolIndex(mockIexClient);
+    ReflectionTestUtils.setField(index, "refreshMinutes", 0L);
+
+    given(mockIexClient.getAllSymbols()).willReturn(Arrays.asList(
+        symbol("IBM", "International Business Machines Corporation", true, "cs"),
+        symbol("AAPL", "Apple Inc.", true, "cs"),
+        symbol("AAAU", "Perth Mint Physical Gold ETF", true, "et"),
+        symbol("AA", "Alcoa Corporation", false, "cs"),
+        symbol("GLD", "SPDR Gold Trust", true, "et")));
+  }
+
+  private static IexSymbol symbol(final String symbol, final String name, final boolean enabled,
+      final String type) {
+    return IexSymbol.builder().symbol(symbol).name(name).isEnabled(enabled).type(type)
+        .iexId(symbol).build();
+  }
+
+  private static List<String> symbolsOf(final List<IexSymbol> symbols) {
+    return symbols.stream().map(IexSymbol::getSymbol).collect(Collectors.toList());
+  }
+
+  @Test
+  public void testLoadedOnFirstUseAndSorted() {
+    assertEquals(Arrays.asList("AA", "AAAU", "AAPL", "GLD", "IBM"),
+        symbolsOf(index.getAllSymbols()));
+    index.getAllSymbols();
+    verify(mockIexClient, times(1)).getAllSymbols();
+  }
+
+  @Test
+  public void testJsonMatchesSymbols() throws Exception {
+    JsonNode json = new ObjectMapper().readTree(index.getAllSymbolsJson());
+    assertEquals(5, json.size());
+    assertEquals("AA", json.get(0).get("symbol").asText());
+    assertEquals("Alcoa Corporation", json.get(0).get("name").asText());
+  }
+
+  @Test
+  public void testPrefixSearch() {
+    assertEquals(Arrays.asList("AA", "AAAU", "AAPL"),
+        symbolsOf(index.search("aa", null, null, null, 100)));
+    assertEquals(Collections.singletonList("AAAU"),
+        symbolsOf(index.search("AAA", null, null, null, 100)));
+    assertTrue(index.search("ZZ", null, null, null, 100).isEmpty());
+  }
+
+  @Test
+  public void testNameAndFilterSearch() {
+    assertEquals(Arrays.asList("AAAU", "GLD"),
+        symbolsOf(index.search(null, "GOLD", null, null, 100)));
+    assertEquals(Arrays.asList("AAPL", "IBM"),
+        symbolsOf(index.search(null, null, true, "CS", 100)));
+    assertEquals(Collections.singletonList("AA"),
+        symbolsOf(index.search("A", "corp", false, null, 100)));
+  }
+
+  @Test
+  public void testSearchLimit() {
+    assertEquals(Arrays.asList("AA", "AAAU"), symbolsOf(index.search(null, null, null, null, 2)));
+  }
+
+  @Test
+  public void testFailedRefreshKeepsSymbols() {
+    index.refresh();
+    given(mockIexClient.getAllSymbols()).willThrow(new IllegalStateException("IEX is down"));
+
+    ReflectionTestUtils.invokeMethod(index, "refreshQuietly");
+
+    assertEquals(5, index.getAllSymbols().size());
+  }
+}
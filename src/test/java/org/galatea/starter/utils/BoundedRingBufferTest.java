@@ -0,0 +1,93 @@
+package org.galatea.starter.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class BoundedRingBufferTest {
+
+  @Test
+  public void testCapacityRoundedUpToPowerOfTwo() {
+    assertEquals(2, new BoundedRingBuffer<>(1).capacity());
+    assertEquals(8, new BoundedRingBuffer<>(5).capacity());
+    assertEquals(1024, new BoundedRingBuffer<>(1024).capacity());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new BoundedRingBuffer<>(0);
+  }
+
+  @Test
+  public void testFifoAndFull() {
+    BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(4);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(buffer.offer(i));
+    }
+    assertFalse(buffer.offer(4));
+    assertEquals(4, buffer.size());
+
+    assertEquals(Integer.valueOf(0), buffer.poll());
+    // Freeing a slot lets the next element in, behind the ones already there
+    assertTrue(buffer.offer(4));
+    for (int i = 1; i <= 4; i++) {
+      assertEquals(Integer.valueOf(i), buffer.poll());
+    }
+    assertNull(buffer.poll());
+    assertTrue(buffer.isEmpty());
+  }
+
+  @Test
+  public void testConcurrentProducersAndConsumer() throws Exception {
+    int producers = 4;
+    int perProducer = 10_000;
+    BoundedRingBuffer<Integer> buffer = new BoundedRingBuffer<>(64);
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    CountDownLatch done = new CountDownLatch(producers);
+
+    for (int p = 0; p < producers; p++) {
+      int base = p * perProducer;
+      executor.execute(() -> {
+        for (int i = 0; i < perProducer; i++) {
+          while (!buffer.offer(base + i)) {
+            Thread.yield();
+          }
+        }
+        done.countDown();
+      });
+    }
+
+    Set<Integer> seen = new HashSet<>();
+    List<Integer> lastPerProducer = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      lastPerProducer.add(-1);
+    }
+    while (seen.size() < producers * perProducer) {
+      Integer element = buffer.poll();
+      if (element == null) {
+        Thread.yield();
+        continue;
+      }
+      assertTrue("Duplicate element " + element, seen.add(element));
+      // Elements from any one producer come out in the order they went in
+      int producer = element / perProducer;
+      assertTrue(element > lastPerProducer.get(producer));
+      lastPerProducer.set(producer, element);
+    }
+
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    executor.shutdown();
+    assertTrue(buffer.isEmpty());
+  }
+}
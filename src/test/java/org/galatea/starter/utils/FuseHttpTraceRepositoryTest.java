@@ -0,0 +1,138 @@
+package org.galatea.starter.utils;
+
+import static org.junit.Assert.assertEquals;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.galatea.starter.utils.FuseHttpTraceRepository.OverflowPolicy;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.actuate.trace.http.HttpTrace;
+
+public class FuseHttpTraceRepositoryTest {
+
+  private FuseHttpTraceRepository repository;
+
+  @After
+  public void tearDown() throws Exception {
+    if (repository != null) {
+      repository.stop();
+    }
+  }
+
+  private static HttpTrace trace(final String path) {
+    HttpTrace.Request request = new HttpTrace.Request("GET", URI.create("http://localhost" + path),
+        Collections.emptyMap(), null);
+    return new HttpTrace(request, null, Instant.now(), null, null, 1L);
+  }
+
+  private static List<String> storedPaths(final FuseHttpTraceRepository repository) {
+    // findAll returns the most recent trace first
+    List<String> paths = repository.findAll().stream()
+        .map(trace -> trace.getRequest().getUri().getPath())
+        .collect(Collectors.toList());
+    Collections.reverse(paths);
+    return paths;
+  }
+
+  private static void awaitDrained(final FuseHttpTraceRepository repository, final int expected)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (repository.findAll().size() < expected && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+  }
+
+  @Test
+  public void testTracesStoredInBackground() throws Exception {
+    repository = new FuseHttpTraceRepository(new ObjectMapper());
+    repository.start();
+
+    repository.add(trace("/a"));
+    repository.add(trace("/b"));
+    awaitDrained(repository, 2);
+
+    assertEquals(Arrays.asList("/a", "/b"),
+        storedPaths(repository));
+    assertEquals(0, repository.getDroppedCount());
+  }
+
+  @Test
+  public void testIdleWriterParksUntilAdd() throws Exception {
+    repository = new FuseHttpTraceRepository(new ObjectMapper());
+    repository.start();
+    Thread writer = Thread.getAllStackTraces().keySet().stream()
+        .filter(thread -> thread.getName().equals("http-trace-writer")).findFirst().get();
+
+    // Parked without a timeout, rather than waking up to check the buffer
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (writer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(Thread.State.WAITING, writer.getState());
+
+    repository.add(trace("/a"));
+    awaitDrained(repository, 1);
+    assertEquals(Collections.singletonList("/a"), storedPaths(repository));
+  }
+
+  @Test
+  public void testDropNewest() throws Exception {
+    // Not started, so nothing drains the buffer
+    repository = new FuseHttpTraceRepository(new ObjectMapper(), 2, OverflowPolicy.DROP_NEWEST);
+    repository.add(trace("/a"));
+    repository.add(trace("/b"));
+    repository.add(trace("/c"));
+    assertEquals(1, repository.getDroppedCount());
+
+    repository.start();
+    awaitDrained(repository, 2);
+    assertEquals(Arrays.asList("/a", "/b"), storedPaths(repository));
+  }
+
+  @Test
+  public void testDropOldest() throws Exception {
+    repository = new FuseHttpTraceRepository(new ObjectMapper(), 2, OverflowPolicy.DROP_OLDEST);
+    repository.add(trace("/a"));
+    repository.add(trace("/b"));
+    repository.add(trace("/c"));
+    assertEquals(1, repository.getDroppedCount());
+
+    repository.start();
+    awaitDrained(repository, 2);
+    assertEquals(Arrays.asList("/b", "/c"), storedPaths(repository));
+  }
+
+  @Test
+  public void testBlockWaitsForRoom() throws Exception {
+    repository = new FuseHttpTraceRepository(new ObjectMapper(), 1, OverflowPolicy.BLOCK);
+    repository.start();
+
+    for (int i = 0; i < 50; i++) {
+      repository.add(trace("/" + i));
+    }
+    awaitDrained(repository, 50);
+
+    assertEquals(50, repository.findAll().size());
+    assertEquals(0, repository.getDroppedCount());
+  }
+
+  @Test
+  public void testStopDrainsPendingTraces() throws Exception {
+    repository = new FuseHttpTraceRepository(new ObjectMapper(), 16, OverflowPolicy.DROP_NEWEST);
+    for (int i = 0; i < 10; i++) {
+      repository.add(trace("/" + i));
+    }
+    repository.start();
+    repository.stop();
+
+    assertEquals(10, repository.findAll().size());
+    assertEquals(0, repository.getPendingCount());
+  }
+}
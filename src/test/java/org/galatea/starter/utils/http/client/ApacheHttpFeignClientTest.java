@@ -0,0 +1,141 @@
+package org.galatea.starter.utils.http.client;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.github.tomakehurst.wiremock.junit.WireMockRule;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import feign.Feign;
+import feign.FeignException;
+import feign.Headers;
+import feign.RequestLine;
+import java.time.Clock;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.galatea.starter.utils.exception.CircuitBreakerOpenException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class ApacheHttpFeignClientTest {
+
+  @Rule
+  public WireMockRule wireMock = new WireMockRule(options().dynamicPort());
+
+  private PoolingHttpClientConnectionManager connectionManager;
+
+  private CircuitBreakingClient client;
+
+  interface TestApi {
+
+    @RequestLine("GET /hello")
+    String hello();
+
+    @RequestLine("POST /echo")
+    @Headers("Content-Type: text/plain")
+    String echo(String body);
+  }
+
+  @Before
+  public void setup() {
+    connectionManager = new PoolingHttpClientConnectionManager();
+    CloseableHttpClient httpClient = HttpClients.custom().setConnectionManager(connectionManager)
+        .disableAutomaticRetries().build();
+    client = new CircuitBreakingClient(new ApacheHttpFeignClient(httpClient), 2, 60_000,
+        Clock.systemUTC());
+  }
+
+  @After
+  public void tearDown() {
+    connectionManager.shutdown();
+  }
+
+  @Test
+  public void testGet() {
+    wireMock.stubFor(get(urlEqualTo("/hello")).willReturn(aResponse().withBody("world")));
+
+    assertEquals("world", api().hello());
+    assertEquals("world", api().hello());
+
+    // The connection was handed back to the pool and kept alive
+    assertEquals(0, connectionManager.getTotalStats().getLeased());
+    assertEquals(1, connectionManager.getTotalStats().getAvailable());
+  }
+
+  @Test
+  public void testPostBody() {
+    wireMock.stubFor(post(urlEqualTo("/echo")).willReturn(aResponse().withBody("ok")));
+
+    assertEquals("ok", api().echo("ping"));
+
+    wireMock.verify(postRequestedFor(urlEqualTo("/echo"))
+        .withHeader("Content-Type", equalTo("text/plain"))
+        .withRequestBody(equalTo("ping")));
+  }
+
+  @Test
+  public void testOverloadedServerRetried() {
+    wireMock.stubFor(get(urlEqualTo("/hello")).inScenario("busy")
+        .whenScenarioStateIs(Scenario.STARTED).willSetStateTo("ready")
+        .willReturn(aResponse().withStatus(503)));
+    wireMock.stubFor(get(urlEqualTo("/hello")).inScenario("busy")
+        .whenScenarioStateIs("ready").willReturn(aResponse().withBody("world")));
+
+    assertEquals("world", api().hello());
+    wireMock.verify(2, getRequestedFor(urlEqualTo("/hello")));
+  }
+
+  @Test
+  public void testClientErrorNotRetried() {
+    wireMock.stubFor(get(urlEqualTo("/hello")).willReturn(aResponse().withStatus(404)));
+
+    try {
+      api().hello();
+      fail("Expected a 404");
+    } catch (FeignException e) {
+      assertEquals(404, e.status());
+    }
+    wireMock.verify(1, getRequestedFor(urlEqualTo("/hello")));
+  }
+
+  @Test
+  public void testCircuitOpensAfterRepeatedFailures() {
+    wireMock.stubFor(get(urlEqualTo("/hello")).willReturn(aResponse().withStatus(500)));
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        api().hello();
+        fail("Expected a 500");
+      } catch (FeignException e) {
+        assertEquals(500, e.status());
+      }
+    }
+
+    try {
+      api().hello();
+      fail("Expected the circuit to be open");
+    } catch (CircuitBreakerOpenException e) {
+      // Refused without calling the server
+      wireMock.verify(2, getRequestedFor(urlEqualTo("/hello")));
+    }
+    assertEquals(CircuitBreaker.State.OPEN, client.getState("localhost"));
+  }
+
+  private TestApi api() {
+    return Feign.builder()
+        .client(client)
+        .retryer(new JitteredRetryer(3, 1, 10))
+        .errorDecoder(new RetryableStatusErrorDecoder())
+        .target(TestApi.class, "http://localhost:" + wireMock.port());
+  }
+}
@@ -0,0 +1,112 @@
+package org.galatea.starter.utils.http.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.galatea.starter.utils.http.client.CircuitBreaker.State;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CircuitBreakerTest {
+
+  private TestClock clock;
+
+  private CircuitBreaker breaker;
+
+  @Before
+  public void setup() {
+    clock = new TestClock();
+    breaker = new CircuitBreaker(3, 1000, clock);
+  }
+
+  @Test
+  public void testOpensAfterConsecutiveFailures() {
+    fail(2);
+    assertTrue(breaker.tryAcquire());
+    assertEquals(State.CLOSED, breaker.getState());
+
+    breaker.recordFailure();
+
+    assertEquals(State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testSuccessResetsFailures() {
+    fail(2);
+    breaker.recordSuccess();
+    fail(2);
+
+    assertEquals(State.CLOSED, breaker.getState());
+  }
+
+  @Test
+  public void testOneTrialCallAfterOpenPeriod() {
+    fail(3);
+    clock.millis += 1000;
+
+    assertTrue(breaker.tryAcquire());
+    assertEquals(State.HALF_OPEN, breaker.getState());
+    // Only the one trial call
+    assertFalse(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testTrialSuccessCloses() {
+    fail(3);
+    clock.millis += 1000;
+    breaker.tryAcquire();
+
+    breaker.recordSuccess();
+
+    assertEquals(State.CLOSED, breaker.getState());
+    assertTrue(breaker.tryAcquire());
+  }
+
+  @Test
+  public void testTrialFailureReopens() {
+    fail(3);
+    clock.millis += 1000;
+    breaker.tryAcquire();
+
+    breaker.recordFailure();
+
+    assertEquals(State.OPEN, breaker.getState());
+    clock.millis += 999;
+    assertFalse(breaker.tryAcquire());
+    clock.millis += 1;
+    assertTrue(breaker.tryAcquire());
+  }
+
+  private void fail(final int times) {
+    for (int i = 0; i < times; i++) {
+      breaker.tryAcquire();
+      breaker.recordFailure();
+    }
+  }
+
+  private static class TestClock extends Clock {
+
+    private long millis;
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(final ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package org.galatea.starter.utils.http.client;
+
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import feign.FeignException;
+import feign.Response;
+import feign.RetryableException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import org.junit.Test;
+
+public class JitteredRetryerTest {
+
+  @Test
+  public void testBackoffWithinBounds() {
+    JitteredRetryer retryer = new JitteredRetryer(10, 100, 1000);
+    RetryableException error = new RetryableException("Connection refused", null);
+
+    for (int i = 0; i < 200; i++) {
+      assertTrue(retryer.backoffMillis(1, error) <= 100);
+      assertTrue(retryer.backoffMillis(3, error) <= 400);
+      assertTrue(retryer.backoffMillis(8, error) <= 1000);
+    }
+  }
+
+  @Test
+  public void testRetryAfterRespected() {
+    JitteredRetryer retryer = new JitteredRetryer(10, 1, 1000);
+    RetryableException error = new RetryableException("Busy",
+        new Date(System.currentTimeMillis() + 500));
+
+    assertTrue(retryer.backoffMillis(1, error) >= 400);
+  }
+
+  @Test
+  public void testGivesUpAfterMaxAttempts() {
+    JitteredRetryer retryer = new JitteredRetryer(3, 1, 1);
+    RetryableException error = new RetryableException("Connection refused", null);
+
+    retryer.continueOrPropagate(error);
+    retryer.continueOrPropagate(error);
+    try {
+      retryer.continueOrPropagate(error);
+      fail("Expected the third failure to be thrown");
+    } catch (RetryableException e) {
+      assertSame(error, e);
+    }
+  }
+
+  @Test
+  public void testThrowsDecodedErrorWhenGivingUp() {
+    FeignException decoded = FeignException.errorStatus("IexClient#getAllSymbols()",
+        Response.builder().status(503).headers(Collections.emptyMap())
+            .body("Unavailable", StandardCharsets.UTF_8).build());
+    RetryableException error = new RetryableException(decoded.getMessage(), decoded, null);
+
+    try {
+      new JitteredRetryer(1, 1, 1).continueOrPropagate(error);
+      fail("Expected the failure to be thrown");
+    } catch (FeignException e) {
+      assertSame(decoded, e);
+    }
+  }
+
+  @Test
+  public void testCloneStartsAgain() {
+    JitteredRetryer retryer = new JitteredRetryer(2, 1, 1);
+    RetryableException error = new RetryableException("Connection refused", null);
+    retryer.continueOrPropagate(error);
+
+    // The clone gets its own attempts, so this doesn't throw
+    retryer.clone().continueOrPropagate(error);
+  }
+}
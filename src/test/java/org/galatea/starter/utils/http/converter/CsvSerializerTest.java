@@ -4,6 +4,8 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -34,6 +36,28 @@ public class CsvSerializerTest {
     assertEquals(expected, actual);
   }
 
+  @Test
+  public void serializeToCsv_streaming() throws Exception {
+    BasicClass row1 = new BasicClass("foo", "bar");
+    BasicClass row2 = new BasicClass("baz", null);
+
+    String expected
+        = "field1,field2\n"
+        + "foo,bar\n"
+        + "baz,\n";
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    CsvSerializer.serializeToCsv(Arrays.asList(row1, row2), BasicClass.class, actual);
+    assertEquals(expected, actual.toString(StandardCharsets.UTF_8.name()));
+  }
+
+  @Test
+  public void serializeToCsv_streamingNoRows() throws Exception {
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    CsvSerializer.serializeToCsv(Collections.emptyList(), BasicClass.class, actual);
+    assertEquals(CsvSerializer.serializeToCsv(Collections.emptyList(), BasicClass.class),
+        actual.toString(StandardCharsets.UTF_8.name()));
+  }
+
   @Test
   public void serializeToCsv_collections() throws Exception {
     ClassWithCollections row1 = new ClassWithCollections(
@@ -1,11 +1,14 @@
 package org.galatea.starter.utils.http.converter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -13,9 +16,11 @@ import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
 import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.galatea.starter.testutils.XlsxComparator;
 import org.junit.Test;
@@ -160,6 +165,56 @@ public class XlsxSerializerTest {
     assertTrue(XlsxComparator.equals(expected, actual));
   }
 
+  @Test
+  public void serializeToXlsx_numericCells() throws Exception {
+    NumericClass row1 = new NumericClass(1, 2L, 3.5, null, Long.MAX_VALUE, Double.NaN);
+
+    byte[] actual = XlsxSerializer.serializeToXlsx(
+        Collections.singletonList(row1), NumericClass.class);
+
+    try (Workbook wb = WorkbookFactory.create(new ByteArrayInputStream(actual))) {
+      Row row = wb.getSheetAt(0).getRow(1);
+      assertEquals(CellType.NUMERIC, row.getCell(0).getCellType());
+      assertEquals(1, row.getCell(0).getNumericCellValue(), 0);
+      assertEquals(CellType.NUMERIC, row.getCell(1).getCellType());
+      assertEquals(2, row.getCell(1).getNumericCellValue(), 0);
+      assertEquals(CellType.NUMERIC, row.getCell(2).getCellType());
+      assertEquals(3.5, row.getCell(2).getNumericCellValue(), 0);
+      // Values that can't be held exactly by a numeric cell fall back to strings
+      assertEquals("", row.getCell(3).getStringCellValue());
+      assertEquals(String.valueOf(Long.MAX_VALUE), row.getCell(4).getStringCellValue());
+      assertEquals("NaN", row.getCell(5).getStringCellValue());
+    }
+  }
+
+  @Test
+  public void serializeToXlsx_streaming() throws Exception {
+    List<BasicClass> rows = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      rows.add(new BasicClass("foo" + i, i % 2 == 0 ? null : "bar" + i));
+    }
+
+    byte[] expected;
+    try (Workbook wbExpected = new XSSFWorkbook()) {
+      Sheet sheet = wbExpected.createSheet();
+      Row row = sheet.createRow(0);
+      row.createCell(0).setCellValue("field1");
+      row.createCell(1).setCellValue("field2");
+      for (int i = 0; i < rows.size(); i++) {
+        row = sheet.createRow(i + 1);
+        row.createCell(0).setCellValue("foo" + i);
+        row.createCell(1).setCellValue(i % 2 == 0 ? "" : "bar" + i);
+      }
+
+      expected = writeSpreadsheetToBytes(wbExpected);
+    }
+
+    // A window of 2 rows forces most of the sheet to be flushed out of memory before it's written
+    ByteArrayOutputStream actual = new ByteArrayOutputStream();
+    XlsxSerializer.serializeToXlsx(rows, BasicClass.class, actual, 2);
+    assertTrue(XlsxComparator.equals(expected, actual.toByteArray()));
+  }
+
   private static byte[] writeSpreadsheetToBytes(final Workbook wb) throws IOException {
     try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
       wb.write(baos);
@@ -205,6 +260,19 @@ public class XlsxSerializerTest {
     private BasicClass field2;
   }
 
+  @AllArgsConstructor
+  private static class NumericClass {
+
+    private static final String IGNORED_STATIC = "ignored";
+
+    private int field1;
+    private Long field2;
+    private double field3;
+    private Integer field4;
+    private long field5;
+    private Double field6;
+  }
+
   @AllArgsConstructor
   private static class CustomHeadersClass {
 
@@ -0,0 +1,64 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveConcurrencyControllerTest {
+
+  private AdaptiveConcurrencyController controller;
+
+  @Before
+  public void setup() {
+    controller = new AdaptiveConcurrencyController(queue -> -1, () -> 0);
+    controller.setMinConsumers(2);
+    controller.setMaxConsumers(10);
+    controller.setBacklogPerConsumer(100);
+    controller.setTargetLatencyMillis(50);
+    controller.setMaxDbPoolUsage(0.9);
+  }
+
+  @Test
+  public void testBacklogRaisesCeilingInOneGo() {
+    assertEquals(6, controller.nextCeiling(2, 550, 10, 0.5));
+  }
+
+  @Test
+  public void testCeilingCappedAtMax() {
+    assertEquals(10, controller.nextCeiling(4, 100_000, 10, 0.5));
+  }
+
+  @Test
+  public void testBusyDatabaseTakesConsumerAway() {
+    assertEquals(5, controller.nextCeiling(6, 100_000, 10, 0.95));
+  }
+
+  @Test
+  public void testSlowMessagesTakeConsumerAway() {
+    assertEquals(5, controller.nextCeiling(6, 100_000, 80, 0.5));
+  }
+
+  @Test
+  public void testEmptyQueueShrinksToMin() {
+    assertEquals(3, controller.nextCeiling(4, 0, 0, 0));
+    assertEquals(2, controller.nextCeiling(2, 0, 0, 0));
+  }
+
+  @Test
+  public void testUnknownDepthLeavesCeilingAlone() {
+    assertEquals(4, controller.nextCeiling(4, -1, 10, 0.5));
+  }
+
+  @Test
+  public void testRegisterStartsAtMin() {
+    FuseMessageListenerContainer container =
+        new FuseMessageListenerContainer((message, e) -> { });
+    container.setConcurrency("1-5");
+
+    controller.register(container);
+
+    assertEquals(2, container.getConcurrentConsumers());
+    assertEquals(2, container.getMaxConcurrentConsumers());
+  }
+}
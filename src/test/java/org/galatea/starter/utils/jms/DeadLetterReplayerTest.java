@@ -0,0 +1,102 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.time.Instant;
+import java.util.Arrays;
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.galatea.starter.utils.jms.DeadLetter.PayloadType;
+import org.galatea.starter.utils.jms.DeadLetterReplayer.ReplayResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.jms.core.JmsTemplate;
+
+public class DeadLetterReplayerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private DeadLetterStore store;
+
+  private DeadLetterReplayer replayer;
+
+  private JmsTemplate jmsTemplate;
+
+  // The embedded broker shuts down, losing its messages, once its last connection closes
+  private Connection connection;
+
+  @Before
+  public void setup() throws JMSException {
+    ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(
+        "vm://dead-letter-replayer-test?broker.persistent=false&broker.useJmx=false");
+    connection = connectionFactory.createConnection();
+    connection.start();
+    store = new DeadLetterStore(new File(folder.getRoot(), "store").getAbsolutePath());
+    replayer = new DeadLetterReplayer(store, connectionFactory, 2, 2);
+    jmsTemplate = new JmsTemplate(connectionFactory);
+    jmsTemplate.setReceiveTimeout(5000);
+  }
+
+  @After
+  public void tearDown() throws JMSException {
+    replayer.stop();
+    store.close();
+    connection.close();
+  }
+
+  @Test
+  public void testReplaysOntoOriginalQueues() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      store.add(deadLetter("replay.a", (byte) i));
+    }
+    store.add(deadLetter("replay.b", (byte) 9));
+
+    ReplayResult result = replayer.replay("replay.a", 0);
+
+    assertEquals(5, result.getReplayed());
+    assertEquals(0, result.getFailed());
+    assertEquals(0, result.getRemaining());
+    assertEquals(1, store.count("replay.b"));
+    for (int i = 0; i < 5; i++) {
+      BytesMessage message = (BytesMessage) jmsTemplate.receive("replay.a");
+      byte[] payload = new byte[(int) message.getBodyLength()];
+      message.readBytes(payload);
+      assertEquals(1, payload.length);
+    }
+  }
+
+  @Test
+  public void testReplaysUpToLimit() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      store.add(deadLetter("replay.c", (byte) i));
+    }
+
+    ReplayResult result = replayer.replay(null, 3);
+
+    assertEquals(3, result.getReplayed());
+    assertEquals(2, result.getRemaining());
+    // The oldest are replayed, though batches sent at the same time may arrive in either order
+    byte[] payloads = new byte[3];
+    for (int i = 0; i < payloads.length; i++) {
+      BytesMessage message = (BytesMessage) jmsTemplate.receive("replay.c");
+      byte[] payload = new byte[1];
+      message.readBytes(payload);
+      payloads[i] = payload[0];
+    }
+    Arrays.sort(payloads);
+    assertArrayEquals(new byte[] {0, 1, 2}, payloads);
+  }
+
+  private static DeadLetter deadLetter(final String queue, final byte payload) {
+    return DeadLetter.builder().queue(queue).payloadType(PayloadType.BYTES)
+        .payload(new byte[] {payload}).error("error").failedAt(Instant.now()).build();
+  }
+}
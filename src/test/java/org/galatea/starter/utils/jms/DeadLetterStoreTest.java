@@ -0,0 +1,145 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import javax.jms.ObjectMessage;
+import javax.jms.Queue;
+import javax.jms.TextMessage;
+import org.galatea.starter.utils.jms.DeadLetter.PayloadType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.dao.DataAccessException;
+
+public class DeadLetterStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private DeadLetterStore store;
+
+  @Before
+  public void setup() {
+    store = new DeadLetterStore(new File(folder.getRoot(), "store").getAbsolutePath());
+  }
+
+  @After
+  public void tearDown() {
+    store.close();
+  }
+
+  @Test
+  public void testStoresTextMessage() throws Exception {
+    Queue queue = mock(Queue.class);
+    when(queue.getQueueName()).thenReturn("sandbox.agreement");
+    TextMessage message = mock(TextMessage.class);
+    when(message.getJMSDestination()).thenReturn(queue);
+    when(message.getJMSMessageID()).thenReturn("ID:1");
+    when(message.getText()).thenReturn("{\"instrument\":\"IBM\"}");
+
+    long id = store.add(message, new IllegalStateException("database down"));
+
+    List<DeadLetter> deadLetters = store.list(null, 0, 10);
+    assertEquals(1, deadLetters.size());
+    DeadLetter deadLetter = deadLetters.get(0);
+    assertEquals(id, deadLetter.getId());
+    assertEquals("sandbox.agreement", deadLetter.getQueue());
+    assertEquals("ID:1", deadLetter.getMessageId());
+    assertEquals(PayloadType.TEXT, deadLetter.getPayloadType());
+    assertEquals("{\"instrument\":\"IBM\"}",
+        new String(deadLetter.getPayload(), StandardCharsets.UTF_8));
+    assertTrue(deadLetter.getError().contains("database down"));
+  }
+
+  @Test
+  public void testDropsUnsupportedMessage() throws Exception {
+    ObjectMessage message = mock(ObjectMessage.class);
+    when(message.getJMSDestination()).thenReturn(mock(Queue.class));
+
+    store.accept(message, new IllegalStateException());
+
+    assertEquals(0, store.count(null));
+  }
+
+  @Test
+  public void testBatchStoredInOneTransaction() throws Exception {
+    // Too long a queue name for the table, so the second message can't be stored
+    char[] longName = new char[300];
+    Arrays.fill(longName, 'q');
+
+    try {
+      store.acceptAll(Arrays.asList(textMessage("sandbox.agreement"),
+          textMessage(new String(longName))), new IllegalStateException());
+      fail("Expected the batch to fail");
+    } catch (DataAccessException e) {
+      assertEquals(0, store.count(null));
+    }
+
+    store.acceptAll(Arrays.asList(textMessage("sandbox.agreement"),
+        textMessage("sandbox.agreement")), new IllegalStateException());
+    assertEquals(2, store.count(null));
+  }
+
+  @Test
+  public void testListsPagesOfOneQueue() {
+    long first = store.add(deadLetter("a"));
+    store.add(deadLetter("b"));
+    long third = store.add(deadLetter("a"));
+    long fourth = store.add(deadLetter("a"));
+
+    List<DeadLetter> page = store.list("a", first, 2);
+
+    assertEquals(2, page.size());
+    assertEquals(third, page.get(0).getId());
+    assertEquals(fourth, page.get(1).getId());
+    assertEquals(3, store.count("a"));
+    assertEquals(4, store.count(null));
+  }
+
+  @Test
+  public void testDeletesById() {
+    long first = store.add(deadLetter("a"));
+    long second = store.add(deadLetter("a"));
+
+    assertEquals(1, store.delete(Arrays.asList(first, -1L)));
+
+    List<DeadLetter> left = store.list(null, 0, 10);
+    assertEquals(1, left.size());
+    assertEquals(second, left.get(0).getId());
+  }
+
+  @Test
+  public void testKeptAcrossReopening() {
+    store.add(deadLetter("a"));
+    store.close();
+
+    store = new DeadLetterStore(new File(folder.getRoot(), "store").getAbsolutePath());
+
+    assertEquals(1, store.count(null));
+  }
+
+  private static TextMessage textMessage(final String queueName) throws Exception {
+    Queue queue = mock(Queue.class);
+    when(queue.getQueueName()).thenReturn(queueName);
+    TextMessage message = mock(TextMessage.class);
+    when(message.getJMSDestination()).thenReturn(queue);
+    when(message.getText()).thenReturn("{}");
+    return message;
+  }
+
+  private static DeadLetter deadLetter(final String queue) {
+    return DeadLetter.builder().queue(queue).payloadType(PayloadType.BYTES)
+        .payload(new byte[] {1, 2, 3}).error("error").failedAt(Instant.now()).build();
+  }
+}
@@ -0,0 +1,326 @@
+package org.galatea.starter.utils.jms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+public class FuseMessageListenerContainerTest {
+
+  private FuseMessageListenerContainer container;
+
+  private Session session;
+
+  @Before
+  public void setup() throws JMSException {
+    container = new FuseMessageListenerContainer((message, e) -> { });
+    container.setConnectionFactory(mock(ConnectionFactory.class));
+    container.setSessionTransacted(true);
+    container.setCommitBatchSize(3);
+
+    session = mock(Session.class);
+    when(session.getTransacted()).thenReturn(true);
+  }
+
+  @Test
+  public void testCommitsEveryBatchOfMessages() throws JMSException {
+    for (int i = 0; i < 7; i++) {
+      container.commitIfNecessary(session, mock(Message.class));
+    }
+
+    verify(session, times(2)).commit();
+    assertEquals(2, container.getCommits());
+  }
+
+  @Test
+  public void testEmptyReceiveCommitsHeldMessages() throws JMSException {
+    container.commitIfNecessary(session, mock(Message.class));
+    container.commitIfNecessary(session, mock(Message.class));
+    verify(session, never()).commit();
+
+    container.commitIfNecessary(session, null);
+
+    verify(session).commit();
+    assertEquals(1, container.getCommits());
+  }
+
+  @Test
+  public void testCommitsOnceIntervalHasPassed() throws Exception {
+    container.setCommitBatchSize(1000);
+    container.setCommitIntervalMillis(1);
+
+    container.commitIfNecessary(session, mock(Message.class));
+    Thread.sleep(5);
+    container.commitIfNecessary(session, mock(Message.class));
+
+    verify(session).commit();
+  }
+
+  @Test
+  public void testRollbackStartsCountAgain() throws JMSException {
+    container.commitIfNecessary(session, mock(Message.class));
+    container.commitIfNecessary(session, mock(Message.class));
+
+    container.rollbackOnExceptionIfNecessary(session, new RuntimeException());
+    container.commitIfNecessary(session, mock(Message.class));
+
+    verify(session).rollback();
+    verify(session, never()).commit();
+  }
+
+  @Test
+  public void testClosingSessionCommitsHeldMessages() throws JMSException {
+    Connection connection = mock(Connection.class);
+    when(connection.createSession(true, Session.AUTO_ACKNOWLEDGE)).thenReturn(session);
+    Session containerSession = container.createSession(connection);
+
+    container.commitIfNecessary(containerSession, mock(Message.class));
+    verify(session, never()).commit();
+    containerSession.close();
+
+    InOrder inOrder = inOrder(session);
+    inOrder.verify(session).commit();
+    inOrder.verify(session).close();
+  }
+
+  @Test
+  public void testClosingSessionAfterRollbackDoesNotCommit() throws JMSException {
+    Connection connection = mock(Connection.class);
+    when(connection.createSession(true, Session.AUTO_ACKNOWLEDGE)).thenReturn(session);
+    Session containerSession = container.createSession(connection);
+
+    container.commitIfNecessary(containerSession, mock(Message.class));
+    container.rollbackOnExceptionIfNecessary(containerSession, new RuntimeException());
+    containerSession.close();
+
+    verify(session, never()).commit();
+    verify(session).close();
+  }
+
+  @Test
+  public void testCommitsEveryMessageByDefault() throws JMSException {
+    container.setCommitBatchSize(1);
+
+    container.commitIfNecessary(session, mock(Message.class));
+    container.commitIfNecessary(session, mock(Message.class));
+
+    verify(session, times(2)).commit();
+  }
+
+  @Test
+  public void testPrefetchAddedToQueueName() throws JMSException {
+    container.setPrefetch(500);
+
+    container.resolveDestinationName(session, "sandbox.agreement");
+
+    verify(session).createQueue("sandbox.agreement?consumer.prefetchSize=500");
+  }
+
+  @Test
+  public void testLastDeliveryAttemptFromDeliveryCount() throws JMSException {
+    container.setMaxDeliveryAttempts(3);
+    Message message = mock(Message.class);
+
+    when(message.getObjectProperty("JMSXDeliveryCount")).thenReturn(2);
+    assertFalse(container.isLastDeliveryAttempt(message));
+
+    when(message.getObjectProperty("JMSXDeliveryCount")).thenReturn(3);
+    assertTrue(container.isLastDeliveryAttempt(message));
+  }
+
+  @Test
+  public void testRedeliveryLeftToBrokerByDefault() throws JMSException {
+    Message message = mock(Message.class);
+    when(message.getObjectProperty("JMSXDeliveryCount")).thenReturn(100);
+
+    assertFalse(container.isLastDeliveryAttempt(message));
+  }
+
+  @Test
+  public void testFailedBatchRolledBackWithoutThrowing() throws JMSException {
+    // The parent's invoker bookkeeping needs one of its own private invokers
+    container = new FuseMessageListenerContainer((message, e) -> { }) {
+      @Override
+      protected void messageReceived(final Object invoker, final Session session) {
+      }
+    };
+    container.setConnectionFactory(mock(ConnectionFactory.class));
+    container.setSessionTransacted(true);
+    List<List<Message>> handled = new ArrayList<>();
+    container.setMessageListener((BatchMessageListener) messages -> {
+      handled.add(messages);
+      throw new IllegalStateException("database down");
+    });
+    container.setBatchSize(10);
+    container.setAcceptMessagesWhileStopping(true);
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    container.setReceiveTimeout(100);
+    when(consumer.receive(100)).thenReturn(mock(Message.class));
+
+    assertTrue(container.doReceiveAndExecute(new Object(), session, consumer, null));
+
+    assertEquals(1, handled.size());
+    verify(session).rollback();
+    verify(session, never()).commit();
+  }
+
+  @Test
+  public void testBatchOnLastDeliveryHandedOverTogether() throws JMSException {
+    List<List<Message>> failed = new ArrayList<>();
+    container = new FuseMessageListenerContainer(new FailedMessageConsumer() {
+      @Override
+      public void accept(final Message message, final Exception e) {
+        failed.add(Collections.singletonList(message));
+      }
+
+      @Override
+      public void acceptAll(final List<Message> messages, final Exception e) {
+        failed.add(messages);
+      }
+    }) {
+      @Override
+      protected void messageReceived(final Object invoker, final Session session) {
+      }
+    };
+    container.setConnectionFactory(mock(ConnectionFactory.class));
+    container.setSessionTransacted(true);
+    container.setMaxDeliveryAttempts(3);
+    container.setMessageListener((BatchMessageListener) messages -> {
+      throw new IllegalStateException("database down");
+    });
+    container.setBatchSize(2);
+    container.setAcceptMessagesWhileStopping(true);
+    Message message = mock(Message.class);
+    when(message.getObjectProperty("JMSXDeliveryCount")).thenReturn(3);
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    container.setReceiveTimeout(100);
+    when(consumer.receive(100)).thenReturn(message);
+    when(consumer.receive(0)).thenReturn(message);
+    when(consumer.receiveNoWait()).thenReturn(message);
+
+    assertTrue(container.doReceiveAndExecute(new Object(), session, consumer, null));
+
+    assertEquals(1, failed.size());
+    assertEquals(2, failed.get(0).size());
+    verify(session).commit();
+  }
+
+  @Test
+  public void testFailureWhileHoldingMessagesDoesNotRedeliverThem() throws JMSException {
+    List<Message> failed = new ArrayList<>();
+    container = new FuseMessageListenerContainer((message, e) -> failed.add(message)) {
+      @Override
+      protected void messageReceived(final Object invoker, final Session session) {
+      }
+    };
+    container.setConnectionFactory(mock(ConnectionFactory.class));
+    container.setSessionTransacted(true);
+    container.setCommitBatchSize(3);
+    Message first = mock(Message.class);
+    Message second = mock(Message.class);
+    Message third = mock(Message.class);
+    List<Message> handled = new ArrayList<>();
+    container.setMessageListener((MessageListener) message -> {
+      handled.add(message);
+      if (message == second) {
+        throw new IllegalStateException("database down");
+      }
+    });
+    container.setAcceptMessagesWhileStopping(true);
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    container.setReceiveTimeout(100);
+    when(consumer.receive(100)).thenReturn(first, second, third);
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(container.doReceiveAndExecute(new Object(), session, consumer, null));
+    }
+
+    assertEquals(Arrays.asList(first, second, third), handled);
+    assertEquals(Collections.singletonList(second), failed);
+    verify(session, never()).rollback();
+    verify(session).commit();
+  }
+
+  @Test
+  public void testFailedBatchWhileHoldingMessagesHandedOver() throws JMSException {
+    List<Message> failed = new ArrayList<>();
+    container = new FuseMessageListenerContainer((message, e) -> failed.add(message)) {
+      @Override
+      protected void messageReceived(final Object invoker, final Session session) {
+      }
+    };
+    container.setConnectionFactory(mock(ConnectionFactory.class));
+    container.setSessionTransacted(true);
+    container.setCommitBatchSize(4);
+    Message held = mock(Message.class);
+    Message alsoHeld = mock(Message.class);
+    Message failing = mock(Message.class);
+    Message alsoFailing = mock(Message.class);
+    container.setMessageListener((BatchMessageListener) messages -> {
+      if (messages.contains(failing)) {
+        throw new IllegalStateException("database down");
+      }
+    });
+    container.setBatchSize(2);
+    container.setAcceptMessagesWhileStopping(true);
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    container.setReceiveTimeout(100);
+    when(consumer.receive(100)).thenReturn(held, failing);
+    when(consumer.receiveNoWait()).thenReturn(alsoHeld, alsoFailing);
+
+    assertTrue(container.doReceiveAndExecute(new Object(), session, consumer, null));
+    assertTrue(container.doReceiveAndExecute(new Object(), session, consumer, null));
+
+    assertEquals(Arrays.asList(failing, alsoFailing), failed);
+    verify(session, never()).rollback();
+    verify(session).commit();
+  }
+
+  @Test
+  public void testFailureOnDupsOkSessionHandedOver() throws JMSException {
+    List<Message> failed = new ArrayList<>();
+    container = new FuseMessageListenerContainer((message, e) -> failed.add(message)) {
+      @Override
+      protected void messageReceived(final Object invoker, final Session session) {
+      }
+    };
+    container.setConnectionFactory(mock(ConnectionFactory.class));
+    container.setSessionTransacted(false);
+    container.setSessionAcknowledgeMode(Session.DUPS_OK_ACKNOWLEDGE);
+    container.setMessageListener((MessageListener) message -> {
+      throw new IllegalStateException("database down");
+    });
+    container.setAcceptMessagesWhileStopping(true);
+    when(session.getTransacted()).thenReturn(false);
+    when(session.getAcknowledgeMode()).thenReturn(Session.DUPS_OK_ACKNOWLEDGE);
+    Message message = mock(Message.class);
+    MessageConsumer consumer = mock(MessageConsumer.class);
+    container.setReceiveTimeout(100);
+    when(consumer.receive(100)).thenReturn(message);
+
+    assertTrue(container.doReceiveAndExecute(new Object(), session, consumer, null));
+
+    assertEquals(Collections.singletonList(message), failed);
+  }
+}
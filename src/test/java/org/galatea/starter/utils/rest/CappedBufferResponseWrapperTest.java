@@ -0,0 +1,125 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class CappedBufferResponseWrapperTest {
+
+  @Test
+  public void testSmallBodyHeldBackUntilComplete() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    CappedBufferResponseWrapper wrapper = new CappedBufferResponseWrapper(response, 16,
+        () -> response.addHeader("audit", "done"));
+
+    wrapper.getOutputStream().write("hello".getBytes(StandardCharsets.UTF_8));
+    wrapper.getOutputStream().flush();
+    assertFalse(wrapper.isPassThrough());
+    assertEquals(0, response.getContentAsByteArray().length);
+    assertFalse(response.isCommitted());
+
+    wrapper.complete();
+    assertEquals("hello", response.getContentAsString());
+    assertEquals(5, response.getContentLength());
+    assertEquals("done", response.getHeader("audit"));
+  }
+
+  @Test
+  public void testLargeBodyStreamedThrough() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    AtomicInteger callbacks = new AtomicInteger();
+    CappedBufferResponseWrapper wrapper = new CappedBufferResponseWrapper(response, 4,
+        () -> {
+          callbacks.incrementAndGet();
+          response.addHeader("audit", "done");
+        });
+
+    wrapper.getOutputStream().write("abc".getBytes(StandardCharsets.UTF_8));
+    assertFalse(wrapper.isPassThrough());
+    wrapper.getOutputStream().write("defgh".getBytes(StandardCharsets.UTF_8));
+
+    // Going over the cap adds the headers and sends everything written so far
+    assertTrue(wrapper.isPassThrough());
+    assertEquals("done", response.getHeader("audit"));
+    assertEquals("abcdefgh", response.getContentAsString());
+
+    wrapper.getOutputStream().write('i');
+    assertEquals("abcdefghi", response.getContentAsString());
+
+    wrapper.complete();
+    assertEquals(1, callbacks.get());
+  }
+
+  @Test
+  public void testWriter() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    response.setCharacterEncoding("UTF-8");
+    CappedBufferResponseWrapper wrapper = new CappedBufferResponseWrapper(response, 1024,
+        () -> { });
+
+    wrapper.getWriter().write("café");
+    wrapper.complete();
+    assertEquals("café", response.getContentAsString());
+  }
+
+  @Test
+  public void testZeroLimitStreamsEverything() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    CappedBufferResponseWrapper wrapper = new CappedBufferResponseWrapper(response, 0,
+        () -> response.addHeader("audit", "done"));
+
+    wrapper.getOutputStream().write('a');
+    assertTrue(wrapper.isPassThrough());
+    assertEquals("a", response.getContentAsString());
+    assertEquals("done", response.getHeader("audit"));
+  }
+
+  @Test
+  public void testFlushBufferStartsStreaming() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    CappedBufferResponseWrapper wrapper = new CappedBufferResponseWrapper(response, 1024,
+        () -> response.addHeader("audit", "done"));
+
+    wrapper.getOutputStream().write("{}\n".getBytes(StandardCharsets.UTF_8));
+    wrapper.flushBuffer();
+
+    assertTrue(wrapper.isPassThrough());
+    assertTrue(response.isCommitted());
+    assertEquals("{}\n", response.getContentAsString());
+    assertEquals("done", response.getHeader("audit"));
+  }
+
+  @Test
+  public void testWriteListenerStartsStreaming() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ServletOutputStream out = mock(ServletOutputStream.class);
+    HttpServletResponse streamingResponse = new HttpServletResponseWrapper(response) {
+      @Override
+      public ServletOutputStream getOutputStream() {
+        return out;
+      }
+    };
+    CappedBufferResponseWrapper wrapper = new CappedBufferResponseWrapper(streamingResponse, 1024,
+        () -> response.addHeader("audit", "done"));
+    WriteListener listener = mock(WriteListener.class);
+
+    assertTrue(wrapper.getOutputStream().isReady());
+    wrapper.getOutputStream().setWriteListener(listener);
+
+    assertTrue(wrapper.isPassThrough());
+    assertEquals("done", response.getHeader("audit"));
+    verify(out).setWriteListener(listener);
+    assertFalse(wrapper.getOutputStream().isReady());
+  }
+}
@@ -0,0 +1,61 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HttpTraceSamplerTest {
+
+  @Test
+  public void testAlwaysSamples() {
+    HttpTraceSampler sampler = HttpTraceSampler.always();
+    for (int i = 0; i < 100; i++) {
+      assertTrue(sampler.sample("/settlementEngine"));
+    }
+  }
+
+  @Test
+  public void testZeroRateNeverSamples() {
+    HttpTraceSampler sampler = new HttpTraceSampler(0, "", false);
+    for (int i = 0; i < 100; i++) {
+      assertFalse(sampler.sample("/settlementEngine"));
+    }
+  }
+
+  @Test
+  public void testLongestPathPrefixWins() {
+    HttpTraceSampler sampler =
+        new HttpTraceSampler(0, "/settlementEngine=1, /settlementEngine/missions=0", false);
+    assertTrue(sampler.sample("/settlementEngine/mission/1"));
+    assertFalse(sampler.sample("/settlementEngine/missions"));
+    assertFalse(sampler.sample("/iex/symbols"));
+  }
+
+  @Test
+  public void testPartialRate() {
+    HttpTraceSampler sampler = new HttpTraceSampler(0.5, null, false);
+    int sampled = 0;
+    for (int i = 0; i < 10_000; i++) {
+      if (sampler.sample("/settlementEngine")) {
+        sampled++;
+      }
+    }
+    assertTrue("Sampled " + sampled, sampled > 4000 && sampled < 6000);
+  }
+
+  @Test
+  public void testErrors() {
+    HttpTraceSampler tracingErrors = new HttpTraceSampler(0, "", true);
+    assertTrue(tracingErrors.traceOnStatus(500));
+    assertTrue(tracingErrors.traceOnStatus(404));
+    assertFalse(tracingErrors.traceOnStatus(200));
+
+    assertFalse(new HttpTraceSampler(0, "", false).traceOnStatus(500));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRate() {
+    new HttpTraceSampler(0, "/iex=1.5", true);
+  }
+}
@@ -0,0 +1,58 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class InFlightLimitFilterTest {
+
+  private final InFlightLimitFilter filter = new InFlightLimitFilter(1);
+
+  @Test
+  public void testPermitReleasedWhenRequestDone() throws Exception {
+    assertEquals(HttpServletResponse.SC_OK, perform(new MockFilterChain()).getStatus());
+    assertEquals(HttpServletResponse.SC_OK, perform(new MockFilterChain()).getStatus());
+    assertEquals(0, filter.getInFlight());
+  }
+
+  @Test
+  public void testOverLimitTurnedAway() throws Exception {
+    MockHttpServletResponse[] inner = new MockHttpServletResponse[1];
+    FilterChain nested = (request, response) -> inner[0] = perform(new MockFilterChain());
+
+    assertEquals(HttpServletResponse.SC_OK, perform(nested).getStatus());
+    assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE, inner[0].getStatus());
+    assertEquals(0, filter.getInFlight());
+  }
+
+  @Test
+  public void testAsyncRequestInFlightUntilComplete() throws Exception {
+    MockHttpServletRequest asyncRequest = new MockHttpServletRequest();
+    asyncRequest.setAsyncSupported(true);
+    filter.doFilter(asyncRequest, new MockHttpServletResponse(),
+        (request, response) -> request.startAsync());
+    assertEquals(1, filter.getInFlight());
+
+    assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+        perform(new MockFilterChain()).getStatus());
+
+    ((MockAsyncContext) asyncRequest.getAsyncContext()).complete();
+    assertEquals(0, filter.getInFlight());
+    assertEquals(HttpServletResponse.SC_OK, perform(new MockFilterChain()).getStatus());
+  }
+
+  private MockHttpServletResponse perform(final FilterChain chain)
+      throws IOException, ServletException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    filter.doFilter(new MockHttpServletRequest(), response, chain);
+    return response;
+  }
+}
@@ -0,0 +1,63 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+public class RequestIdGeneratorTest {
+
+  private static long sequenceOf(final String id) {
+    return Long.parseLong(id.substring(id.lastIndexOf('-') + 1));
+  }
+
+  @Test
+  public void testIdsStartWithNodePrefix() {
+    RequestIdGenerator generator = new RequestIdGenerator("node1");
+    assertEquals("node1-0", generator.nextId());
+    assertEquals("node1-1", generator.nextId());
+  }
+
+  @Test
+  public void testRandomNodePrefix() {
+    String prefix = RequestIdGenerator.randomNodePrefix();
+    assertEquals(7, prefix.length());
+    assertTrue(prefix, prefix.matches("[0-9a-z]{7}"));
+  }
+
+  @Test
+  public void testUniqueAndIncreasingPerThread() throws Exception {
+    RequestIdGenerator generator = new RequestIdGenerator("node");
+    Set<String> ids = ConcurrentHashMap.newKeySet();
+    int threads = 8;
+    int perThread = 5_000;
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(executor.submit(() -> {
+        long last = -1;
+        for (int i = 0; i < perThread; i++) {
+          String id = generator.nextId();
+          long sequence = sequenceOf(id);
+          assertTrue(sequence > last);
+          last = sequence;
+          ids.add(id);
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    assertEquals(threads * perThread, ids.size());
+  }
+}
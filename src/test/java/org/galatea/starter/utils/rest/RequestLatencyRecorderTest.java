@@ -0,0 +1,50 @@
+package org.galatea.starter.utils.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.galatea.starter.utils.rest.RequestLatencyRecorder.LatencySummary;
+import org.junit.Test;
+
+public class RequestLatencyRecorderTest {
+
+  @Test
+  public void testSeriesPerHandlerAndStatusClass() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    RequestLatencyRecorder recorder = new RequestLatencyRecorder(registry);
+
+    for (int i = 1; i <= 1000; i++) {
+      recorder.record("/settlementEngine", 200, TimeUnit.MILLISECONDS.toNanos(i % 10 + 1));
+    }
+    recorder.record("/settlementEngine", 201, TimeUnit.MILLISECONDS.toNanos(5));
+    recorder.record("/settlementEngine", 400, TimeUnit.MILLISECONDS.toNanos(1));
+    recorder.record("/iex/symbols", 200, TimeUnit.MILLISECONDS.toNanos(100));
+    recorder.record(null, 404, TimeUnit.MILLISECONDS.toNanos(1));
+
+    List<LatencySummary> summaries = recorder.summarise();
+    assertEquals(4, summaries.size());
+
+    // Ordered by handler, then status
+    assertEquals("/iex/symbols", summaries.get(0).getHandler());
+    assertEquals("/settlementEngine", summaries.get(1).getHandler());
+    assertEquals("2xx", summaries.get(1).getStatus());
+    assertEquals("4xx", summaries.get(2).getStatus());
+    assertEquals(RequestLatencyRecorder.UNMAPPED, summaries.get(3).getHandler());
+
+    LatencySummary ok = summaries.get(1);
+    assertEquals(1001, ok.getCount());
+    assertTrue(ok.getThroughputPerSecond() > 0);
+    assertEquals(10, ok.getMaxMillis(), 0.01);
+    assertTrue(ok.getP50Millis() >= 5 && ok.getP50Millis() <= 6.1);
+    assertTrue(ok.getP99Millis() >= 9.5 && ok.getP99Millis() <= 10.1);
+    assertTrue(ok.getP999Millis() >= ok.getP99Millis());
+
+    // The histograms are published to the registry too
+    assertNotNull(registry.find(RequestLatencyRecorder.METER_NAME)
+        .tags("handler", "/iex/symbols", "status", "2xx").timer());
+  }
+}